@@ -5,7 +5,6 @@ import com.ripple.client.transport.WebSocketTransport;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.drafts.Draft_17;
 import org.java_websocket.handshake.ServerHandshake;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.net.URI;
@@ -32,11 +31,7 @@ class WS extends WebSocketClient {
 
     @Override
     public void onMessage(String message) {
-        try {
-            h.onMessage(new JSONObject(message));
-        } catch (JSONException e) {
-            throw new RuntimeException(e);
-        }
+        h.onFrame(message);
     }
 
     @Override
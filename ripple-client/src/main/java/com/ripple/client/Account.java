@@ -23,6 +23,11 @@ public class Account extends AccountID implements IPublisher<Account.events> {
         publisher.once(key, cb);
     }
 
+    @SuppressWarnings("rawtypes")
+    public <T extends events> int emit(Class<T> key, Object arg) {
+        return publisher.emit(key, arg);
+    }
+
     public <T extends events> int emit(Class<T> key, Object... args) {
         return publisher.emit(key, args);
     }
@@ -0,0 +1,116 @@
+package com.ripple.client;
+
+import java.io.PrintStream;
+
+/**
+ * Hands log lines to a daemon thread over a bounded ring buffer, so I/O is
+ * never done on the logging thread. When the buffer is full lines are
+ * dropped, and counted, rather than blocking.
+ *
+ * Records are formatted on the logging thread, as their arguments may be
+ * mutated once it moves on. The writer thread, and the shutdown hook
+ * flushing it, are only started on the first record.
+ */
+public class AsyncLogger implements Logger {
+    private final PrintStream out;
+    private final String[] lines;
+    private long head, tail, dropped;
+    private boolean started;
+    // Held while draining, so lines are written in order
+    private final Object writing = new Object();
+
+    public AsyncLogger(PrintStream out, int capacity) {
+        this.out = out;
+        this.lines = new String[capacity];
+    }
+
+    @Override
+    public void log(String fmt, Object... args) {
+        String line;
+        try {
+            line = String.format(fmt, args);
+        } catch (RuntimeException e) {
+            line = "Bad log format: " + fmt + " " + e;
+        }
+        synchronized (this) {
+            if (!started) {
+                start();
+            }
+            if (tail - head == lines.length) {
+                dropped++;
+                return;
+            }
+            lines[(int) (tail++ % lines.length)] = line;
+            if (tail - head == 1) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void start() {
+        started = true;
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainForever();
+            }
+        }, "ripple-client-logger");
+        writer.setDaemon(true);
+        writer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }));
+    }
+
+    synchronized boolean started() {
+        return started;
+    }
+
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    private void drainForever() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (head == tail) {
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Writes out everything buffered so far, on the calling thread.
+     */
+    public void flush() {
+        synchronized (writing) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            String line;
+            synchronized (this) {
+                if (head == tail) {
+                    break;
+                }
+                int slot = (int) (head++ % lines.length);
+                line = lines[slot];
+                lines[slot] = null;
+            }
+            out.print(line + "\n");
+        }
+        out.flush();
+    }
+}
@@ -1,5 +1,9 @@
 package com.ripple.client;
 
+import com.ripple.client.async.Backoff;
+import com.ripple.client.async.EventLoop;
+import com.ripple.client.async.Promise;
+import com.ripple.client.async.TimerWheel;
 import com.ripple.client.enums.Command;
 import com.ripple.client.enums.Message;
 import com.ripple.client.enums.RPCErr;
@@ -9,6 +13,7 @@ import com.ripple.client.subscriptions.ServerInfo;
 import com.ripple.client.subscriptions.SubscriptionManager;
 import com.ripple.client.transactions.TransactionManager;
 import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.client.transport.Frame;
 import com.ripple.client.transport.TransportEventHandler;
 import com.ripple.client.transport.WebSocketTransport;
 import com.ripple.client.wallet.Wallet;
@@ -16,16 +21,53 @@ import com.ripple.core.types.AccountID;
 import com.ripple.core.types.STObject;
 import com.ripple.core.types.hash.Hash256;
 import com.ripple.core.types.uint.UInt32;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All client state, including that of Accounts, their AccountRoots and
+ * TransactionManagers, is confined to the event loop thread. Transport
+ * callbacks are handed over to the loop, as are calls made from other
+ * threads to `account`, `Request.request` and `TransactionManager.queue`.
+ *
+ * Event listeners are called on the loop, and must not block it. The
+ * promises returned by `request` are settled on the callbackExecutor, if
+ * one is set.
+ *
+ * Besides the primary connection, the client can hold connections to other
+ * servers, added with `addEndpoint`. Read-only commands are sent to whichever
+ * connected endpoint has the lowest expected wait, see `Endpoint.cost`, and
+ * are resent elsewhere if that endpoint drops before answering. Everything
+ * else, subscriptions and submissions included, stays on the primary.
+ *
+ * When the primary drops, unless by `disconnect`, it's reconnected after a
+ * jittered exponential backoff, as are secondaries, each backing off on its
+ * own, until the client is closed. On reconnecting the full set of
+ * subscriptions is remade in one request, read-only requests that were cut
+ * off are replayed, and TransactionManagers reconcile their submissions.
+ * Other requests cut off are failed with a DisconnectedException, as they
+ * may or may not have reached the server.
+ *
+ * A read-only request made while an identical one (bar the id) is in flight
+ * waits for, and settles with, the response to that one, see Coalescer.
+ * With a ResponseCache set, queries for validated data are answered from
+ * it once seen.
+ */
 public class Client extends Publisher<Client.events> implements TransportEventHandler {
-    public boolean connected = false;
+    public volatile boolean connected = false;
 
     public static abstract class events<T>      extends Publisher.Callback<T> {}
 
@@ -35,10 +77,25 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
     public abstract static class OnSubscribed   extends events<ServerInfo> {}
     public abstract static class OnMessage extends events<JSONObject> {}
 
+    public static class DisconnectedException extends IllegalStateException {
+        public DisconnectedException(String uri) {
+            super("Disconnected from " + uri);
+        }
+    }
+
     private HashMap<AccountID, Account> accounts = new HashMap<AccountID, Account>();
-    SubscriptionManager subscriptions = new SubscriptionManager();
+    public SubscriptionManager subscriptions = new SubscriptionManager();
 
     public Account account(final AccountID id) {
+        return call(new Callable<Account>() {
+            @Override
+            public Account call() {
+                return accountInLoop(id);
+            }
+        });
+    }
+
+    private Account accountInLoop(AccountID id) {
         if (accounts.containsKey(id)) {
             return accounts.get(id);
         }
@@ -67,7 +124,9 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
     }
 
     private void requestAccountRoot(final AccountID id, final AccountRoot accountRoot, final int attempt) {
-        Request req = newRequest(Command.ledger_entry);
+        // Nothing is submitted for the account until it's primed, however
+        // long the connection takes
+        Request req = newRequest(Command.ledger_entry).timeout(Request.NO_TIMEOUT);
         req.json("account_root", id);
 
         req.on(Request.OnResponse.class, new Request.OnResponse() {
@@ -94,41 +153,374 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
     }
 
     public ServerInfo serverInfo = new ServerInfo();
-    public TreeMap<Integer, Request> requests = new TreeMap<Integer, Request>();
+    public static final int MAX_IN_FLIGHT = 65536;
+    public static final long DEFAULT_REQUEST_TIMEOUT = 60000;
+    public static final long DEFAULT_RECONNECT_BASE = 500;
+    public static final long DEFAULT_RECONNECT_CAP = 30000;
+
+    PendingRequests requests = new PendingRequests(MAX_IN_FLIGHT);
+    /**
+     * Requests with no timeout of their own expire after this, 0 for never
+     */
+    public long requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT;
+    /**
+     * Whether a read-only request, made while an identical one is in
+     * flight, waits on that rather than going on the wire itself
+     */
+    public boolean coalescing = true;
+    final Coalescer coalescer = new Coalescer();
+    volatile ResponseCache cache;
+    private final TimerWheel<Request> timeouts = new TimerWheel<Request>(100, 512, System.currentTimeMillis());
+    // Other work to be done later, on the loop
+    private final TimerWheel<Runnable> delayed = new TimerWheel<Runnable>(100, 512, System.currentTimeMillis());
+    private Thread sweeper;
+    // Once closed, no sweeper is started, nor request sent
+    private volatile boolean closed;
+    // Requests with nowhere to go until the primary connects, in order
+    private ArrayList<Request> awaitingConnection = new ArrayList<Request>();
+
+    private Backoff backoff = new Backoff(DEFAULT_RECONNECT_BASE, DEFAULT_RECONNECT_CAP);
+    private volatile boolean closing;
+    private boolean reconnectScheduled, everConnected;
 
     WebSocketTransport ws;
-    private int cmdIDs;
+    final Endpoint primary;
+    // The primary first
+    private final ArrayList<Endpoint> endpoints = new ArrayList<Endpoint>();
+    private final AtomicInteger cmdIDs = new AtomicInteger();
+    private final EventLoop loop;
+    private volatile Executor callbackExecutor;
 
     public Client(WebSocketTransport ws) {
+        this(ws, new EventLoop("ripple-client"));
+    }
+
+    public Client(WebSocketTransport ws, EventLoop loop) {
         this.ws = ws;
+        this.loop = loop;
+        this.primary = new Endpoint(ws, true);
+        endpoints.add(primary);
         ws.setHandler(this);
+
+        subscriptions.addStream(SubscriptionManager.Stream.ledger);
+        subscriptions.addStream(SubscriptionManager.Stream.server);
+        // Subscriptions added while disconnected are made on connecting
+        subscriptions.on(SubscriptionManager.OnSubscribed.class, new SubscriptionManager.OnSubscribed() {
+            @Override
+            public void called(JSONObject subscription) {
+                if (!connected) return;
+                subscribe(subscription);
+            }
+        });
+    }
+
+    /**
+     * Runs `task` on the event loop, immediately if already on it.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException once closed
+     */
+    public void run(Runnable task) {
+        if (loop.inLoop()) {
+            task.run();
+        } else {
+            loop.execute(task);
+        }
+    }
+
+    /**
+     * Runs `task` on the event loop, blocking the calling thread for the
+     * result. Must not be used from listeners running on the callbackExecutor
+     * while the loop is waiting on them.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException once closed
+     */
+    public <T> T call(Callable<T> task) {
+        if (loop.inLoop()) {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        FutureTask<T> future = new FutureTask<T>(task);
+        loop.execute(future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * @param executor settles the promises returned by `request`, so their
+     *                 listeners can block without stalling the loop
+     */
+    public void setCallbackExecutor(Executor executor) {
+        callbackExecutor = executor;
     }
 
     public void connect(String uri) {
-        // XXX: connect to other uris ... just parameterise connect here ??
+        closing = false;
+        primary.uri = uri;
         ws.connect(URI.create(uri));
     }
 
+    /**
+     * Closes the primary connection, for good, so it's not reconnected.
+     */
+    public void disconnect() {
+        closing = true;
+        run(new Runnable() {
+            @Override
+            public void run() {
+                ws.disconnect();
+                // The transport is muted on disconnecting, so won't tell us
+                handleDisconnected(false);
+            }
+        });
+    }
+
+    /**
+     * Disconnects from every endpoint, for good, and stops the client's
+     * threads, the sweeper and, once done with that, the event loop, so it
+     * can be collected. Requests in flight fail, and the client can't be
+     * used again.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        disconnect();
+        run(new Runnable() {
+            @Override
+            public void run() {
+                for (Endpoint endpoint : endpoints) {
+                    if (endpoint != primary) {
+                        endpoint.ws.disconnect();
+                    }
+                }
+                for (Request request : requests.snapshot()) {
+                    request.future().fail(new DisconnectedException(primary.uri));
+                }
+                for (Request request : takeAwaitingConnection()) {
+                    request.future().fail(new DisconnectedException(primary.uri));
+                }
+            }
+        });
+        stopSweeper();
+        loop.shutdown();
+    }
+
+    /**
+     * @param cache answers queries for validated data, may be null
+     */
+    public void setResponseCache(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @param backoff paces attempts to reconnect the primary, and those
+     *                to reconnect secondaries, each counted apart
+     */
+    public void setBackoff(final Backoff backoff) {
+        run(new Runnable() {
+            @Override
+            public void run() {
+                Client.this.backoff = backoff;
+            }
+        });
+    }
+
+    /**
+     * Connects to another server, to share the read-only requests with.
+     */
+    public Endpoint addEndpoint(WebSocketTransport transport, String uri) {
+        final Endpoint endpoint = new Endpoint(transport, false);
+        endpoint.uri = uri;
+        transport.setHandler(new EndpointHandler(endpoint));
+        run(new Runnable() {
+            @Override
+            public void run() {
+                endpoints.add(endpoint);
+            }
+        });
+        transport.connect(URI.create(uri));
+        return endpoint;
+    }
+
+    /**
+     * @return a copy of the endpoints, the primary first
+     */
+    public List<Endpoint> endpoints() {
+        return call(new Callable<List<Endpoint>>() {
+            @Override
+            public List<Endpoint> call() {
+                return new ArrayList<Endpoint>(endpoints);
+            }
+        });
+    }
+
+    private class EndpointHandler implements TransportEventHandler {
+        final Endpoint endpoint;
+        // Paced as the primary is, from the first drop
+        private Backoff backoff;
+        private boolean reconnectScheduled;
+
+        EndpointHandler(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void onMessage(JSONObject msg) {
+            Client.this.onFrame(new Frame(msg), endpoint);
+        }
+
+        @Override
+        public void onFrame(String text) {
+            Client.this.onFrame(Frame.parse(text), endpoint);
+        }
+
+        @Override
+        public void onConnecting(int attempt) {
+        }
+
+        @Override
+        public void onDisconnected(final boolean willReconnect) {
+            run(new Runnable() {
+                @Override
+                public void run() {
+                    ClientLogger.log("Disconnected from %s", endpoint.uri);
+                    endpoint.disconnected();
+                    failover(endpoint);
+                    if (!willReconnect && !closed) {
+                        scheduleReconnect();
+                    }
+                }
+            });
+        }
+
+        private void scheduleReconnect() {
+            if (reconnectScheduled) {
+                return;
+            }
+            reconnectScheduled = true;
+            if (backoff == null) {
+                backoff = Client.this.backoff.fresh();
+            }
+            long delay = backoff.next();
+            ClientLogger.log("Reconnecting to %s in %dms, attempt %d", endpoint.uri, delay, backoff.attempts());
+            schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reconnectScheduled = false;
+                    if (!endpoint.connected && !closed) {
+                        endpoint.ws.connect(URI.create(endpoint.uri));
+                    }
+                }
+            }, delay);
+        }
+
+        @Override
+        public void onError(Exception error) {
+        }
+
+        @Override
+        public void onConnected() {
+            run(new Runnable() {
+                @Override
+                public void run() {
+                    ClientLogger.log("Connected to %s", endpoint.uri);
+                    endpoint.connected = true;
+                    if (backoff != null) {
+                        backoff.reset();
+                    }
+                    subscribeToLoad(endpoint);
+                }
+            });
+        }
+    }
+
+    /**
+     * Subscribes to just the server stream of a secondary endpoint, to keep
+     * its load factor current.
+     */
+    private void subscribeToLoad(final Endpoint endpoint) {
+        Request request = newRequest(Command.subscribe).pin(endpoint).timeout(Request.NO_TIMEOUT);
+        request.json("streams", new JSONArray().put(SubscriptionManager.Stream.server.name()));
+        request.on(Request.OnSuccess.class, new Request.OnSuccess() {
+            @Override
+            public void called(Response response) {
+                endpoint.updateLoad(response.result);
+            }
+        });
+        request.request();
+    }
+
     @Override
     public void onMessage(JSONObject msg) {
+        onFrame(new Frame(msg), primary);
+    }
+
+    @Override
+    public void onFrame(String text) {
+        // Only the routing keys are extracted here, on the transport thread
+        onFrame(Frame.parse(text), primary);
+    }
+
+    private void onFrame(final Frame frame, final Endpoint endpoint) {
+        run(new Runnable() {
+            @Override
+            public void run() {
+                handleFrame(frame, endpoint);
+            }
+        });
+    }
+
+    void handleFrame(Frame frame) {
+        handleFrame(frame, primary);
+    }
+
+    /**
+     * Routes on the top level keys, so the whole message is only parsed if
+     * something needs it: OnMessage listeners, debug logging, or a message
+     * type that's consumed whole.
+     *
+     * Only the primary's stream messages update the client, those of other
+     * endpoints just update their load.
+     */
+    void handleFrame(Frame frame, Endpoint endpoint) {
         try {
-            emit(OnMessage.class, msg);
-            ClientLogger.log("Receive: %s", prettyJSON(msg));
+            if (hasListeners(OnMessage.class)) {
+                emit(OnMessage.class, frame.json());
+            }
+            if (ClientLogger.isEnabled(ClientLogger.Level.DEBUG)) {
+                ClientLogger.debug("Receive: %s", ClientLogger.pretty(frame.json()));
+            }
 
-            switch (Message.valueOf(msg.optString("type", null))) {
+            switch (Message.valueOf(frame.type())) {
                 case serverStatus:
                 case ledgerClosed:
-                    updateServerInfo(msg);
-                    emit(OnLedgerClosed.class, serverInfo);
+                    endpoint.updateLoad(frame.json());
+                    if (endpoint.primary) {
+                        updateServerInfo(frame.json());
+                        emit(OnLedgerClosed.class, serverInfo);
+                    }
                     break;
                 case response:
-                    onResponse(msg);
+                    onResponse(frame, endpoint);
                     break;
                 case transaction:
-                    onTransaction(msg);
+                    if (endpoint.primary) {
+                        onTransaction(frame.json());
+                    }
                     break;
                 default:
-                    unhandledMessage(msg);
+                    unhandledMessage(frame.json());
                     break;
             }
         } catch (Exception e) {
@@ -144,7 +536,7 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
                                                             .transaction_subscription_notification);
 
         if (tr.validated) {
-            ClientLogger.log("Transaction %s is validated", tr.hash);
+            ClientLogger.debug("Transaction %s is validated", tr.hash);
             Map<AccountID, STObject> affected = tr.modifiedRoots();
 
             if (affected != null) {
@@ -162,10 +554,10 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
 
             Account initator = accounts.get(tr.initiatingAccount());
             if (initator != null) {
-                ClientLogger.log("Found initiator %s, notifying transactionManager", initator);
+                ClientLogger.debug("Found initiator %s, notifying transactionManager", initator);
                 initator.transactionManager().onTransactionResultMessage(tr);
             } else {
-                ClientLogger.log("Can't find initiating account!");
+                ClientLogger.debug("Can't find initiating account!");
             }
 
         }
@@ -175,12 +567,215 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
         throw new RuntimeException("Unhandled message: " + msg);
     }
 
-    void onResponse(JSONObject msg) {
-        Request request = requests.get(msg.optInt("id", -1));
+    boolean addPending(Request request) {
+        return requests.add(request);
+    }
+
+    void removePending(int id) {
+        requests.remove(id);
+    }
+
+    Request pending(int id) {
+        return requests.get(id);
+    }
+
+    /**
+     * @return the number of requests sent and awaiting a response
+     */
+    public int inFlight() {
+        return requests.inFlight();
+    }
+
+    /**
+     * @return the number of requests waiting on a deadline, including those
+     *         not yet sent
+     */
+    public int awaitingDeadline() {
+        return timeouts.size();
+    }
+
+    TimerWheel.Timeout<Request> scheduleTimeout(Request request, long millis) {
+        startSweeper();
+        return timeouts.schedule(request, System.currentTimeMillis(), millis);
+    }
+
+    /**
+     * Runs `task` on the loop, no sooner than `millis` from now
+     */
+    void schedule(Runnable task, long millis) {
+        startSweeper();
+        delayed.schedule(task, System.currentTimeMillis(), millis);
+    }
+
+    private synchronized void startSweeper() {
+        if (sweeper != null || closed) {
+            return;
+        }
+        sweeper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(timeouts.tickMillis());
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long now = System.currentTimeMillis();
+                    for (final Request request : timeouts.advance(now)) {
+                        Client.this.run(new Runnable() {
+                            @Override
+                            public void run() {
+                                request.expire();
+                            }
+                        });
+                    }
+                    for (Runnable task : delayed.advance(now)) {
+                        Client.this.run(task);
+                    }
+                }
+            }
+        }, "ripple-client-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    private synchronized void stopSweeper() {
+        closed = true;
+        if (sweeper != null) {
+            sweeper.interrupt();
+        }
+    }
+
+    synchronized Thread sweeper() {
+        return sweeper;
+    }
+
+    boolean closed() {
+        return closed;
+    }
+
+    /**
+     * Holds `request` until the primary connects, when it's routed again.
+     */
+    void awaitConnection(Request request) {
+        if (closed) {
+            request.future().fail(new DisconnectedException(primary.uri));
+            return;
+        }
+        awaitingConnection.add(request);
+    }
+
+    private ArrayList<Request> takeAwaitingConnection() {
+        ArrayList<Request> waiting = awaitingConnection;
+        awaitingConnection = new ArrayList<Request>();
+        return waiting;
+    }
+
+    /**
+     * Commands that don't change anything, and so can be sent to any server,
+     * and resent to another
+     */
+    public static final EnumSet<Command> READ_ONLY = EnumSet.of(
+            Command.account_info,
+            Command.account_lines,
+            Command.account_offers,
+            Command.account_tx,
+            Command.book_offers,
+            Command.ledger,
+            Command.ledger_closed,
+            Command.ledger_current,
+            Command.ledger_entry,
+            Command.ping,
+            Command.ripple_path_find,
+            Command.server_info,
+            Command.server_state,
+            Command.transaction_entry,
+            Command.tx,
+            Command.tx_history);
+
+    /**
+     * @return where to send `request`, or null if nowhere suitable is
+     *         connected
+     */
+    Endpoint route(Request request) {
+        if (request.pinned != null) {
+            return request.pinned.connected ? request.pinned : null;
+        }
+        if (!READ_ONLY.contains(request.cmd)) {
+            return primary.connected ? primary : null;
+        }
+        Endpoint best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.connected) {
+                double cost = endpoint.cost();
+                if (cost < bestCost) {
+                    best = endpoint;
+                    bestCost = cost;
+                }
+            }
+        }
+        return best;
+    }
+
+    public Endpoint primary() {
+        return primary;
+    }
+
+    void send(Request request, Endpoint endpoint) {
+        request.endpoint = endpoint;
+        request.sentNanos = System.nanoTime();
+        endpoint.sent();
+        JSONObject json = request.json();
+        if (ClientLogger.isEnabled(ClientLogger.Level.DEBUG)) {
+            ClientLogger.debug("Send to %s: %s", endpoint.uri, ClientLogger.pretty(json));
+        }
+        endpoint.ws.sendMessage(json);
+    }
+
+    /**
+     * Resends the read-only requests awaiting `dropped`, wherever they'd be
+     * routed now, or once the primary reconnects. Subscriptions are dropped,
+     * as they're all remade on reconnecting, and anything else fails.
+     */
+    private void failover(Endpoint dropped) {
+        for (Request request : requests.snapshot()) {
+            if (request.endpoint != dropped) {
+                continue;
+            }
+            if (request.pinned == null && READ_ONLY.contains(request.cmd)) {
+                ClientLogger.debug("Resending %s request %d, sent to %s", request.cmd, request.id, dropped.uri);
+                request.resend();
+            } else if (request.pinned == null && request.cmd == Command.subscribe) {
+                request.cancel();
+            } else {
+                request.future().fail(new DisconnectedException(dropped.uri));
+            }
+        }
+    }
+
+    void cacheResponse(Request request, Response response) {
+        ResponseCache cache = this.cache;
+        if (cache == null || !response.succeeded || !ResponseCache.cacheable(request.cmd, request.json())) {
+            return;
+        }
+        // The ledger stream only reports validated ledgers
+        if (ResponseCache.immutable(request.cmd, request.json(), response.result, serverInfo.ledger_index)) {
+            cache.put(request.key(), response.result);
+        }
+    }
+
+    void onResponse(Frame msg, Endpoint endpoint) {
+        Request request = pending(msg.id());
         if (request == null) {
             // TODO: should warn?
             return;
         }
+        if (request.endpoint != endpoint) {
+            // Answered by a server it's since been resent away from
+            return;
+        }
+        endpoint.sample((System.nanoTime() - request.sentNanos) / 1e6);
 
         switch (request.cmd) {
             case subscribe:
@@ -252,30 +847,86 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
     }
 
     @Override
-    public void onDisconnected(boolean willReconnect) {
+    public void onDisconnected(final boolean willReconnect) {
+        run(new Runnable() {
+            @Override
+            public void run() {
+                handleDisconnected(willReconnect);
+            }
+        });
+    }
+
+    /**
+     * @param willReconnect whether the transport will reconnect by itself,
+     *                      otherwise the client does
+     */
+    void handleDisconnected(boolean willReconnect) {
+        boolean wasConnected = connected;
         connected = false;
-        ClientLogger.log("onDisconnected");
-        emit(OnDisconnected.class, this);
+        primary.disconnected();
+        failover(primary);
+        if (wasConnected) {
+            ClientLogger.log("onDisconnected");
+            emit(OnDisconnected.class, this);
+        }
+        if (!willReconnect && !closing && primary.uri != null) {
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+        if (reconnectScheduled) {
+            return;
+        }
+        reconnectScheduled = true;
+        long delay = backoff.next();
+        ClientLogger.log("Reconnecting to %s in %dms, attempt %d", primary.uri, delay, backoff.attempts());
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                reconnectScheduled = false;
+                if (!connected && !closing) {
+                    ws.connect(URI.create(primary.uri));
+                }
+            }
+        }, delay);
     }
 
     @Override
-    public void
-    onConnected() {
+    public void onConnected() {
+        run(new Runnable() {
+            @Override
+            public void run() {
+                handleConnected();
+            }
+        });
+    }
+
+    void handleConnected() {
         connected = true;
+        primary.connected = true;
+        boolean reconnected = everConnected;
+        everConnected = true;
+        backoff.reset();
+
         ClientLogger.log("onConnected");
+        // Sends the requests waiting on a connection, replays included
+        for (Request request : takeAwaitingConnection()) {
+            request.route();
+        }
         emit(OnConnected.class, this);
-        subscribe(prepareSubscription());
-        subscriptions.on(SubscriptionManager.OnSubscribed.class, new SubscriptionManager.OnSubscribed() {
-            @Override
-            public void called(JSONObject subscription) {
-                if (!connected) return;
-                subscribe(subscription);
+        subscribe(subscriptions.allSubscribed());
+
+        if (reconnected) {
+            for (Account account : accounts.values()) {
+                account.transactionManager().reconcile();
             }
-        });
+        }
     }
 
     private void subscribe(JSONObject subscription) {
-        Request request = newRequest(Command.subscribe);
+        // Superseded, rather than timed out, should the connection drop
+        Request request = newRequest(Command.subscribe).timeout(Request.NO_TIMEOUT);
 
         request.json(subscription);
         request.on(Request.OnSuccess.class, new Request.OnSuccess() {
@@ -288,14 +939,38 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
         request.request();
     }
 
-    private JSONObject prepareSubscription() {
-        subscriptions.addStream(SubscriptionManager.Stream.ledger);
-        subscriptions.addStream(SubscriptionManager.Stream.server);
-        return subscriptions.allSubscribed();
+    public Request newRequest(Command cmd) {
+        // Never negative, as -1 is reserved by PendingRequests
+        return new Request(cmd, cmdIDs.getAndIncrement() & Integer.MAX_VALUE, this);
     }
 
-    public Request newRequest(Command cmd) {
-        return new Request(cmd, cmdIDs++, this);
+    /**
+     * @param params        merged into the request, may be null
+     * @param timeoutMillis 0 for the client's requestTimeoutMillis
+     */
+    public Promise<Response> request(Command cmd, JSONObject params, long timeoutMillis) {
+        Request request = newRequest(cmd);
+        if (params != null) {
+            request.json(params);
+        }
+        request.timeout(timeoutMillis);
+        request.request();
+
+        Executor executor = callbackExecutor;
+        return executor == null ? request.future() : request.future().via(executor);
+    }
+
+    /**
+     * Fans out a request per params, all with the same timeout.
+     *
+     * @return the responses, in the same order as `params`
+     */
+    public Promise<List<Response>> requestAll(Command cmd, List<JSONObject> params, long timeoutMillis) {
+        ArrayList<Promise<Response>> promises = new ArrayList<Promise<Response>>(params.size());
+        for (JSONObject param : params) {
+            promises.add(request(cmd, param, timeoutMillis));
+        }
+        return Promise.all(promises);
     }
 
     public static JSONObject parseJSON(String s) {
@@ -307,15 +982,9 @@ public class Client extends Publisher<Client.events> implements TransportEventHa
     }
 
     public void sendMessage(JSONObject object) {
-        ClientLogger.log("Send: %s", prettyJSON(object));
-        ws.sendMessage(object);
-    }
-
-    private String prettyJSON(JSONObject object)  {
-        try {
-            return object.toString(4);
-        } catch (JSONException e) {
-            throw new RuntimeException(e);
+        if (ClientLogger.isEnabled(ClientLogger.Level.DEBUG)) {
+            ClientLogger.debug("Send: %s", ClientLogger.pretty(object));
         }
+        ws.sendMessage(object);
     }
 }
@@ -1,18 +1,65 @@
 package com.ripple.client;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Leveled logging, with guards checked before any formatting is done. For
+ * arguments that are costly to render, pass something whose toString does
+ * the work, such as `pretty(json)`, so it's only done when enabled.
+ */
 public class ClientLogger {
-    public static boolean quiet;
-    public static Logger logger = new Logger() {
-        @Override
-        public void log(String fmt, Object... args) {
-            if (quiet) {
-                return;
-            }
-            System.out.printf(fmt + "\n", args);
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR
+    }
+
+    public static volatile boolean quiet;
+    public static volatile Level level = Level.INFO;
+    public static Logger logger = new AsyncLogger(System.out, 8192);
+
+    public static boolean isEnabled(Level at) {
+        return !quiet && at.compareTo(level) >= 0;
+    }
+
+    public static void log(Level at, String fmt, Object... args) {
+        if (isEnabled(at)) {
+            logger.log(fmt, args);
         }
-    };
+    }
 
     public static void log(String fmt, Object... args) {
-        logger.log(fmt, args);
+        log(Level.INFO, fmt, args);
+    }
+
+    public static void trace(String fmt, Object... args) {
+        log(Level.TRACE, fmt, args);
+    }
+
+    public static void debug(String fmt, Object... args) {
+        log(Level.DEBUG, fmt, args);
+    }
+
+    public static void warn(String fmt, Object... args) {
+        log(Level.WARN, fmt, args);
+    }
+
+    public static void error(String fmt, Object... args) {
+        log(Level.ERROR, fmt, args);
+    }
+
+    /**
+     * @return an argument that indents `json` only when formatted
+     */
+    public static Object pretty(final JSONObject json) {
+        return new Object() {
+            @Override
+            public String toString() {
+                try {
+                    return json.toString(4);
+                } catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
     }
 }
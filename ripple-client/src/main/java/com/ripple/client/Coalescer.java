@@ -0,0 +1,96 @@
+package com.ripple.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * The read-only requests on the wire, by a canonical form of their command
+ * and parameters, so a duplicate made while one is outstanding can wait on
+ * that instead of making its own round trip.
+ *
+ * Like the rest of the client state, it's only touched on the event loop.
+ */
+public class Coalescer {
+    private final HashMap<String, Request> leaders = new HashMap<String, Request>();
+
+    /**
+     * @return the outstanding request with `key`, or null if there's none
+     */
+    Request leader(String key) {
+        Request leader = leaders.get(key);
+        if (leader != null && leader.future().isDone()) {
+            // Settled, but not yet told us
+            leaders.remove(key);
+            return null;
+        }
+        return leader;
+    }
+
+    void lead(String key, Request request) {
+        leaders.put(key, request);
+    }
+
+    void settled(String key, Request request) {
+        if (leaders.get(key) == request) {
+            leaders.remove(key);
+        }
+    }
+
+    public int size() {
+        return leaders.size();
+    }
+
+    /**
+     * @return the request as JSON, less the id, with the keys of every object
+     *         sorted, so equal requests have equal keys
+     */
+    public static String key(JSONObject request) {
+        StringBuilder key = new StringBuilder();
+        appendObject(key, request, "id");
+        return key.toString();
+    }
+
+    private static void appendObject(StringBuilder key, JSONObject object, String skip) {
+        TreeSet<String> names = new TreeSet<String>();
+        Iterator<?> keys = object.keys();
+        while (keys.hasNext()) {
+            names.add((String) keys.next());
+        }
+        if (skip != null) {
+            names.remove(skip);
+        }
+
+        key.append('{');
+        boolean first = true;
+        for (String name : names) {
+            if (!first) key.append(',');
+            first = false;
+            key.append(JSONObject.quote(name)).append(':');
+            append(key, object.opt(name));
+        }
+        key.append('}');
+    }
+
+    private static void append(StringBuilder key, Object value) {
+        if (value instanceof JSONObject) {
+            appendObject(key, (JSONObject) value, null);
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            key.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) key.append(',');
+                append(key, array.opt(i));
+            }
+            key.append(']');
+        } else if (value instanceof Number || value instanceof Boolean) {
+            key.append(value);
+        } else {
+            // Strings, and things like AccountID that serialize as them
+            key.append(JSONObject.quote(String.valueOf(value)));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ripple.client;
+
+import com.ripple.client.transport.WebSocketTransport;
+import org.json.JSONObject;
+
+/**
+ * A connection to one rippled server, with what we've learned about how
+ * quickly it answers: an exponentially weighted moving average of response
+ * times, the load factor it last reported, and how many requests it has yet
+ * to answer.
+ *
+ * Like the rest of the client state, it's only touched on the event loop.
+ */
+public class Endpoint {
+    /**
+     * Assumed until the first response is timed, so a new endpoint gets
+     * traffic without being flooded with it
+     */
+    public static final double INITIAL_RTT_MILLIS = 100;
+    // Weight of each new sample
+    static final double ALPHA = 0.2;
+
+    public final WebSocketTransport ws;
+    public final boolean primary;
+    public String uri;
+
+    boolean connected;
+    double rttMillis = INITIAL_RTT_MILLIS;
+    int loadFactor = 256, loadBase = 256;
+    int inFlight;
+
+    Endpoint(WebSocketTransport ws, boolean primary) {
+        this.ws = ws;
+        this.primary = primary;
+    }
+
+    public boolean connected() {
+        return connected;
+    }
+
+    public double rttMillis() {
+        return rttMillis;
+    }
+
+    public double load() {
+        return (double) loadFactor / loadBase;
+    }
+
+    public int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * The expected wait for a request sent now: the server's response time,
+     * scaled by its load, and by the queue of requests ahead of it.
+     */
+    public double cost() {
+        return rttMillis * load() * (inFlight + 1);
+    }
+
+    void sent() {
+        inFlight++;
+    }
+
+    void finished() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+    }
+
+    void sample(double millis) {
+        rttMillis += ALPHA * (millis - rttMillis);
+    }
+
+    void updateLoad(JSONObject msg) {
+        loadBase = msg.optInt("load_base", loadBase);
+        loadFactor = msg.optInt("load_factor", loadFactor);
+        if (loadBase <= 0) {
+            loadBase = 256;
+        }
+    }
+
+    /**
+     * Pending requests sent here are resent elsewhere when it drops
+     */
+    void disconnected() {
+        connected = false;
+        inFlight = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Endpoint(%s, rtt=%.1fms, load=%.2f, inFlight=%d)",
+                uri, rttMillis, load(), inFlight);
+    }
+}
@@ -1,17 +1,105 @@
 package com.ripple.client;
 
 import com.ripple.core.types.AccountID;
+import com.ripple.core.types.hash.Hash256;
 import com.ripple.crypto.ecdsa.IKeyPair;
+import com.ripple.crypto.ecdsa.Seed;
+import com.ripple.utils.Chunked;
+import com.ripple.utils.Utils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Holds key pairs by account, and derives key pairs from seeds, caching
+ * them in a bounded LRU keyed by a fingerprint (sha512 half) of the seed.
+ *
+ * All methods are thread safe. Bulk derivation is split over the executor,
+ * if one is given.
+ */
 public class KeyStore {
+    public static final int DEFAULT_CACHE_SIZE = 100000;
+
     private final HashMap<AccountID, IKeyPair> keys = new HashMap<AccountID, IKeyPair>();
+    private final LinkedHashMap<Hash256, IKeyPair> derived;
+    private final ExecutorService executor;
+
+    public KeyStore() {
+        this(DEFAULT_CACHE_SIZE, null);
+    }
+
+    public KeyStore(final int cacheSize, ExecutorService executor) {
+        this.executor = executor;
+        this.derived = new LinkedHashMap<Hash256, IKeyPair>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Hash256, IKeyPair> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
 
-    public void put(AccountID id, IKeyPair keyPair) {
+    public synchronized void put(AccountID id, IKeyPair keyPair) {
         keys.put(id, keyPair);
     }
-    public IKeyPair get(AccountID id) {
+    public synchronized IKeyPair get(AccountID id) {
         return keys.get(id);
     }
+
+    public IKeyPair derive(byte[] seed) {
+        Hash256 fingerprint = fingerprint(seed);
+        IKeyPair keyPair;
+
+        synchronized (derived) {
+            keyPair = derived.get(fingerprint);
+        }
+        if (keyPair == null) {
+            keyPair = Seed.createKeyPair(seed);
+            synchronized (derived) {
+                derived.put(fingerprint, keyPair);
+            }
+        }
+        return keyPair;
+    }
+
+    /**
+     * @return the key pairs, in the same order as `seeds`
+     */
+    public List<IKeyPair> deriveAll(final List<byte[]> seeds) {
+        final int n = seeds.size();
+        final IKeyPair[] keyPairs = new IKeyPair[n];
+
+        Chunked.run(executor, n, Chunked.chunkSize(n, 4, 1), new Chunked.Task<Void>() {
+            @Override
+            public Void run(int from, int to) {
+                deriveRange(seeds, keyPairs, from, to);
+                return null;
+            }
+        });
+
+        ArrayList<IKeyPair> result = new ArrayList<IKeyPair>(n);
+        for (IKeyPair keyPair : keyPairs) {
+            result.add(keyPair);
+        }
+        return result;
+    }
+
+    private void deriveRange(List<byte[]> seeds, IKeyPair[] keyPairs, int from, int to) {
+        for (int i = from; i < to; i++) {
+            keyPairs[i] = derive(seeds.get(i));
+        }
+    }
+
+    public int cachedDerivations() {
+        synchronized (derived) {
+            return derived.size();
+        }
+    }
+
+    private static Hash256 fingerprint(byte[] seed) {
+        return new Hash256(Utils.halfSha512(seed));
+    }
 }
@@ -1,5 +1,6 @@
 package com.ripple.client;
 
+import com.ripple.client.async.EventLoop;
 import com.ripple.client.transport.TransportEventHandler;
 import com.ripple.client.transport.WebSocketTransport;
 import org.json.JSONException;
@@ -10,7 +11,7 @@ import java.util.ArrayList;
 
 public class MockPair {
     RippledMock server = new RippledMock();
-    Client client = new Client(server.ws);
+    Client client = new Client(server.ws, EventLoop.callerRuns());
 
     public MockPair connect() {
         client.connect("wss://this.doesnt.matter.com");
@@ -30,7 +31,7 @@ public class MockPair {
         }
 
         public Request getRequest(Client c) {
-            return c.requests.get(msg.optInt("id", -1));
+            return c.pending(msg.optInt("id", -1));
         }
 
     }
@@ -42,6 +43,7 @@ public class MockPair {
         class MockSocket implements WebSocketTransport, TransportEventHandler {
             TransportEventHandler handler;
             boolean connected;
+            volatile int connects;
 
             @Override
             public void setHandler(TransportEventHandler events) {
@@ -56,6 +58,7 @@ public class MockPair {
             @Override
             public void connect(URI url) {
                 connected = true;
+                connects++;
             }
 
             @Override
@@ -68,6 +71,11 @@ public class MockPair {
                 handler.onMessage(msg);
             }
 
+            @Override
+            public void onFrame(String frame) {
+                handler.onFrame(frame);
+            }
+
             @Override
             public void onConnecting(int attempt) {
                 handler.onConnecting(attempt);
@@ -109,7 +117,8 @@ public class MockPair {
             }
         }
         public void sendMessage(JSONObject json) {
-            ws.onMessage(json);
+            // As text, as a real transport would
+            ws.onFrame(json.toString());
         }
 
         public ArrayList<Message> unreadMarked() {
@@ -147,6 +156,21 @@ public class MockPair {
             }
         }
 
+        public void respondError(Request request, String error) {
+            JSONObject response = new JSONObject();
+
+            try {
+                response.put("error", error);
+                response.put("id", request.id);
+                response.put("status", "error");
+                response.put("type", "response");
+
+                sendMessage(response);
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         public void respondSuccess(Request request, JSONObject result) {
             respond(request, "success", result);
         }
@@ -0,0 +1,160 @@
+package com.ripple.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The in-flight requests, by id, in an open addressing (linear probing)
+ * table of primitive int keys, so lookups don't box or allocate.
+ *
+ * The table is bounded, `add` refuses requests once `capacity` are in
+ * flight, and entries are removed as soon as the request settles.
+ */
+public class PendingRequests {
+    private static final int FREE = -1;
+
+    private final int capacity;
+    private int[] ids;
+    private Request[] requests;
+    private int size;
+    private long added, removed;
+
+    public PendingRequests(int capacity) {
+        this.capacity = capacity;
+        allocate(16);
+    }
+
+    private void allocate(int slots) {
+        ids = new int[slots];
+        requests = new Request[slots];
+        Arrays.fill(ids, FREE);
+    }
+
+    private int slot(int id) {
+        // Ids are sequential, so a multiplicative hash spreads them
+        return (id * 0x9E3779B9 >>> 7) & (ids.length - 1);
+    }
+
+    /**
+     * @return false if the table is at capacity
+     */
+    public synchronized boolean add(Request request) {
+        if (size >= capacity) {
+            return false;
+        }
+        if ((size + 1) * 2 > ids.length) {
+            resize(ids.length * 2);
+        }
+        int i = slot(request.id);
+        while (ids[i] != FREE) {
+            if (ids[i] == request.id) {
+                requests[i] = request;
+                return true;
+            }
+            i = (i + 1) & (ids.length - 1);
+        }
+        ids[i] = request.id;
+        requests[i] = request;
+        size++;
+        added++;
+        return true;
+    }
+
+    public synchronized Request get(int id) {
+        int i = find(id);
+        return i == -1 ? null : requests[i];
+    }
+
+    public synchronized Request remove(int id) {
+        int i = find(id);
+        if (i == -1) {
+            return null;
+        }
+        Request request = requests[i];
+        deleteSlot(i);
+        size--;
+        removed++;
+        return request;
+    }
+
+    private int find(int id) {
+        if (id == FREE) {
+            return -1;
+        }
+        int i = slot(id);
+        while (ids[i] != FREE) {
+            if (ids[i] == id) {
+                return i;
+            }
+            i = (i + 1) & (ids.length - 1);
+        }
+        return -1;
+    }
+
+    // Shifts back any entries in the probe run, rather than leaving tombstones
+    private void deleteSlot(int hole) {
+        int mask = ids.length - 1;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (ids[i] == FREE) {
+                break;
+            }
+            int home = slot(ids[i]);
+            // Move it if its home is not cyclically within (hole, i]
+            if (hole <= i ? (home <= hole || home > i) : (home <= hole && home > i)) {
+                ids[hole] = ids[i];
+                requests[hole] = requests[i];
+                hole = i;
+            }
+        }
+        ids[hole] = FREE;
+        requests[hole] = null;
+    }
+
+    private void resize(int slots) {
+        int[] oldIds = ids;
+        Request[] oldRequests = requests;
+        allocate(slots);
+        for (int j = 0; j < oldIds.length; j++) {
+            if (oldIds[j] != FREE) {
+                int i = slot(oldIds[j]);
+                while (ids[i] != FREE) {
+                    i = (i + 1) & (ids.length - 1);
+                }
+                ids[i] = oldIds[j];
+                requests[i] = oldRequests[j];
+            }
+        }
+    }
+
+    /**
+     * @return the requests in the table, in no particular order
+     */
+    public synchronized List<Request> snapshot() {
+        ArrayList<Request> snapshot = new ArrayList<Request>(size);
+        for (Request request : requests) {
+            if (request != null) {
+                snapshot.add(request);
+            }
+        }
+        return snapshot;
+    }
+
+    public synchronized int inFlight() {
+        return size;
+    }
+
+    public synchronized long added() {
+        return added;
+    }
+
+    public synchronized long removed() {
+        return removed;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -1,11 +1,16 @@
 package com.ripple.client;
 
+import com.ripple.client.async.Promise;
+import com.ripple.client.async.TimerWheel;
 import com.ripple.client.enums.Command;
 import com.ripple.client.pubsub.Publisher;
+import com.ripple.client.transport.Frame;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 // We can just shift to using delegation
 public class Request extends Publisher<Request.events> {
@@ -22,12 +27,27 @@ public class Request extends Publisher<Request.events> {
     public abstract static class OnSuccess  extends events<Response> {}
     public abstract static class OnError    extends events<Response> {}
     public abstract static class OnResponse extends events<Response> {}
+    public abstract static class OnTimeout  extends events<Request> {}
+
+    /**
+     * For `timeout`, to never time out, whatever the client's default
+     */
+    public static final long NO_TIMEOUT = -1;
 
     Client                client;
     public Command           cmd;
     public Response     response;
     private JSONObject      json;
     int                       id;
+    long           timeoutMillis;
+    private final Promise<Response> future = new Promise<Response>();
+    private TimerWheel.Timeout<Request> timeout;
+    // Where it was last sent, and when, and where it must be
+    Endpoint            endpoint;
+    long               sentNanos;
+    Endpoint              pinned;
+    // The canonical form, for the Coalescer and ResponseCache
+    private String           key;
 
     public Request(Command command, int assignedId, Client client) {
         this.client = client;
@@ -37,6 +57,68 @@ public class Request extends Publisher<Request.events> {
 
         json("command", cmd.toString());
         json("id",      assignedId);
+
+        // The callback events are driven by the future
+        future.onDone(new Promise.Listener<Response>() {
+            @Override
+            public void called(final Promise<Response> promise) {
+                try {
+                    Request.this.client.run(new Runnable() {
+                        @Override
+                        public void run() {
+                            onSettled(promise);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The client's closed, and its loop gone, so nothing
+                    // else is running on it
+                    onSettled(promise);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return settled with the response, whether succeeded or not, or failed
+     *         with a TimeoutException, or cancelled
+     */
+    public Promise<Response> future() {
+        return future;
+    }
+
+    /**
+     * Fails the request if there's no response within `millis` of calling
+     * request(), which includes any time spent waiting for a connection.
+     *
+     * Defaults to the client's requestTimeoutMillis, as does 0, or pass
+     * NO_TIMEOUT for requests that must wait as long as it takes.
+     */
+    public Request timeout(long millis) {
+        timeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * Sends the request only to `endpoint`, rather than wherever the client
+     * would route it. It fails if the endpoint drops before answering.
+     */
+    public Request pin(Endpoint endpoint) {
+        pinned = endpoint;
+        return this;
+    }
+
+    /**
+     * @return the endpoint it was last sent to, or null if not yet sent
+     */
+    public Endpoint endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Abandons the request, so any response that does arrive is ignored.
+     */
+    public boolean cancel() {
+        return future.cancel(false);
     }
 
     public JSONObject json() {
@@ -52,23 +134,178 @@ public class Request extends Publisher<Request.events> {
     }
 
     public void request() {
-        Client.OnConnected onConnected = new Client.OnConnected() {
+        if (client.closed()) {
+            future.fail(new Client.DisconnectedException(client.primary.uri));
+            return;
+        }
+        long millis = timeoutMillis != 0 ? timeoutMillis : client.requestTimeoutMillis;
+        if (millis > 0) {
+            scheduleTimeout(millis);
+        }
+
+        client.run(new Runnable() {
+            @Override
+            public void run() {
+                requestInLoop();
+            }
+        });
+    }
+
+    /**
+     * Sends it wherever it would be routed now, as the primary connected.
+     */
+    void route() {
+        requestInLoop();
+    }
+
+    private void requestInLoop() {
+        if (future.isDone()) {
+            return;
+        }
+        if (pinned == null && Client.READ_ONLY.contains(cmd)) {
+            ResponseCache cache = client.cache;
+            if (cache != null && ResponseCache.cacheable(cmd, json)) {
+                JSONObject cached = cache.get(key());
+                if (cached != null) {
+                    settleFromCache(cached);
+                    return;
+                }
+            }
+            if (client.coalescing) {
+                Request leader = client.coalescer.leader(key());
+                if (leader == null) {
+                    client.coalescer.lead(key(), this);
+                } else if (leader != this) {
+                    follow(leader);
+                    return;
+                }
+            }
+        }
+        Endpoint routed = client.route(this);
+        if (routed == null) {
+            if (pinned != null) {
+                future.fail(new IllegalStateException("Not connected to " + pinned.uri));
+                return;
+            }
+            // Nowhere to send it until the primary connects
+            client.awaitConnection(this);
+            return;
+        }
+        if (!client.addPending(this)) {
+            future.fail(new IllegalStateException("Too many requests in flight"));
+            return;
+        }
+        client.send(this, routed);
+    }
+
+    String key() {
+        if (key == null) {
+            key = Coalescer.key(json);
+        }
+        return key;
+    }
+
+    private void settleFromCache(JSONObject result) {
+        JSONObject message = new JSONObject();
+        try {
+            message.put("id", id);
+            message.put("status", "success");
+            message.put("type", "response");
+            message.put("result", result);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        response = new Response(this, message);
+        future.complete(response);
+    }
+
+    /**
+     * Settles with the response to an identical request already on the wire.
+     * Should that settle without one, as when cancelled by its caller, this
+     * is requested again.
+     */
+    private void follow(final Request leader) {
+        leader.future().onDone(new Promise.Listener<Response>() {
             @Override
-            public void called(Client client) {
-                client.requests.put(id, Request.this);
-                client.sendMessage(toJSON());
+            public void called(final Promise<Response> promise) {
+                client.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (future.isDone()) {
+                            return;
+                        }
+                        if (promise.succeeded()) {
+                            response = promise.value().copyFor(Request.this);
+                            future.complete(response);
+                        } else {
+                            requestInLoop();
+                        }
+                    }
+                });
             }
-        };
+        });
+    }
+
+    /**
+     * Sends it again, wherever it would be routed now, as the endpoint it was
+     * sent to dropped.
+     */
+    void resend() {
+        client.removePending(id);
+        endpoint = null;
+        requestInLoop();
+    }
 
-        if (client.connected) {
-            onConnected.called(client);
-        }  else {
-            client.once(Client.OnConnected.class, onConnected);
+    private void scheduleTimeout(long millis) {
+        TimerWheel.Timeout<Request> scheduled = client.scheduleTimeout(this, millis);
+
+        synchronized (this) {
+            timeout = scheduled;
+        }
+        // It may have settled before we got the handle
+        if (future.isDone()) {
+            scheduled.cancel();
         }
     }
 
-    private JSONObject toJSON() {
-        return json();
+    /**
+     * Called by the client's sweeper, once the deadline has passed
+     */
+    void expire() {
+        future.fail(new TimeoutException(cmd + " request " + id + " timed out"));
+    }
+
+    private void onSettled(Promise<Response> promise) {
+        synchronized (this) {
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+        client.removePending(id);
+        if (key != null) {
+            client.coalescer.settled(key, this);
+        }
+        if (endpoint != null) {
+            endpoint.finished();
+        }
+
+        if (promise.succeeded()) {
+            Response response = promise.value();
+            if (response.succeeded) {
+                emit(OnSuccess.class, response);
+            } else {
+                emit(OnError.class, response);
+            }
+            emit(OnResponse.class, response);
+        } else {
+            if (promise.failure() instanceof TimeoutException) {
+                emit(OnTimeout.class, this);
+            }
+            // So those waiting on a response don't wait forever
+            Response failed = Response.failed(this, promise.failure());
+            emit(OnError.class, failed);
+            emit(OnResponse.class, failed);
+        }
     }
 
     public static class ResponseError {
@@ -76,22 +313,22 @@ public class Request extends Publisher<Request.events> {
     }
 
     public void handleResponse(JSONObject msg) {
+        handleResponse(new Frame(msg));
+    }
+
+    public void handleResponse(Frame frame) {
+        if (future.isDone()) {
+            // Timed out or cancelled
+            return;
+        }
         try {
-            response = new Response(this, msg);
+            response = new Response(this, frame);
         } catch (Exception e) {
-            try {
-                System.out.println(msg.toString(4));
-            } catch (JSONException ignored) {
-            }
+            ClientLogger.error("Bad response: %s", ClientLogger.pretty(frame.json()));
             throw new RuntimeException(e);
         }
 
-        if (response.succeeded) {
-            emit(OnSuccess.class, response);
-        } else {
-            emit(OnError.class, response);
-        }
-
-        emit(OnResponse.class, response);
+        client.cacheResponse(this, response);
+        future.complete(response);
     }
 }
@@ -1,10 +1,14 @@
 package com.ripple.client;
 
 import com.ripple.client.enums.RPCErr;
+import com.ripple.client.transport.Frame;
 import com.ripple.core.enums.TransactionEngineResult;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+
 public class Response {
     public JSONObject message;
     public Request request;
@@ -14,30 +18,121 @@ public class Response {
     public RPCErr rpcerr;
     public String error;
     public String error_message;
+    /**
+     * Why there was no response, for those standing in for one, as when the
+     * request timed out, was cut off, or was cancelled. Null otherwise.
+     */
+    public Throwable failure;
 
     public Response(Request request, JSONObject message) {
+        this(request, new Frame(message));
+    }
+
+    /**
+     * Only the `result` subtree of the frame is parsed, and unless the whole
+     * frame already was, `message` is rebuilt from just the top level fields.
+     */
+    public Response(Request request, Frame frame) {
         try {
-            this.message = message;
             this.request = request;
-            status = message.getString("status");
+            status = frame.status();
+            if (status == null) {
+                throw new JSONException("JSONObject[\"status\"] not found.");
+            }
             succeeded = status.equals("success");
             if (succeeded) {
-                this.result = message.getJSONObject("result");
+                result = frame.object("result");
+                if (result == null) {
+                    throw new JSONException("JSONObject[\"result\"] not found.");
+                }
                 rpcerr = null;
             } else {
+                Object err = frame.value("error"), errMessage = frame.value("error_message");
+                error = err instanceof String ? (String) err : null;
+                error_message = errMessage instanceof String ? (String) errMessage : null;
                 try {
-                    error = message.getString("error");
                     this.rpcerr = RPCErr.valueOf(error);
                 } catch (Exception e) {
                     rpcerr = RPCErr.unknownError;
                 }
             }
+            message = frame.parsed() ? frame.json() : topLevel(frame);
 
         } catch (JSONException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private Response() {
+    }
+
+    /**
+     * @return an error response standing in for the one `request` never
+     *         got, for `failure`
+     */
+    static Response failed(Request request, Throwable failure) {
+        Response response = new Response();
+        response.request = request;
+        response.failure = failure;
+        response.succeeded = false;
+        response.status = "error";
+        response.rpcerr = RPCErr.unknownError;
+        response.error = failure instanceof TimeoutException ? "timeout" :
+                         failure instanceof Client.DisconnectedException ? "disconnected" :
+                         failure instanceof CancellationException ? "cancelled" : "failed";
+        response.error_message = String.valueOf(failure.getMessage());
+        try {
+            response.message = new JSONObject();
+            response.message.put("id", request.id);
+            response.message.put("status", response.status);
+            response.message.put("type", "response");
+            response.message.put("error", response.error);
+            response.message.put("error_message", response.error_message);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        return response;
+    }
+
+    /**
+     * @return the same response, for another request it answers too, with
+     *         its own copy of the JSON, so either can be mutated
+     */
+    Response copyFor(Request other) {
+        Response copy = new Response();
+        copy.message = Client.parseJSON(message.toString());
+        try {
+            copy.message.put("id", other.id);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        copy.request = other;
+        if (result != null) {
+            copy.result = copy.message.optJSONObject("result");
+            if (copy.result == null) {
+                copy.result = Client.parseJSON(result.toString());
+            }
+        }
+        copy.succeeded = succeeded;
+        copy.status = status;
+        copy.rpcerr = rpcerr;
+        copy.error = error;
+        copy.error_message = error_message;
+        copy.failure = failure;
+        return copy;
+    }
+
+    private JSONObject topLevel(Frame frame) throws JSONException {
+        JSONObject message = new JSONObject();
+        message.put("id", frame.id());
+        message.put("status", status);
+        message.put("type", frame.type());
+        if (result != null) message.put("result", result);
+        if (error != null) message.put("error", error);
+        if (error_message != null) message.put("error_message", error_message);
+        return message;
+    }
+
     public TransactionEngineResult engineResult() {
         try {
             return TransactionEngineResult.valueOf(result.getString("engine_result"));
@@ -0,0 +1,288 @@
+package com.ripple.client;
+
+import com.ripple.client.enums.Command;
+import com.ripple.core.types.hash.Hash256;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Results of queries for validated data, which can never change: `tx` once
+ * validated, and `ledger`, `ledger_entry` and `account_tx` pinned to ledgers
+ * that are. Keyed by the request, less its id, in the same canonical form
+ * the Coalescer uses.
+ *
+ * Kept in memory in least recently used order, bounded by both count and
+ * size, which is measured in chars of the key and result JSON.
+ *
+ * With a directory, results are also written there, by a background thread,
+ * and read back on missing in memory. The directory is never pruned.
+ */
+public class ResponseCache {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final int maxEntries;
+    private final long maxSize;
+    private final File directory;
+    private final ExecutorService writer;
+
+    private final LinkedHashMap<String, String> results = new LinkedHashMap<String, String>(16, 0.75f, true);
+    private long size, hits, misses;
+
+    public ResponseCache(int maxEntries, long maxSize) {
+        this(maxEntries, maxSize, null);
+    }
+
+    /**
+     * @param directory to persist to, may be null
+     */
+    public ResponseCache(int maxEntries, long maxSize, File directory) {
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+        this.directory = directory;
+        if (directory != null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalStateException("Can't create " + directory);
+            }
+            writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ripple-client-cache");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * @return whether `request` names its data precisely enough that, once
+     *         validated, the result can't change
+     */
+    public static boolean cacheable(Command cmd, JSONObject request) {
+        switch (cmd) {
+            case tx:
+                return request.has("transaction");
+            case ledger:
+            case ledger_entry:
+                return request.has("ledger_hash") || request.opt("ledger_index") instanceof Number;
+            case account_tx:
+                return request.optLong("ledger_index_min", -1) >= 0 &&
+                       request.optLong("ledger_index_max", -1) >= 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param validatedLedger the latest ledger known to be validated
+     * @return whether `result`, for a cacheable request, is final
+     */
+    public static boolean immutable(Command cmd, JSONObject request, JSONObject result, long validatedLedger) {
+        switch (cmd) {
+            case tx:
+            case ledger:
+            case ledger_entry:
+                return result.optBoolean("validated", false);
+            case account_tx:
+                if (request.optLong("ledger_index_max") > validatedLedger) {
+                    return false;
+                }
+                // A server missing some of the range searches only what it has
+                if (result.optLong("ledger_index_min", -1) != request.optLong("ledger_index_min") ||
+                    result.optLong("ledger_index_max", -1) != request.optLong("ledger_index_max")) {
+                    return false;
+                }
+                JSONArray transactions = result.optJSONArray("transactions");
+                if (transactions == null) {
+                    return false;
+                }
+                for (int i = 0; i < transactions.length(); i++) {
+                    JSONObject tx = transactions.optJSONObject(i);
+                    if (tx == null || !tx.optBoolean("validated", false)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return a fresh copy of the result cached for `key`, or null
+     */
+    public synchronized JSONObject get(String key) {
+        String result = results.get(key);
+        if (result == null && directory != null) {
+            result = read(key);
+            if (result != null) {
+                insert(key, result);
+            }
+        }
+        if (result == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return Client.parseJSON(result);
+    }
+
+    public synchronized void put(String key, JSONObject result) {
+        final String text = result.toString();
+        if (results.containsKey(key)) {
+            return;
+        }
+        insert(key, text);
+        if (directory != null) {
+            final String k = key;
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(k, text);
+                }
+            });
+        }
+    }
+
+    private void insert(String key, String result) {
+        long entrySize = key.length() + result.length();
+        if (entrySize > maxSize) {
+            return;
+        }
+        results.put(key, result);
+        size += entrySize;
+
+        Iterator<Map.Entry<String, String>> eldest = results.entrySet().iterator();
+        while (results.size() > maxEntries || size > maxSize) {
+            Map.Entry<String, String> entry = eldest.next();
+            size -= entry.getKey().length() + entry.getValue().length();
+            eldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * @return the size of what's in memory, in chars
+     */
+    public synchronized long chars() {
+        return size;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    private File file(String key) {
+        Hash256.HalfSha512 hasher = new Hash256.HalfSha512();
+        hasher.update(key.getBytes(UTF8));
+        return new File(directory, hasher.finish().toString() + ".json");
+    }
+
+    // Files hold the key too, so a (vanishingly unlikely) collision is a miss
+    private String read(String key) {
+        File file = file(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            JSONObject entry = new JSONObject(new String(readFully(file), UTF8));
+            if (!key.equals(entry.getString("key"))) {
+                return null;
+            }
+            return entry.getJSONObject("result").toString();
+        } catch (IOException e) {
+            ClientLogger.warn("Can't read cached %s: %s", file, e);
+            return null;
+        } catch (JSONException e) {
+            ClientLogger.warn("Corrupt cached %s: %s", file, e);
+            return null;
+        }
+    }
+
+    private void write(String key, String result) {
+        File file = file(key);
+        File temp = new File(directory, file.getName() + ".tmp");
+        try {
+            JSONObject entry = new JSONObject();
+            entry.put("key", key);
+            entry.put("result", new JSONObject(result));
+
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(entry.toString().getBytes(UTF8));
+            } finally {
+                out.close();
+            }
+            // Readers only ever see whole files
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Can't rename " + temp + " to " + file);
+                }
+            }
+        } catch (IOException e) {
+            ClientLogger.warn("Can't write cached %s: %s", file, e);
+            temp.delete();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Waits for pending writes to the directory, for tests and shutdown.
+     */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.ripple.client.async;
+
+import java.util.Random;
+
+/**
+ * Delays between retries, doubling from `baseMillis` up to `capMillis`, each
+ * jittered to somewhere between half and all of that, so that clients that
+ * dropped together don't retry together.
+ *
+ * Not thread safe, it's meant to be driven from the event loop.
+ */
+public class Backoff {
+    private final long baseMillis, capMillis;
+    private final Random random;
+    private int attempts;
+
+    public Backoff(long baseMillis, long capMillis, Random random) {
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+        this.random = random;
+    }
+
+    public Backoff(long baseMillis, long capMillis) {
+        this(baseMillis, capMillis, new Random());
+    }
+
+    /**
+     * @return the delay before the next attempt
+     */
+    public long next() {
+        long ceiling = capMillis;
+        // Doubled while it can't overflow
+        if (attempts < 62 && baseMillis <= capMillis >> attempts) {
+            ceiling = Math.min(capMillis, baseMillis << attempts);
+        }
+        attempts++;
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half));
+    }
+
+    /**
+     * @return the number of delays handed out since the last reset
+     */
+    public int attempts() {
+        return attempts;
+    }
+
+    /**
+     * @return one with the same pacing, for retrying something else
+     */
+    public Backoff fresh() {
+        return new Backoff(baseMillis, capMillis, random);
+    }
+
+    /**
+     * Starts again from `baseMillis`, once an attempt succeeds
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
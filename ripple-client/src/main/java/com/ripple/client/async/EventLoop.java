@@ -0,0 +1,184 @@
+package com.ripple.client.async;
+
+import com.ripple.client.ClientLogger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single thread that runs tasks, in submission order, from any number of
+ * producer threads.
+ *
+ * Tasks are handed over on a lock-free multiple producer, single consumer
+ * linked queue: producers swap themselves in as the tail, and only the loop
+ * thread ever touches the head. When the queue is empty the loop thread
+ * parks, and the first producer to find it parked wakes it.
+ *
+ * Exceptions thrown by tasks are logged, they don't stop the loop, only
+ * `shutdown` does.
+ */
+public class EventLoop implements Executor {
+    private static class Node {
+        Runnable task;
+        volatile Node next;
+
+        Node(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    // Ends the loop, when polled
+    private static final Runnable STOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final AtomicReference<Node> tail;
+    private Node head;
+    private final AtomicBoolean parked = new AtomicBoolean();
+    private final Thread thread;
+    private volatile boolean shutdown;
+
+    public EventLoop(String name) {
+        head = new Node(null);
+        tail = new AtomicReference<Node>(head);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * For loops that don't own a thread
+     */
+    protected EventLoop() {
+        tail = null;
+        thread = null;
+    }
+
+    /**
+     * @return a loop that runs each task immediately, on the submitting
+     *         thread, for use where everything is driven from one thread
+     *         anyway, as with tests and the MockPair.
+     */
+    public static EventLoop callerRuns() {
+        return new EventLoop() {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+
+            @Override
+            public boolean inLoop() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @throws RejectedExecutionException once shut down, as the task would
+     *         never run
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException(thread.getName() + " is shut down");
+        }
+        enqueue(task);
+    }
+
+    private void enqueue(Runnable task) {
+        Node node = new Node(task);
+        Node previous = tail.getAndSet(node);
+        // Until this is set, the loop sees the queue as ending at `previous`
+        previous.next = node;
+
+        if (parked.get() && parked.compareAndSet(true, false)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Ends the loop, and its thread, once the tasks already submitted have
+     * run. Those submitted after are rejected.
+     */
+    public void shutdown() {
+        if (thread == null) {
+            return;
+        }
+        shutdown = true;
+        enqueue(STOP);
+    }
+
+    /**
+     * @return whether the loop's thread has ended, waiting up to `millis`
+     */
+    public boolean awaitTermination(long millis) throws InterruptedException {
+        if (thread == null) {
+            return true;
+        }
+        thread.join(millis);
+        return !thread.isAlive();
+    }
+
+    private void run(Runnable task) {
+        if (task == null) {
+            return;
+        }
+        try {
+            task.run();
+        } catch (Throwable e) {
+            ClientLogger.error("Uncaught in %s: %s", thread.getName(), e);
+            e.printStackTrace();
+        }
+    }
+
+    private Runnable poll() {
+        Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        head = next;
+        Runnable task = next.task;
+        next.task = null;
+        return task;
+    }
+
+    private void loop() {
+        while (true) {
+            Runnable task = poll();
+            if (task == STOP) {
+                // Running any let in while shutting down, once linked
+                while (tail.get() != head) {
+                    run(poll());
+                }
+                return;
+            }
+            if (task != null) {
+                run(task);
+                continue;
+            }
+
+            parked.set(true);
+            // A producer may have swapped in before seeing `parked`
+            if (tail.get() != head) {
+                parked.set(false);
+                continue;
+            }
+            LockSupport.park(this);
+            parked.set(false);
+        }
+    }
+}
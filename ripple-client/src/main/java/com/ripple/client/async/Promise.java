@@ -0,0 +1,257 @@
+package com.ripple.client.async;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A Future that is settled explicitly, exactly once, by whoever holds it:
+ * with a value, a failure, or by cancellation.
+ *
+ * Listeners are called on the thread that settles the promise, or
+ * immediately, on the registering thread, if it has already settled.
+ *
+ * Promises can be chained with {@link #map} and {@link #then} and fanned in
+ * with {@link #all}.
+ */
+public class Promise<T> implements Future<T> {
+    public interface Listener<T> {
+        void called(Promise<T> promise);
+    }
+
+    public interface Transform<A, B> {
+        B apply(A value) throws Exception;
+    }
+
+    private T value;
+    private Throwable failure;
+    private boolean done, cancelled;
+    private ArrayList<Listener<T>> listeners = new ArrayList<Listener<T>>(2);
+
+    public boolean complete(T value) {
+        return settle(value, null, false);
+    }
+
+    public boolean fail(Throwable failure) {
+        return settle(null, failure, false);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return settle(null, new CancellationException(), true);
+    }
+
+    private boolean settle(T value, Throwable failure, boolean cancelled) {
+        ArrayList<Listener<T>> toCall;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.value = value;
+            this.failure = failure;
+            this.cancelled = cancelled;
+            this.done = true;
+            toCall = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        for (Listener<T> listener : toCall) {
+            listener.called(this);
+        }
+        return true;
+    }
+
+    public void onDone(Listener<T> listener) {
+        synchronized (this) {
+            if (!done) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.called(this);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public synchronized boolean succeeded() {
+        return done && failure == null;
+    }
+
+    /**
+     * @return the value, or null if not (successfully) settled
+     */
+    public synchronized T value() {
+        return value;
+    }
+
+    /**
+     * @return the failure (a CancellationException, if cancelled) or null
+     */
+    public synchronized Throwable failure() {
+        return failure;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        if (cancelled) {
+            throw (CancellationException) failure;
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return value;
+    }
+
+    /**
+     * @return a promise settled the same way, but on `executor`, so its
+     *         listeners run there
+     */
+    public Promise<T> via(final Executor executor) {
+        final Promise<T> handed = new Promise<T>();
+        onDone(new Listener<T>() {
+            @Override
+            public void called(final Promise<T> promise) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (promise.isCancelled()) {
+                            handed.cancel(false);
+                        } else if (promise.succeeded()) {
+                            handed.complete(promise.value());
+                        } else {
+                            handed.fail(promise.failure());
+                        }
+                    }
+                });
+            }
+        });
+        return handed;
+    }
+
+    /**
+     * @return a promise of `transform` applied to this promise's value, failing
+     *         if this fails, or if `transform` throws
+     */
+    public <R> Promise<R> map(final Transform<T, R> transform) {
+        final Promise<R> mapped = new Promise<R>();
+        onDone(new Listener<T>() {
+            @Override
+            public void called(Promise<T> promise) {
+                if (!promise.succeeded()) {
+                    mapped.fail(promise.failure());
+                    return;
+                }
+                try {
+                    mapped.complete(transform.apply(promise.value()));
+                } catch (Exception e) {
+                    mapped.fail(e);
+                }
+            }
+        });
+        return mapped;
+    }
+
+    /**
+     * @return a promise settled as per the promise `transform` returns, for
+     *         chaining a dependent async operation
+     */
+    public <R> Promise<R> then(final Transform<T, Promise<R>> transform) {
+        final Promise<R> chained = new Promise<R>();
+        onDone(new Listener<T>() {
+            @Override
+            public void called(Promise<T> promise) {
+                if (!promise.succeeded()) {
+                    chained.fail(promise.failure());
+                    return;
+                }
+                try {
+                    transform.apply(promise.value()).onDone(new Listener<R>() {
+                        @Override
+                        public void called(Promise<R> next) {
+                            if (next.succeeded()) {
+                                chained.complete(next.value());
+                            } else {
+                                chained.fail(next.failure());
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    chained.fail(e);
+                }
+            }
+        });
+        return chained;
+    }
+
+    /**
+     * @return a promise of all the values, in the same order as `promises`,
+     *         which fails as soon as any of them fails
+     */
+    public static <T> Promise<List<T>> all(final List<Promise<T>> promises) {
+        final Promise<List<T>> all = new Promise<List<T>>();
+        final Object[] values = new Object[promises.size()];
+        final int[] remaining = new int[]{promises.size()};
+
+        if (promises.isEmpty()) {
+            all.complete(new ArrayList<T>());
+            return all;
+        }
+
+        for (int i = 0; i < promises.size(); i++) {
+            final int ix = i;
+            promises.get(i).onDone(new Listener<T>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void called(Promise<T> promise) {
+                    if (!promise.succeeded()) {
+                        all.fail(promise.failure());
+                        return;
+                    }
+                    boolean last;
+                    synchronized (values) {
+                        values[ix] = promise.value();
+                        last = --remaining[0] == 0;
+                    }
+                    if (last) {
+                        all.complete(new ArrayList<T>((List<T>) Arrays.asList(values)));
+                    }
+                }
+            });
+        }
+        return all;
+    }
+}
@@ -0,0 +1,114 @@
+package com.ripple.client.async;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timer wheel: timeouts are bucketed by tick, into a ring of
+ * `slots` buckets, so scheduling and cancelling are O(1) and each tick only
+ * looks at the one bucket due. Timeouts further out than one turn of the
+ * wheel stay in their bucket until their round comes up.
+ *
+ * Expiry has tick granularity, and never fires early.
+ *
+ * The wheel doesn't own a thread, something must call {@link #advance}.
+ */
+public class TimerWheel<T> {
+    public static class Timeout<T> {
+        public final T item;
+        final TimerWheel<T> wheel;
+        final long tick;
+        Timeout<T> prev, next;
+        int slot = -1;
+
+        Timeout(TimerWheel<T> wheel, T item, long tick) {
+            this.wheel = wheel;
+            this.item = item;
+            this.tick = tick;
+        }
+
+        public void cancel() {
+            synchronized (wheel) {
+                wheel.unlink(this);
+            }
+        }
+    }
+
+    private final long tickMillis;
+    private final Timeout<T>[] buckets;
+    private long currentTick;
+    private int scheduled;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int slots, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.buckets = (Timeout<T>[]) new Timeout<?>[slots];
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public long tickMillis() {
+        return tickMillis;
+    }
+
+    public synchronized Timeout<T> schedule(T item, long nowMillis, long delayMillis) {
+        // Round up, so as to never expire early
+        long tick = Math.max((nowMillis + delayMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        Timeout<T> timeout = new Timeout<T>(this, item, tick);
+        int slot = (int) (tick % buckets.length);
+
+        timeout.slot = slot;
+        timeout.next = buckets[slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[slot] = timeout;
+        scheduled++;
+        return timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.slot == -1) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = timeout.next = null;
+        timeout.slot = -1;
+        scheduled--;
+    }
+
+    /**
+     * @return the items expired up to `nowMillis`, which are removed from
+     *         the wheel, to be handled by the caller outside of any lock
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        ArrayList<T> expired = new ArrayList<T>();
+        long target = nowMillis / tickMillis;
+
+        // After a long stall, one turn of the wheel visits every bucket
+        long from = Math.max(currentTick + 1, target - buckets.length + 1);
+        for (long tick = from; tick <= target; tick++) {
+            Timeout<T> timeout = buckets[(int) (tick % buckets.length)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.tick <= target) {
+                    unlink(timeout);
+                    expired.add(timeout.item);
+                }
+                timeout = next;
+            }
+        }
+        currentTick = Math.max(currentTick, target);
+        return expired;
+    }
+
+    public synchronized int size() {
+        return scheduled;
+    }
+}
@@ -0,0 +1,325 @@
+package com.ripple.client.history;
+
+import com.ripple.client.Client;
+import com.ripple.client.ClientLogger;
+import com.ripple.client.Response;
+import com.ripple.client.async.Promise;
+import com.ripple.client.enums.Command;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Downloads an account's transactions over a range of ledgers by splitting
+ * it into sub-ranges, each walked forward through its own markers, with up
+ * to `concurrency` of them in flight at once. Requests go through the
+ * client, so are spread over all its endpoints.
+ *
+ * Pages are written in ledger order, one `account_tx` result per line, as
+ * DumpAccountTransactions always has. Pages of later sub-ranges are held
+ * until those before are written, which `concurrency` bounds.
+ *
+ * After each sub-range is written, the next ledger and the length of the
+ * output are checkpointed, so an interrupted download resumes from there,
+ * dropping any part of a sub-range written after.
+ *
+ * Given a TxArchiveWriter, each page is also appended to that as it's
+ * written, indexed by whatever indexes it was opened with, and its record
+ * count checkpointed with the output's length.
+ */
+public class AccountTxDownloader {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Client client;
+    private final String account;
+    private final long ledgerMin, ledgerMax;
+    private final File output, checkpoint;
+
+    public long rangeSize = 10000;
+    public int concurrency = 8;
+    public int pageLimit = 500;
+    public int attempts = 3;
+    public long timeoutMillis = 60000;
+    public boolean binary = true;
+
+    private long pages, transactions;
+    private TxArchiveWriter archive;
+
+    public AccountTxDownloader(Client client, String account, long ledgerMin, long ledgerMax,
+                               File output, File checkpoint) {
+        this.client = client;
+        this.account = account;
+        this.ledgerMin = ledgerMin;
+        this.ledgerMax = ledgerMax;
+        this.output = output;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Appends each page to `archive` too, which is the caller's to close.
+     * Only binary pages can be archived.
+     */
+    public void archiveTo(TxArchiveWriter archive) {
+        this.archive = archive;
+    }
+
+    private static class Range {
+        final long min, max;
+        final ArrayList<JSONObject> buffered = new ArrayList<JSONObject>();
+        boolean done;
+        // In a row, for the current page
+        int failures;
+
+        Range(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    // Settled pages, handed from whichever thread settles them
+    private static class Page {
+        final Range range;
+        final Object marker;
+        final Promise<Response> promise;
+
+        Page(Range range, Object marker, Promise<Response> promise) {
+            this.range = range;
+            this.marker = marker;
+            this.promise = promise;
+        }
+    }
+
+    private final LinkedBlockingQueue<Page> settled = new LinkedBlockingQueue<Page>();
+
+    /**
+     * Downloads, on the calling thread, until done or a page fails
+     * `attempts` times.
+     */
+    public void run() throws IOException, InterruptedException {
+        if (archive != null && !binary) {
+            throw new IllegalStateException("Only binary pages can be archived");
+        }
+        long from = resume();
+        ArrayList<Range> ranges = new ArrayList<Range>();
+        for (long min = from; min <= ledgerMax; min += rangeSize) {
+            ranges.add(new Range(min, Math.min(min + rangeSize - 1, ledgerMax)));
+        }
+
+        OutputStream out = new FileOutputStream(output, true);
+        try {
+            int started = 0, written = 0;
+            while (written < ranges.size()) {
+                while (started < ranges.size() && started - written < concurrency) {
+                    request(ranges.get(started++), null);
+                }
+
+                Page page = settled.take();
+                Range range = page.range;
+                Response response = page.promise.succeeded() ? page.promise.value() : null;
+
+                if (response == null || !response.succeeded) {
+                    retry(page, response);
+                    continue;
+                }
+                range.failures = 0;
+                JSONObject result = response.result;
+                Object marker = result.opt("marker");
+                if (marker != null && !marker.toString().equals(String.valueOf(page.marker))) {
+                    request(range, marker);
+                } else {
+                    range.done = true;
+                }
+
+                if (range == ranges.get(written)) {
+                    writePage(out, result);
+                } else {
+                    range.buffered.add(result);
+                }
+                // Flush any sub-ranges completed while waiting on this one
+                while (written < ranges.size() && ranges.get(written).done) {
+                    Range head = ranges.get(written++);
+                    for (JSONObject buffered : head.buffered) {
+                        writePage(out, buffered);
+                    }
+                    head.buffered.clear();
+                    out.flush();
+                    saveCheckpoint(head.max + 1, output.length());
+                    if (written < ranges.size()) {
+                        Range next = ranges.get(written);
+                        for (JSONObject buffered : next.buffered) {
+                            writePage(out, buffered);
+                        }
+                        next.buffered.clear();
+                    }
+                }
+            }
+        } finally {
+            out.close();
+            // Nothing is waiting on them now
+            settled.clear();
+        }
+        ClientLogger.log("Downloaded %d transactions of %s, in %d pages", transactions, account, pages);
+    }
+
+    public long pages() {
+        return pages;
+    }
+
+    public long transactions() {
+        return transactions;
+    }
+
+    private void request(final Range range, final Object marker) {
+        JSONObject params = new JSONObject();
+        try {
+            params.put("account", account);
+            params.put("ledger_index_min", range.min);
+            params.put("ledger_index_max", range.max);
+            params.put("forward", true);
+            params.put("binary", binary);
+            params.put("limit", pageLimit);
+            if (marker != null) {
+                params.put("marker", marker);
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+
+        final Promise<Response> promise = client.request(Command.account_tx, params, timeoutMillis);
+        promise.onDone(new Promise.Listener<Response>() {
+            @Override
+            public void called(Promise<Response> p) {
+                settled.add(new Page(range, marker, promise));
+            }
+        });
+    }
+
+    private void retry(Page page, Response response) throws IOException {
+        Range range = page.range;
+        String why = response != null ? response.error : String.valueOf(page.promise.failure());
+        if (++range.failures >= attempts) {
+            throw new IOException(String.format("account_tx for ledgers %d to %d failed %d times in a row, last with: %s",
+                    range.min, range.max, range.failures, why));
+        }
+        ClientLogger.warn("Retrying account_tx for ledgers %d to %d: %s", range.min, range.max, why);
+        request(range, page.marker);
+    }
+
+    private void writePage(OutputStream out, JSONObject result) throws IOException {
+        JSONArray txns = result.optJSONArray("transactions");
+        transactions += txns == null ? 0 : txns.length();
+        pages++;
+        out.write(result.toString().getBytes(UTF8));
+        out.write('\n');
+        if (archive != null) {
+            archive.appendPage(result);
+        }
+    }
+
+    /**
+     * @return the ledger to start from, having truncated the output back to
+     *         the last checkpoint, if any
+     */
+    private long resume() throws IOException {
+        if (!checkpoint.isFile()) {
+            if (output.exists() && !output.delete()) {
+                throw new IOException("Can't delete " + output);
+            }
+            if (archive != null) {
+                archive.truncate(0);
+            }
+            return ledgerMin;
+        }
+        try {
+            JSONObject saved = new JSONObject(readString(checkpoint));
+            if (!account.equals(saved.getString("account")) ||
+                    saved.getLong("ledger_index_min") != ledgerMin) {
+                throw new IOException(checkpoint + " is for another download: " + saved);
+            }
+            long offset = saved.getLong("offset");
+            RandomAccessFile file = new RandomAccessFile(output, "rw");
+            try {
+                if (file.length() < offset) {
+                    throw new IOException(output + " is shorter than checkpointed");
+                }
+                file.setLength(offset);
+            } finally {
+                file.close();
+            }
+            if (archive != null) {
+                if (!saved.has("archived")) {
+                    throw new IOException(checkpoint + " wasn't taken while archiving");
+                }
+                int archived = saved.getInt("archived");
+                if (archive.size() < archived) {
+                    throw new IOException("The archive is shorter than checkpointed");
+                }
+                archive.truncate(archived);
+            }
+            long next = saved.getLong("next_ledger");
+            ClientLogger.log("Resuming download of %s from ledger %d", account, next);
+            return next;
+        } catch (JSONException e) {
+            throw new IOException("Corrupt checkpoint " + checkpoint + ": " + e);
+        }
+    }
+
+    private void saveCheckpoint(long nextLedger, long offset) throws IOException {
+        if (archive != null) {
+            archive.sync();
+        }
+        JSONObject saved = new JSONObject();
+        try {
+            saved.put("account", account);
+            saved.put("ledger_index_min", ledgerMin);
+            saved.put("ledger_index_max", ledgerMax);
+            saved.put("next_ledger", nextLedger);
+            saved.put("offset", offset);
+            if (archive != null) {
+                saved.put("archived", archive.size());
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(saved.toString().getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(checkpoint)) {
+            checkpoint.delete();
+            if (!temp.renameTo(checkpoint)) {
+                throw new IOException("Can't rename " + temp + " to " + checkpoint);
+            }
+        }
+    }
+
+    private static String readString(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n == -1) break;
+                read += n;
+            }
+            return new String(bytes, 0, read, UTF8);
+        } finally {
+            in.close();
+        }
+    }
+}
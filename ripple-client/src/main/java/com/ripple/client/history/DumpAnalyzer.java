@@ -0,0 +1,161 @@
+package com.ripple.client.history;
+
+import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.utils.Chunked;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs an Analysis over a dump, split into chunks which are decoded and
+ * accumulated over the executor, each into its own accumulator. These are
+ * then combined in dump order, on the calling thread.
+ *
+ * Chunks are cut at fixed sizes, regardless of the executor, so running
+ * without one gives the very same result, just slower. An analysis whose
+ * `combine` gives the same as accumulating both chunks into one, as with
+ * counts, exact sums and appended lists, gives the same as a plain
+ * sequential loop too. For sums of Amounts, accumulate their BigDecimal
+ * values, as Amount arithmetic is bounded to the precision of the wire.
+ */
+public class DumpAnalyzer {
+    public interface Analysis<A> {
+        A start();
+
+        /**
+         * Accumulates one transaction, or not, as it filters. Called from
+         * whichever thread, but only one per accumulator at a time.
+         */
+        void add(A accumulator, TransactionResult result);
+
+        /**
+         * @return both, `earlier` being from the chunk before `later`
+         */
+        A combine(A earlier, A later);
+    }
+
+    // Records of a TxArchive per chunk
+    public int chunkSize = 4096;
+    // account_tx pages (lines) of a JSON dump per chunk
+    public int pagesPerChunk = 8;
+    // Chunks of a JSON dump read ahead of combining, bounding what's held
+    public int readAhead = Runtime.getRuntime().availableProcessors() * 4;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param executor may be null, in which case chunks are analyzed on the
+     *                 calling thread
+     */
+    public DumpAnalyzer(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public <A> A analyze(final TxArchive archive, final Analysis<A> analysis) {
+        List<A> chunks = Chunked.run(executor, archive.size(), chunkSize, new Chunked.Task<A>() {
+            @Override
+            public A run(int from, int to) {
+                A accumulator = analysis.start();
+                for (int i = from; i < to; i++) {
+                    analysis.add(accumulator, archive.get(i).result());
+                }
+                return accumulator;
+            }
+        });
+        A result = analysis.start();
+        for (A chunk : chunks) {
+            result = analysis.combine(result, chunk);
+        }
+        return result;
+    }
+
+    /**
+     * Analyzes a dump as written by DumpAccountTransactions, one binary
+     * `account_tx` result per line. Lines are read on the calling thread,
+     * and decoded on the executor.
+     */
+    public <A> A analyze(File dump, final Analysis<A> analysis) throws IOException {
+        LinkedList<Future<A>> chunks = new LinkedList<Future<A>>();
+        A result = analysis.start();
+        BufferedReader reader = new BufferedReader(new FileReader(dump));
+        try {
+            ArrayList<String> pages = new ArrayList<String>();
+            String line;
+            do {
+                line = reader.readLine();
+                if (line != null && line.length() > 0) {
+                    pages.add(line);
+                }
+                if (pages.size() == pagesPerChunk || (line == null && !pages.isEmpty())) {
+                    chunks.add(submit(pagesChunk(pages, analysis)));
+                    pages = new ArrayList<String>();
+                }
+                while (chunks.size() > readAhead) {
+                    result = analysis.combine(result, get(chunks.removeFirst()));
+                }
+            } while (line != null);
+        } finally {
+            reader.close();
+        }
+        while (!chunks.isEmpty()) {
+            result = analysis.combine(result, get(chunks.removeFirst()));
+        }
+        return result;
+    }
+
+    private <A> Callable<A> pagesChunk(final ArrayList<String> pages, final Analysis<A> analysis) {
+        return new Callable<A>() {
+            @Override
+            public A call() throws Exception {
+                A accumulator = analysis.start();
+                for (String page : pages) {
+                    JSONArray transactions = new JSONObject(page).getJSONArray("transactions");
+                    for (int i = 0; i < transactions.length(); i++) {
+                        analysis.add(accumulator, new TransactionResult(transactions.getJSONObject(i),
+                                TransactionResult.Source.request_account_tx_binary));
+                    }
+                }
+                return accumulator;
+            }
+        };
+    }
+
+    private <A> Future<A> submit(Callable<A> chunk) {
+        if (executor != null) {
+            return executor.submit(chunk);
+        }
+        FutureTask<A> task = new FutureTask<A>(chunk);
+        task.run();
+        return task;
+    }
+
+    private static <A> A get(Future<A> chunk) {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JSONException) {
+                throw new RuntimeException("Corrupt dump: " + cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.ripple.client.history;
+
+import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.core.serialized.BinaryParser;
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.core.types.uint.UInt32;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * A read only, memory mapped view of an archive of transactions, as raw
+ * tx_blob and meta bytes, which are handed to the wire parser in place.
+ *
+ * The layout, all big endian:
+ *
+ *   header   "RTXA", u32 version
+ *   record   u32 body length, u32 CRC32 of body,
+ *            body: u32 ledger index, 32 byte hash, u32 tx length, tx, meta
+ *   ...
+ *   footer   "RTXI", u32 count, count * (u64 record offset, u32 ledger index)
+ *   trailer  u64 footer offset, "RTXE"
+ *
+ * The footer is written by TxArchiveWriter on closing. Without one, the
+ * records are scanned, up to the first that's torn.
+ *
+ * As a single mapping, an archive is limited to 2GB.
+ */
+public class TxArchive implements Closeable, Iterable<TxArchive.Record> {
+    static final int MAGIC = 0x52545841;          // RTXA
+    static final int FOOTER_MAGIC = 0x52545849;   // RTXI
+    static final int TRAILER_MAGIC = 0x52545845;  // RTXE
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER = 8;
+    static final int BODY_FIXED = 4 + 32 + 4;
+    static final int FOOTER_ENTRY = 12;
+    static final int TRAILER_SIZE = 12;
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    public static class Record {
+        public final long ledgerIndex;
+        public final Hash256 hash;
+        private final ByteBuffer tx, meta;
+
+        Record(long ledgerIndex, Hash256 hash, ByteBuffer tx, ByteBuffer meta) {
+            this.ledgerIndex = ledgerIndex;
+            this.hash = hash;
+            this.tx = tx;
+            this.meta = meta;
+        }
+
+        public ByteBuffer txBytes() {
+            return tx.duplicate();
+        }
+
+        public ByteBuffer metaBytes() {
+            return meta.duplicate();
+        }
+
+        public STObject transaction() {
+            return STObject.translate.fromParser(new BinaryParser(tx));
+        }
+
+        public STObject meta() {
+            return STObject.translate.fromParser(new BinaryParser(meta));
+        }
+
+        public TransactionResult result() {
+            return new TransactionResult(ledgerIndex, hash, transaction(), meta());
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer mapped;
+    private final long[] offsets;
+    private final int[] ledgers;
+
+    private TxArchive(RandomAccessFile file, MappedByteBuffer mapped, long[] offsets, int[] ledgers) {
+        this.file = file;
+        this.mapped = mapped;
+        this.offsets = offsets;
+        this.ledgers = ledgers;
+    }
+
+    public static TxArchive open(File archive) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(archive, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > MAX_SIZE) {
+                throw new IOException(archive + " is too big to map");
+            }
+            checkHeader(channel);
+
+            long[] offsets;
+            int[] ledgers;
+            long footer = footerOffset(channel);
+            if (footer != -1) {
+                ByteBuffer entries = readFooter(channel, footer);
+                int count = entries.remaining() / FOOTER_ENTRY;
+                offsets = new long[count];
+                ledgers = new int[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = entries.getLong();
+                    ledgers[i] = entries.getInt();
+                }
+            } else {
+                Scan scan = new Scan(channel);
+                offsets = new long[64];
+                ledgers = new int[64];
+                int count = 0;
+                while (scan.next()) {
+                    if (count == offsets.length) {
+                        long[] grownOffsets = new long[count * 2];
+                        int[] grownLedgers = new int[count * 2];
+                        System.arraycopy(offsets, 0, grownOffsets, 0, count);
+                        System.arraycopy(ledgers, 0, grownLedgers, 0, count);
+                        offsets = grownOffsets;
+                        ledgers = grownLedgers;
+                    }
+                    offsets[count] = scan.offset;
+                    ledgers[count] = scan.ledger;
+                    count++;
+                }
+                long[] trimmedOffsets = new long[count];
+                int[] trimmedLedgers = new int[count];
+                System.arraycopy(offsets, 0, trimmedOffsets, 0, count);
+                System.arraycopy(ledgers, 0, trimmedLedgers, 0, count);
+                offsets = trimmedOffsets;
+                ledgers = trimmedLedgers;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TxArchive(file, mapped, offsets, ledgers);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public long ledgerIndex(int i) {
+        return ledgers[i] & 0xFFFFFFFFL;
+    }
+
+    public long offset(int i) {
+        return offsets[i];
+    }
+
+    public Record get(int i) {
+        return recordAt(offsets[i]);
+    }
+
+    /**
+     * @return the record starting at `offset`, as given by `offset(i)`
+     */
+    public Record recordAt(long offset) {
+        int at = (int) offset;
+        int length = mapped.getInt(at);
+        int body = at + RECORD_HEADER;
+        long ledger = mapped.getInt(body) & 0xFFFFFFFFL;
+
+        byte[] hash = new byte[32];
+        ByteBuffer view = mapped.duplicate();
+        view.position(body + 4);
+        view.get(hash);
+
+        int txLength = mapped.getInt(body + 36);
+        int txStart = body + BODY_FIXED;
+        return new Record(ledger, new Hash256(hash),
+                slice(txStart, txStart + txLength),
+                slice(txStart + txLength, body + length));
+    }
+
+    private ByteBuffer slice(int from, int to) {
+        ByteBuffer view = mapped.duplicate();
+        view.limit(to).position(from);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the record with `hash`, as indexed in `byHash`, or null
+     */
+    public Record find(TxIndex byHash, Hash256 hash) {
+        for (long offset : byHash.get(hash)) {
+            if (isRecord(offset)) {
+                Record record = recordAt(offset);
+                if (record.hash.equals(hash)) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the record with `account` and `sequence`, as indexed in
+     *         `bySequence`, or null
+     */
+    public Record find(TxIndex bySequence, AccountID account, long sequence) {
+        for (long offset : bySequence.get(TxIndex.sequenceKey(account, sequence))) {
+            if (isRecord(offset)) {
+                Record record = recordAt(offset);
+                STObject tx = record.transaction();
+                if (account.equals(tx.get(AccountID.Account)) &&
+                        tx.get(UInt32.Sequence).longValue() == sequence) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    // An index may be stale, from before a torn tail was truncated
+    private boolean isRecord(long offset) {
+        return Arrays.binarySearch(offsets, offset) >= 0;
+    }
+
+    /**
+     * @return the index of the first record in `ledger` or later, or size()
+     *         if none, for archives appended in ledger order
+     */
+    public int firstAtOrAfter(long ledger) {
+        int lo = 0, hi = offsets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ledgerIndex(mid) < ledger) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<Record>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < offsets.length;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Closes the file, the mapping is released once unreachable.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    static void checkHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        if (header == null || header.getInt() != MAGIC) {
+            throw new IOException("Not a transaction archive");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive version " + version);
+        }
+    }
+
+    /**
+     * @return the footer's offset, or -1 if there isn't a whole one
+     */
+    static long footerOffset(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE + 8 + TRAILER_SIZE) {
+            return -1;
+        }
+        ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+        long footer = trailer.getLong();
+        if (trailer.getInt() != TRAILER_MAGIC || footer < HEADER_SIZE || footer > size - TRAILER_SIZE - 8) {
+            return -1;
+        }
+        ByteBuffer head = read(channel, footer, 8);
+        if (head.getInt() != FOOTER_MAGIC) {
+            return -1;
+        }
+        long count = head.getInt() & 0xFFFFFFFFL;
+        return footer + 8 + count * FOOTER_ENTRY + TRAILER_SIZE == size ? footer : -1;
+    }
+
+    /**
+     * @return the footer entries
+     */
+    static ByteBuffer readFooter(FileChannel channel, long footer) throws IOException {
+        int length = (int) (channel.size() - TRAILER_SIZE - footer - 8);
+        return read(channel, footer + 8, length);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long at, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, at + buffer.position()) == -1) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Walks the records from the header, checking each one's length and
+     * checksum, and stops at the first that doesn't check out.
+     */
+    static class Scan {
+        final FileChannel channel;
+        final long size;
+        final CRC32 crc = new CRC32();
+        long offset, end = HEADER_SIZE;
+        int ledger;
+
+        Scan(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        boolean next() throws IOException {
+            if (end + RECORD_HEADER > size) {
+                return false;
+            }
+            ByteBuffer header = read(channel, end, RECORD_HEADER);
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < BODY_FIXED || end + RECORD_HEADER + length > size) {
+                return false;
+            }
+            ByteBuffer body = read(channel, end + RECORD_HEADER, length);
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return false;
+            }
+            offset = end;
+            ledger = body.getInt(0);
+            end += RECORD_HEADER + length;
+            return true;
+        }
+    }
+}
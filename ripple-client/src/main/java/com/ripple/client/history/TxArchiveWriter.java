@@ -0,0 +1,276 @@
+package com.ripple.client.history;
+
+import com.ripple.client.ClientLogger;
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.core.types.uint.UInt32;
+import com.ripple.encodings.common.B16;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Appends records to a TxArchive, creating it if need be.
+ *
+ * Opening an archive that was closed drops its footer, to be rewritten on
+ * closing again. Opening one that wasn't, say after a crash, rebuilds the
+ * index by scanning the records, and truncates any torn record at the end,
+ * as told by its length or checksum.
+ *
+ * Given TxIndexes, by hash and/or by Account and Sequence, each record is
+ * indexed as it's appended. Records appended but not indexed, say after a
+ * crash, are indexed on opening. The indexes are the caller's to close.
+ */
+public class TxArchiveWriter implements Closeable {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer staging = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private final TxIndex byHash, bySequence;
+
+    private long[] offsets = new long[1024];
+    private int[] ledgers = new int[1024];
+    private int count;
+    private long position;
+    private boolean closed;
+
+    public TxArchiveWriter(File archive) throws IOException {
+        this(archive, null, null);
+    }
+
+    /**
+     * @param byHash may be null
+     * @param bySequence may be null
+     */
+    public TxArchiveWriter(File archive, TxIndex byHash, TxIndex bySequence) throws IOException {
+        this.byHash = byHash;
+        this.bySequence = bySequence;
+        file = new RandomAccessFile(archive, "rw");
+        channel = file.getChannel();
+        try {
+            if (file.length() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(TxArchive.HEADER_SIZE);
+                header.putInt(TxArchive.MAGIC).putInt(TxArchive.VERSION).flip();
+                writeFully(header, 0);
+                position = TxArchive.HEADER_SIZE;
+            } else {
+                recover();
+            }
+            catchUp();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void recover() throws IOException {
+        TxArchive.checkHeader(channel);
+        long footer = TxArchive.footerOffset(channel);
+        if (footer != -1) {
+            ByteBuffer entries = TxArchive.readFooter(channel, footer);
+            while (entries.hasRemaining()) {
+                add(entries.getLong(), entries.getInt());
+            }
+            position = footer;
+        } else {
+            TxArchive.Scan scan = new TxArchive.Scan(channel);
+            while (scan.next()) {
+                add(scan.offset, scan.ledger);
+            }
+            position = scan.end;
+            if (position < channel.size()) {
+                ClientLogger.warn("Dropping %d bytes of torn record(s)", channel.size() - position);
+            }
+        }
+        channel.truncate(position);
+    }
+
+    // Indexes any records past where the indexes cover
+    private void catchUp() throws IOException {
+        for (TxIndex index : new TxIndex[]{byHash, bySequence}) {
+            if (index == null || index.covered() == position) {
+                continue;
+            }
+            int first = 0;
+            while (first < count && offsets[first] < index.covered()) {
+                first++;
+            }
+            for (int i = first; i < count; i++) {
+                long end = i + 1 < count ? offsets[i + 1] : position;
+                ByteBuffer body = ByteBuffer.allocate((int) (end - offsets[i] - TxArchive.RECORD_HEADER));
+                while (body.hasRemaining()) {
+                    channel.read(body, offsets[i] + TxArchive.RECORD_HEADER + body.position());
+                }
+                byte[] hash = new byte[32];
+                body.position(4);
+                body.get(hash);
+                byte[] tx = new byte[body.getInt()];
+                body.get(tx);
+                index(index, offsets[i], new Hash256(hash), tx);
+            }
+            index.covered(position);
+        }
+    }
+
+    private void index(TxIndex index, long offset, Hash256 hash, byte[] tx) throws IOException {
+        if (index == byHash) {
+            index.put(hash, offset);
+        } else {
+            STObject transaction = STObject.translate.fromWireBytes(tx);
+            AccountID account = transaction.get(AccountID.Account);
+            UInt32 sequence = transaction.get(UInt32.Sequence);
+            if (account != null && sequence != null) {
+                index.put(TxIndex.sequenceKey(account, sequence.longValue()), offset);
+            }
+        }
+    }
+
+    private void add(long offset, int ledger) {
+        if (count == offsets.length) {
+            long[] grownOffsets = new long[count * 2];
+            int[] grownLedgers = new int[count * 2];
+            System.arraycopy(offsets, 0, grownOffsets, 0, count);
+            System.arraycopy(ledgers, 0, grownLedgers, 0, count);
+            offsets = grownOffsets;
+            ledgers = grownLedgers;
+        }
+        offsets[count] = offset;
+        ledgers[count] = ledger;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Drops the records from the `records`th on, and their index entries,
+     * as when resuming from a checkpoint taken with only that many.
+     */
+    public void truncate(int records) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Closed");
+        }
+        if (records < 0 || records > count) {
+            throw new IllegalArgumentException("Can't truncate " + count + " records to " + records);
+        }
+        if (records == count) {
+            return;
+        }
+        position = offsets[records];
+        count = records;
+        channel.truncate(position);
+        for (TxIndex index : new TxIndex[]{byHash, bySequence}) {
+            if (index != null) {
+                index.truncate(position);
+            }
+        }
+    }
+
+    public void append(long ledgerIndex, Hash256 hash, byte[] tx, byte[] meta) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Closed");
+        }
+        int body = TxArchive.BODY_FIXED + tx.length + meta.length;
+        long end = position + TxArchive.RECORD_HEADER + body;
+        if (end > TxArchive.MAX_SIZE) {
+            throw new IllegalStateException("Archive is full, start another");
+        }
+
+        ByteBuffer record = body + TxArchive.RECORD_HEADER <= staging.capacity() ?
+                staging : ByteBuffer.allocate(body + TxArchive.RECORD_HEADER);
+        record.clear();
+        record.putInt(body);
+        record.putInt(0); // the checksum, below
+        record.putInt((int) ledgerIndex);
+        record.put(hash.bytes());
+        record.putInt(tx.length);
+        record.put(tx);
+        record.put(meta);
+
+        crc.reset();
+        crc.update(record.array(), record.arrayOffset() + TxArchive.RECORD_HEADER, body);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        writeFully(record, position);
+        add(position, (int) ledgerIndex);
+        for (TxIndex index : new TxIndex[]{byHash, bySequence}) {
+            if (index != null) {
+                index(index, position, hash, tx);
+                index.covered(end);
+            }
+        }
+        position = end;
+    }
+
+    /**
+     * Appends each transaction of a binary `account_tx` result, as written
+     * by the AccountTxDownloader.
+     */
+    public void appendPage(JSONObject result) throws IOException {
+        try {
+            JSONArray transactions = result.getJSONArray("transactions");
+            for (int i = 0; i < transactions.length(); i++) {
+                JSONObject tx = transactions.getJSONObject(i);
+                byte[] blob = B16.decode(tx.getString("tx_blob"));
+                append(tx.getLong("ledger_index"), Hash256.transactionID(blob), blob,
+                        B16.decode(tx.getString("meta")));
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Makes what's been appended durable, though without a footer, so
+     * reopening will need to scan.
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+        for (TxIndex index : new TxIndex[]{byHash, bySequence}) {
+            if (index != null) {
+                index.sync();
+            }
+        }
+    }
+
+    /**
+     * Writes the footer index and trailer, then closes.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            ByteBuffer footer = ByteBuffer.allocate(8 + count * TxArchive.FOOTER_ENTRY + TxArchive.TRAILER_SIZE);
+            footer.putInt(TxArchive.FOOTER_MAGIC).putInt(count);
+            for (int i = 0; i < count; i++) {
+                footer.putLong(offsets[i]).putInt(ledgers[i]);
+            }
+            footer.putLong(position).putInt(TxArchive.TRAILER_MAGIC);
+            footer.flip();
+            writeFully(footer, position);
+            channel.force(true);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.ripple.client.history;
+
+import com.ripple.core.enums.TransactionEngineResult;
+import com.ripple.core.enums.TransactionType;
+import com.ripple.core.types.AccountID;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * The fields of transactions that audits ask about, as a column of
+ * primitives each, so aggregates over millions of them needn't decode any.
+ *
+ * Accounts (Account, Destination and issuer) and currencies are dictionary
+ * encoded, as ints indexing `accounts` and `currencies`, with NONE where a
+ * transaction has none. An Amount is its mantissa, signed, and exponent, so
+ * XRP is in drops, with an exponent of 0.
+ *
+ * Each column is a file of big endian values, written by TxColumnsWriter,
+ * and read whole into the heap on opening.
+ */
+public class TxColumns {
+    public static final int NONE = -1;
+    public static final String XRP = "XRP";
+
+    static final int VERSION = 1;
+    static final String META = "columns.json",
+            LEDGER = "ledger.i32",
+            TYPE = "type.i16",
+            ACCOUNT = "account.i32",
+            DESTINATION = "destination.i32",
+            MANTISSA = "amount_mantissa.i64",
+            EXPONENT = "amount_exponent.i8",
+            CURRENCY = "amount_currency.i32",
+            ISSUER = "amount_issuer.i32",
+            RESULT = "result.i16",
+            FEE = "fee.i64";
+
+    public final int[] ledger;
+    public final short[] type;
+    public final int[] account, destination;
+    public final long[] mantissa;
+    public final byte[] exponent;
+    public final int[] currency, issuer;
+    public final short[] result;
+    public final long[] fee;
+
+    public final String[] accounts, currencies;
+    private final HashMap<String, Integer> accountIds = new HashMap<String, Integer>(),
+                                           currencyIds = new HashMap<String, Integer>();
+    private final int rows;
+    private final boolean ledgerOrdered;
+
+    private TxColumns(File directory, JSONObject meta) throws IOException, JSONException {
+        rows = meta.getInt("rows");
+        accounts = strings(meta.getJSONArray("accounts"), accountIds);
+        currencies = strings(meta.getJSONArray("currencies"), currencyIds);
+
+        ledger = ints(read(directory, LEDGER, 4));
+        type = shorts(read(directory, TYPE, 2));
+        account = ints(read(directory, ACCOUNT, 4));
+        destination = ints(read(directory, DESTINATION, 4));
+        mantissa = longs(read(directory, MANTISSA, 8));
+        exponent = read(directory, EXPONENT, 1).array();
+        currency = ints(read(directory, CURRENCY, 4));
+        issuer = ints(read(directory, ISSUER, 4));
+        result = shorts(read(directory, RESULT, 2));
+        fee = longs(read(directory, FEE, 8));
+
+        boolean ordered = true;
+        for (int i = 1; i < rows && ordered; i++) {
+            ordered = ledger[i - 1] <= ledger[i];
+        }
+        ledgerOrdered = ordered;
+    }
+
+    public static TxColumns open(File directory) throws IOException {
+        try {
+            JSONObject meta = new JSONObject(new String(readFully(new File(directory, META)), "UTF-8"));
+            if (meta.getInt("version") != VERSION) {
+                throw new IOException("Unsupported columns version " + meta.getInt("version"));
+            }
+            return new TxColumns(directory, meta);
+        } catch (JSONException e) {
+            throw new IOException("Corrupt " + META + " in " + directory + ": " + e);
+        }
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * @return the id of `account` in the account columns, or NONE if it's in
+     *         no row
+     */
+    public int accountId(AccountID account) {
+        Integer id = accountIds.get(account.address);
+        return id == null ? NONE : id;
+    }
+
+    public int currencyId(String code) {
+        Integer id = currencyIds.get(code);
+        return id == null ? NONE : id;
+    }
+
+    public AccountID account(int id) {
+        return id == NONE ? null : AccountID.fromAddress(accounts[id]);
+    }
+
+    /**
+     * @return the Amount's value in `row`, exactly, in drops when XRP
+     */
+    public BigDecimal amount(int row) {
+        return BigDecimal.valueOf(mantissa[row], -exponent[row]);
+    }
+
+    public Scan scan() {
+        return new Scan();
+    }
+
+    public interface RowFilter {
+        boolean accept(TxColumns columns, int row);
+    }
+
+    /**
+     * Rows matching all of the conditions given. Conditions on accounts or
+     * currencies are resolved to their ids up front, so matching compares
+     * primitives only, and one that's in no row matches nothing.
+     */
+    public class Scan {
+        private long minLedger = 0, maxLedger = 0xFFFFFFFFL;
+        private int type = Integer.MIN_VALUE, result = Integer.MIN_VALUE,
+                    account = Integer.MIN_VALUE, destination = Integer.MIN_VALUE,
+                    currency = Integer.MIN_VALUE, issuer = Integer.MIN_VALUE;
+        private RowFilter filter;
+
+        public Scan ledgers(long min, long max) {
+            minLedger = min;
+            maxLedger = max;
+            return this;
+        }
+
+        public Scan type(TransactionType type) {
+            this.type = type.asInteger();
+            return this;
+        }
+
+        public Scan result(TransactionEngineResult result) {
+            this.result = result.asInteger();
+            return this;
+        }
+
+        public Scan account(AccountID account) {
+            this.account = accountId(account);
+            return this;
+        }
+
+        public Scan destination(AccountID destination) {
+            this.destination = accountId(destination);
+            return this;
+        }
+
+        /**
+         * @param code a currency code, or XRP
+         */
+        public Scan currency(String code) {
+            this.currency = currencyId(code);
+            return this;
+        }
+
+        public Scan issuer(AccountID issuer) {
+            this.issuer = accountId(issuer);
+            return this;
+        }
+
+        /**
+         * Adds a filter of any other kind, tried after the others.
+         */
+        public Scan where(RowFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        private int first() {
+            return ledgerOrdered ? firstAtOrAfter(minLedger) : 0;
+        }
+
+        private int end() {
+            return ledgerOrdered ? firstAtOrAfter(maxLedger + 1) : rows;
+        }
+
+        private boolean matches(int row) {
+            long ledgerIndex = TxColumns.this.ledger[row] & 0xFFFFFFFFL;
+            return ledgerIndex >= minLedger && ledgerIndex <= maxLedger &&
+                   (type == Integer.MIN_VALUE || TxColumns.this.type[row] == type) &&
+                   (result == Integer.MIN_VALUE || TxColumns.this.result[row] == result) &&
+                   (account == Integer.MIN_VALUE || TxColumns.this.account[row] == account) &&
+                   (destination == Integer.MIN_VALUE || TxColumns.this.destination[row] == destination) &&
+                   (currency == Integer.MIN_VALUE || TxColumns.this.currency[row] == currency) &&
+                   (issuer == Integer.MIN_VALUE || TxColumns.this.issuer[row] == issuer) &&
+                   (filter == null || filter.accept(TxColumns.this, row));
+        }
+
+        // A condition on an account or currency in no row
+        private boolean none() {
+            return account == NONE || destination == NONE || currency == NONE || issuer == NONE;
+        }
+
+        public int count() {
+            int count = 0;
+            if (none()) return 0;
+            for (int row = first(), end = end(); row < end; row++) {
+                if (matches(row)) count++;
+            }
+            return count;
+        }
+
+        public int[] rows() {
+            if (none()) return new int[0];
+            int[] rows = new int[64];
+            int n = 0;
+            for (int row = first(), end = end(); row < end; row++) {
+                if (matches(row)) {
+                    if (n == rows.length) {
+                        int[] grown = new int[n * 2];
+                        System.arraycopy(rows, 0, grown, 0, n);
+                        rows = grown;
+                    }
+                    rows[n++] = row;
+                }
+            }
+            int[] trimmed = new int[n];
+            System.arraycopy(rows, 0, trimmed, 0, n);
+            return trimmed;
+        }
+
+        /**
+         * @return the sum of the matching Amounts, exactly, in drops when XRP
+         * @throws IllegalStateException if they're in more than one currency
+         */
+        public BigDecimal sumAmount() {
+            if (none()) return BigDecimal.ZERO;
+            // Summed as longs per exponent, until they could overflow
+            long[] sums = new long[256];
+            int[] terms = new int[256];
+            BigDecimal sum = BigDecimal.ZERO;
+            int summedCurrency = NONE;
+
+            for (int row = first(), end = end(); row < end; row++) {
+                if (!matches(row) || TxColumns.this.currency[row] == NONE) {
+                    continue;
+                }
+                int rowCurrency = TxColumns.this.currency[row];
+                if (summedCurrency == NONE) {
+                    summedCurrency = rowCurrency;
+                } else if (rowCurrency != summedCurrency) {
+                    throw new IllegalStateException("Summing amounts in both " + currencies[summedCurrency] +
+                                                    " and " + currencies[rowCurrency]);
+                }
+                int e = exponent[row] & 0xFF;
+                sums[e] += mantissa[row];
+                // Mantissas, and XRP in drops, are below 2^57, so 32 can't
+                if (++terms[e] == 32) {
+                    sum = sum.add(BigDecimal.valueOf(sums[e], -exponent[row]));
+                    sums[e] = 0;
+                    terms[e] = 0;
+                }
+            }
+            for (int e = 0; e < sums.length; e++) {
+                if (terms[e] != 0) {
+                    sum = sum.add(BigDecimal.valueOf(sums[e], -(byte) e));
+                }
+            }
+            return sum;
+        }
+
+        public long sumFees() {
+            long sum = 0;
+            if (none()) return 0;
+            for (int row = first(), end = end(); row < end; row++) {
+                if (matches(row)) sum += fee[row];
+            }
+            return sum;
+        }
+    }
+
+    private int firstAtOrAfter(long ledgerIndex) {
+        int lo = 0, hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if ((ledger[mid] & 0xFFFFFFFFL) < ledgerIndex) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static String[] strings(JSONArray array, HashMap<String, Integer> ids) throws JSONException {
+        String[] strings = new String[array.length()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = array.getString(i);
+            ids.put(strings[i], i);
+        }
+        return strings;
+    }
+
+    private ByteBuffer read(File directory, String name, int width) throws IOException {
+        File file = new File(directory, name);
+        if (file.length() != (long) rows * width) {
+            throw new IOException(file + " doesn't have " + rows + " rows");
+        }
+        return ByteBuffer.wrap(readFully(file));
+    }
+
+    private static int[] ints(ByteBuffer bytes) {
+        int[] values = new int[bytes.remaining() / 4];
+        bytes.asIntBuffer().get(values);
+        return values;
+    }
+
+    private static short[] shorts(ByteBuffer bytes) {
+        short[] values = new short[bytes.remaining() / 2];
+        bytes.asShortBuffer().get(values);
+        return values;
+    }
+
+    private static long[] longs(ByteBuffer bytes) {
+        long[] values = new long[bytes.remaining() / 8];
+        bytes.asLongBuffer().get(values);
+        return values;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+            while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+            }
+            return bytes.array();
+        } finally {
+            in.close();
+        }
+    }
+}
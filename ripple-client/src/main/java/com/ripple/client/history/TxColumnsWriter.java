@@ -0,0 +1,146 @@
+package com.ripple.client.history;
+
+import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.Amount;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Extracts the fields of transactions that audits ask about into a fresh
+ * TxColumns directory, one file per column.
+ */
+public class TxColumnsWriter implements Closeable {
+    private final File directory;
+    private final DataOutputStream ledger, type, account, destination,
+            mantissa, exponent, currency, issuer, result, fee;
+
+    private final Dictionary accounts = new Dictionary(), currencies = new Dictionary();
+    private int rows;
+    private boolean closed;
+
+    // Values to ids, in order of first use
+    static class Dictionary {
+        final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        final ArrayList<String> values = new ArrayList<String>();
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+    }
+
+    public TxColumnsWriter(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        this.directory = directory;
+        ledger = column(TxColumns.LEDGER);
+        type = column(TxColumns.TYPE);
+        account = column(TxColumns.ACCOUNT);
+        destination = column(TxColumns.DESTINATION);
+        mantissa = column(TxColumns.MANTISSA);
+        exponent = column(TxColumns.EXPONENT);
+        currency = column(TxColumns.CURRENCY);
+        issuer = column(TxColumns.ISSUER);
+        result = column(TxColumns.RESULT);
+        fee = column(TxColumns.FEE);
+    }
+
+    private DataOutputStream column(String name) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, name))));
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public void add(TransactionResult tr) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Closed");
+        }
+        ledger.writeInt(tr.ledgerIndex.intValue());
+        type.writeShort(tr.transactionType().asInteger());
+        account.writeInt(accountId(tr.initiatingAccount()));
+        destination.writeInt(accountId(tr.transaction.get(AccountID.Destination)));
+
+        Amount amount = tr.transaction.get(Amount.Amount);
+        if (amount == null) {
+            mantissa.writeLong(0);
+            exponent.writeByte(0);
+            currency.writeInt(TxColumns.NONE);
+            issuer.writeInt(TxColumns.NONE);
+        } else {
+            long m = amount.mantissa().longValue();
+            mantissa.writeLong(amount.isNegative() ? -m : m);
+            exponent.writeByte(amount.isNative ? 0 : amount.getOffset());
+            currency.writeInt(currencies.id(amount.isNative ? TxColumns.XRP : amount.currencyString()));
+            issuer.writeInt(amount.isNative ? TxColumns.NONE : accountId(amount.issuer()));
+        }
+
+        result.writeShort(tr.engineResult.asInteger());
+        Amount paid = tr.transaction.get(Amount.Fee);
+        fee.writeLong(paid == null ? 0 : paid.mantissa().longValue());
+        rows++;
+    }
+
+    /**
+     * Adds every record of `archive`, in order.
+     */
+    public void addAll(TxArchive archive) throws IOException {
+        for (TxArchive.Record record : archive) {
+            add(record.result());
+        }
+    }
+
+    private int accountId(AccountID id) {
+        return id == null ? TxColumns.NONE : accounts.id(id.address);
+    }
+
+    /**
+     * Writes the dictionaries and row count, after which the columns can be
+     * opened.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (DataOutputStream column : new DataOutputStream[]{ledger, type, account, destination,
+                mantissa, exponent, currency, issuer, result, fee}) {
+            column.close();
+        }
+        try {
+            JSONObject meta = new JSONObject();
+            meta.put("version", TxColumns.VERSION);
+            meta.put("rows", rows);
+            meta.put("accounts", accounts.values);
+            meta.put("currencies", currencies.values);
+
+            OutputStream out = new FileOutputStream(new File(directory, TxColumns.META));
+            try {
+                out.write(meta.toString().getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
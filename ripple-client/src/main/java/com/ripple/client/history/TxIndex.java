@@ -0,0 +1,265 @@
+package com.ripple.client.history;
+
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.hash.Hash256;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An on-disk, memory mapped, open addressing hash table from Hash256 keys,
+ * transaction hashes or `sequenceKey`s, to the offsets of records in a
+ * TxArchive, so a lookup touches a page or two rather than the heap.
+ *
+ * The layout, all big endian:
+ *
+ *   header  "RTXH", u32 version, u32 capacity, u32 count, u64 covered, u64 0
+ *   slots   capacity * (u64 first 8 bytes of key, u64 offset)
+ *
+ * Offsets are never 0, the archive header being there, so a 0 marks an
+ * empty slot. Slots are linearly probed from the key's low bits, and the
+ * table is rewritten twice as big once three quarters full.
+ *
+ * Only 8 bytes of each key are kept, so `get` may give offsets of other
+ * records, which TxArchive.find weeds out. `covered` is the end of the
+ * last record indexed, from which TxArchiveWriter catches up on opening.
+ */
+public class TxIndex implements Closeable {
+    static final int MAGIC = 0x52545848;  // RTXH
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SLOT = 16;
+    // Keeping the mapping under 2GB
+    static final int MAX_CAPACITY = 1 << 26;
+
+    private final File file;
+    private final boolean readOnly;
+    private RandomAccessFile raf;
+    private MappedByteBuffer map;
+    private int capacity, count;
+
+    private TxIndex(File file, boolean readOnly) {
+        this.file = file;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Opens `file` for reading and writing, creating it if need be.
+     */
+    public static TxIndex open(File file) throws IOException {
+        TxIndex index = new TxIndex(file, false);
+        if (!file.exists() || file.length() == 0) {
+            create(file, 1024).close();
+        }
+        index.map();
+        return index;
+    }
+
+    public static TxIndex openReadOnly(File file) throws IOException {
+        TxIndex index = new TxIndex(file, true);
+        index.map();
+        return index;
+    }
+
+    /**
+     * @return the key for looking up a transaction by its Account and
+     *         Sequence
+     */
+    public static Hash256 sequenceKey(AccountID account, long sequence) {
+        Hash256.HalfSha512 hasher = new Hash256.HalfSha512();
+        hasher.update(account.bytes());
+        hasher.update(new byte[]{(byte) (sequence >>> 24), (byte) (sequence >>> 16),
+                                 (byte) (sequence >>> 8), (byte) sequence});
+        return hasher.finish();
+    }
+
+    private static RandomAccessFile create(File file, int capacity) throws IOException {
+        RandomAccessFile created = new RandomAccessFile(file, "rw");
+        created.setLength(0);
+        created.setLength(HEADER_SIZE + (long) capacity * SLOT);
+        created.writeInt(MAGIC);
+        created.writeInt(VERSION);
+        created.writeInt(capacity);
+        created.writeInt(0);
+        created.writeLong(0);
+        return created;
+    }
+
+    private void map() throws IOException {
+        raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a transaction index");
+            }
+            map = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                              0, channel.size());
+            if (map.getInt(0) != MAGIC) {
+                throw new IOException("Not a transaction index");
+            }
+            if (map.getInt(4) != VERSION) {
+                throw new IOException("Unsupported index version " + map.getInt(4));
+            }
+            capacity = map.getInt(8);
+            count = map.getInt(12);
+            if (Integer.bitCount(capacity) != 1 || channel.size() != HEADER_SIZE + (long) capacity * SLOT) {
+                throw new IOException("Corrupt index " + file);
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the end offset of the last record indexed
+     */
+    public long covered() {
+        return map.getLong(16);
+    }
+
+    public void covered(long offset) {
+        map.putLong(16, offset);
+    }
+
+    private static long tag(Hash256 key) {
+        byte[] bytes = key.bytes();
+        long tag = 0;
+        for (int i = 0; i < 8; i++) {
+            tag = (tag << 8) | (bytes[i] & 0xFF);
+        }
+        return tag;
+    }
+
+    private int slot(long tag) {
+        return (int) (tag ^ (tag >>> 32)) & (capacity - 1);
+    }
+
+    /**
+     * @return the offsets stored under `key`, and any others sharing its
+     *         first 8 bytes, in the order put
+     */
+    public long[] get(Hash256 key) {
+        long tag = tag(key);
+        long[] found = new long[0];
+        for (int i = slot(tag); ; i = (i + 1) & (capacity - 1)) {
+            int at = HEADER_SIZE + i * SLOT;
+            long offset = map.getLong(at + 8);
+            if (offset == 0) {
+                return found;
+            }
+            if (map.getLong(at) == tag) {
+                long[] grown = new long[found.length + 1];
+                System.arraycopy(found, 0, grown, 0, found.length);
+                grown[found.length] = offset;
+                found = grown;
+            }
+        }
+    }
+
+    /**
+     * Stores `offset` under `key`, unless it already is.
+     */
+    public void put(Hash256 key, long offset) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("Read only");
+        }
+        if (offset == 0) {
+            throw new IllegalArgumentException("Offsets start after the archive header");
+        }
+        if ((count + 1) * 4L > capacity * 3L) {
+            grow();
+        }
+        if (insert(tag(key), offset)) {
+            map.putInt(12, ++count);
+        }
+    }
+
+    private boolean insert(long tag, long offset) {
+        for (int i = slot(tag); ; i = (i + 1) & (capacity - 1)) {
+            int at = HEADER_SIZE + i * SLOT;
+            long existing = map.getLong(at + 8);
+            if (existing == 0) {
+                map.putLong(at, tag);
+                map.putLong(at + 8, offset);
+                return true;
+            }
+            if (existing == offset && map.getLong(at) == tag) {
+                return false;
+            }
+        }
+    }
+
+    // Rewrites the slots to a table twice as big, then swaps it in
+    private void grow() throws IOException {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Index is full, start another archive");
+        }
+        rewrite(capacity * 2, Long.MAX_VALUE, covered());
+    }
+
+    /**
+     * Drops the offsets from `end` on, as when the archive is truncated
+     * there, and any cover past it.
+     */
+    public void truncate(long end) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("Read only");
+        }
+        rewrite(capacity, end, Math.min(covered(), end));
+    }
+
+    // Rewrites the slots with offsets before `end` to a new table, then swaps it in
+    private void rewrite(int newCapacity, long end, long covered) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile rewritten = create(temp, newCapacity);
+        MappedByteBuffer old = map;
+        int oldCapacity = capacity;
+        try {
+            map = rewritten.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, rewritten.length());
+            capacity = newCapacity;
+            count = 0;
+            for (int i = 0; i < oldCapacity; i++) {
+                int at = HEADER_SIZE + i * SLOT;
+                long offset = old.getLong(at + 8);
+                if (offset != 0 && offset < end) {
+                    insert(old.getLong(at), offset);
+                    count++;
+                }
+            }
+            map.putInt(12, count);
+            covered(covered);
+            map.force();
+        } finally {
+            rewritten.close();
+        }
+        raf.close();
+        if (!temp.renameTo(file)) {
+            throw new IOException("Can't rename " + temp + " to " + file);
+        }
+        map();
+    }
+
+    public void sync() {
+        if (!readOnly) {
+            map.force();
+        }
+    }
+
+    /**
+     * Closes the file, the mapping is released once unreachable.
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+        raf.close();
+    }
+}
@@ -0,0 +1,147 @@
+package com.ripple.client.ledger;
+
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.core.types.shamap.TransactionTree;
+import com.ripple.encodings.common.B16;
+import com.ripple.utils.Chunked;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Rebuilds the transaction ShaMap of a ledger, as returned by a `ledger`
+ * request with `transactions: true, expand: true` (either json or binary),
+ * and checks the root against the header's `TransactionHash`.
+ */
+public class TransactionSetVerifier {
+    // Ledgers with fewer transactions than this are decoded on the calling thread
+    public static int PARALLEL_THRESHOLD = 64;
+
+    // Offset of the transaction hash in the `ledger_data` header blob
+    // LedgerSequence(4) TotalCoins(8) ParentHash(32)
+    private static final int HEADER_TRANSACTION_HASH_OFFSET = 44;
+
+    private final ExecutorService executor;
+
+    public TransactionSetVerifier(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public static class Result {
+        public long ledgerIndex;
+        public Hash256 expected;
+        public Hash256 computed;
+        public Set<Hash256> transactionIDs = new HashSet<Hash256>();
+        public List<Hash256> mismatchedIDs = new ArrayList<Hash256>();
+
+        public boolean verified() {
+            return mismatchedIDs.isEmpty() && expected != null && expected.equals(computed);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ledger %d: %s (expected %s, computed %s, %d transactions)",
+                    ledgerIndex, verified() ? "verified" : "FAILED", expected, computed, transactionIDs.size());
+        }
+    }
+
+    /**
+     * @param response either a full response message, its `result` or the `ledger` object itself
+     */
+    public Result verify(JSONObject response) {
+        JSONObject ledger = ledgerObject(response);
+        Result result = new Result();
+
+        try {
+            result.ledgerIndex = ledger.getLong(ledger.has("ledger_index") ? "ledger_index" : "seqNum");
+            result.expected = expectedTransactionHash(ledger);
+
+            JSONArray transactions = ledger.getJSONArray("transactions");
+            LeafData[] leaves = decodeLeaves(transactions);
+
+            TransactionTree tree = new TransactionTree();
+            for (LeafData leaf : leaves) {
+                if (leaf.claimedID != null && !leaf.claimedID.equals(leaf.id)) {
+                    result.mismatchedIDs.add(leaf.claimedID);
+                }
+                tree.addTransaction(leaf.id, leaf.tx, leaf.meta);
+                result.transactionIDs.add(leaf.id);
+            }
+
+            result.computed = tree.size() >= PARALLEL_THRESHOLD ? tree.hash(executor) : tree.hash();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        return result;
+    }
+
+    private static JSONObject ledgerObject(JSONObject response) {
+        if (response.has("result")) {
+            response = response.optJSONObject("result");
+        }
+        if (response.has("ledger")) {
+            response = response.optJSONObject("ledger");
+        }
+        return response;
+    }
+
+    private static Hash256 expectedTransactionHash(JSONObject ledger) throws JSONException {
+        if (ledger.has("transaction_hash")) {
+            return Hash256.translate.fromString(ledger.getString("transaction_hash"));
+        } else {
+            byte[] header = B16.decode(ledger.getString("ledger_data"));
+            return new Hash256(Arrays.copyOfRange(header,
+                                                  HEADER_TRANSACTION_HASH_OFFSET,
+                                                  HEADER_TRANSACTION_HASH_OFFSET + 32));
+        }
+    }
+
+    private static class LeafData {
+        Hash256 id, claimedID;
+        byte[] tx, meta;
+    }
+
+    private LeafData[] decodeLeaves(final JSONArray transactions) throws JSONException {
+        final int n = transactions.length();
+        final LeafData[] leaves = new LeafData[n];
+
+        Chunked.run(n < PARALLEL_THRESHOLD ? null : executor, n, Chunked.chunkSize(n, 4, 1),
+                new Chunked.Task<Void>() {
+                    @Override
+                    public Void run(int from, int to) throws JSONException {
+                        for (int i = from; i < to; i++) {
+                            leaves[i] = decodeLeaf(transactions.getJSONObject(i));
+                        }
+                        return null;
+                    }
+                });
+        return leaves;
+    }
+
+    private static LeafData decodeLeaf(JSONObject json) throws JSONException {
+        LeafData leaf = new LeafData();
+
+        if (json.has("tx_blob")) {
+            leaf.tx = B16.decode(json.getString("tx_blob"));
+            leaf.meta = B16.decode(json.getString("meta"));
+        } else {
+            // `hash` and `metaData` aren't serialized fields so are skipped here
+            leaf.tx = STObject.fromJSONObject(json).toWireBytes();
+            leaf.meta = STObject.fromJSONObject(json.getJSONObject("metaData")).toWireBytes();
+            if (json.has("hash")) {
+                leaf.claimedID = Hash256.translate.fromString(json.getString("hash"));
+            }
+        }
+
+        leaf.id = Hash256.transactionID(leaf.tx);
+        return leaf;
+    }
+}
@@ -7,6 +7,7 @@ public interface IPublisher<EventClass extends IPublisher.ICallback> {
 
     <T extends EventClass> void on(Class<T> key, T cb);
     <T extends EventClass> void once(Class<T> key, T cb);
+    <T extends EventClass> int emit(Class<T> key, Object arg);
     <T extends EventClass> int emit(Class<T> key, Object... args);
     void removeListener(Class<? extends EventClass> key, ICallback cb);
 }
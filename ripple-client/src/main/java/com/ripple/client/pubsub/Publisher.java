@@ -2,11 +2,18 @@ package com.ripple.client.pubsub;
 
 import com.ripple.client.ClientLogger;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Listeners are kept per event class in copy-on-write arrays, so emission
+ * iterates a snapshot without locking, copying or allocating, and listeners
+ * can be added or removed from any thread, or from within a callback.
+ *
+ * Listeners added with `once` are retired in O(1) when they fire, and swept
+ * out of the array in bulk once they make up half of it.
+ */
 public class Publisher<EventClass extends IPublisher.ICallback> implements IPublisher<EventClass> {
-
     public abstract static class Callback<Result> implements ICallback {
         abstract public void called(Result result);
 
@@ -17,48 +24,204 @@ public class Publisher<EventClass extends IPublisher.ICallback> implements IPubl
         }
     }
 
+    private static final ICallback<?>[] NONE = new ICallback<?>[0];
+
+    private static class Listeners {
+        volatile ICallback<?>[] callbacks = NONE;
+        private int retired;
+
+        synchronized void add(ICallback<?> cb) {
+            ICallback<?>[] current = callbacks;
+            ICallback<?>[] added = new ICallback<?>[current.length + 1];
+            System.arraycopy(current, 0, added, 0, current.length);
+            added[current.length] = cb;
+            callbacks = added;
+        }
+
+        synchronized void remove(ICallback<?> cb) {
+            ICallback<?>[] current = callbacks;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == cb) {
+                    if (current.length == 1) {
+                        callbacks = NONE;
+                        return;
+                    }
+                    ICallback<?>[] removed = new ICallback<?>[current.length - 1];
+                    System.arraycopy(current, 0, removed, 0, i);
+                    System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                    callbacks = removed;
+                    return;
+                }
+            }
+        }
+
+        synchronized void retired() {
+            if (++retired * 2 < callbacks.length) {
+                return;
+            }
+            ICallback<?>[] current = callbacks;
+            int live = 0;
+            for (ICallback<?> cb : current) {
+                if (!isRetired(cb)) live++;
+            }
+            ICallback<?>[] swept = live == 0 ? NONE : new ICallback<?>[live];
+            for (int i = 0, j = 0; i < current.length; i++) {
+                if (!isRetired(current[i])) swept[j++] = current[i];
+            }
+            callbacks = swept;
+            retired = 0;
+        }
+
+        private static boolean isRetired(ICallback<?> cb) {
+            return cb instanceof Once && ((Once) cb).fired.get();
+        }
+    }
+
+    private static class Once extends Callback<Object> {
+        final Listeners listeners;
+        final ICallback<?> cb;
+        final AtomicBoolean fired = new AtomicBoolean();
+
+        Once(Listeners listeners, ICallback<?> cb) {
+            this.listeners = listeners;
+            this.cb = cb;
+        }
+
+        private boolean fire() {
+            if (!fired.compareAndSet(false, true)) {
+                return false;
+            }
+            listeners.retired();
+            return true;
+        }
+
+        @Override
+        public void called(Object arg) {
+            deliver(arg);
+        }
+
+        @Override
+        public void call(Object... args) {
+            deliver(args);
+        }
+
+        // Whether this was the first, and only, delivery
+        boolean deliver(Object arg) {
+            if (!fire()) {
+                return false;
+            }
+            dispatch(cb, arg);
+            return true;
+        }
+
+        boolean deliver(Object[] args) {
+            if (!fire()) {
+                return false;
+            }
+            cb.call(args);
+            return true;
+        }
+    }
+
+    private final ConcurrentHashMap<Class<?>, Listeners> cbs = new ConcurrentHashMap<Class<?>, Listeners>();
+
     @Override
     public <T extends EventClass> void on(Class<T> key, T cb) {
-        add(key, cb);
+        listFor(key).add(cb);
     }
-    
+
     @Override
     public <T extends EventClass> void once(final Class<T> key, final T cb) {
-        add(key, new ICallback() {
-            
-            public void call(Object... args) {
-                removeListener(key, this);
-                cb.call(args);
+        Listeners listeners = listFor(key);
+        listeners.add(new Once(listeners, cb));
+    }
+
+    @Override
+    public <T extends EventClass> int emit(Class<T> key, Object arg) {
+        if (ClientLogger.isEnabled(ClientLogger.Level.TRACE)) {
+            ClientLogger.trace("Emitting %s from thread: %s", key.getSimpleName(), Thread.currentThread());
+        }
+        Listeners listeners = cbs.get(key);
+        if (listeners == null) {
+            return 0;
+        }
+        int called = 0;
+        for (ICallback<?> callback : listeners.callbacks) {
+            if (callback instanceof Once) {
+                if (((Once) callback).deliver(arg)) called++;
+            } else {
+                dispatch(callback, arg);
+                called++;
             }
-        });
+        }
+        return called;
     }
 
     @Override
     public <T extends EventClass> int emit(Class<T> key, Object... args) {
-        ClientLogger.log("Emitting %s from thread: %s", key.getSimpleName(), Thread.currentThread());
-        // Make a copy of the array at the time of emission
-        // toArray will notice length then allocate a new ICallback[]
-        ICallback[] callbacks = new ICallback[0];
-        callbacks = listFor(key).toArray(callbacks);
-        for (ICallback callback : callbacks) {
-            callback.call(args);
-        }
-        return callbacks.length;
+        if (args.length == 1) {
+            return emit(key, args[0]);
+        }
+        Listeners listeners = cbs.get(key);
+        if (listeners == null) {
+            return 0;
+        }
+        int called = 0;
+        for (ICallback<?> callback : listeners.callbacks) {
+            if (callback instanceof Once) {
+                if (((Once) callback).deliver(args)) called++;
+            } else {
+                callback.call(args);
+                called++;
+            }
+        }
+        return called;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void dispatch(ICallback<?> callback, Object arg) {
+        if (callback instanceof Callback) {
+            ((Callback<Object>) callback).called(arg);
+        } else {
+            callback.call(arg);
+        }
     }
 
-    private final HashMap<Class<? extends EventClass>, ArrayList<ICallback>> cbs;
-    {
-        cbs = new HashMap<Class<? extends EventClass>, ArrayList<ICallback>>();
+    private Listeners listFor(Class<? extends EventClass> key) {
+        Listeners listeners = cbs.get(key);
+        if (listeners == null) {
+            Listeners created = new Listeners();
+            listeners = cbs.putIfAbsent(key, created);
+            if (listeners == null) {
+                listeners = created;
+            }
+        }
+        return listeners;
     }
 
-    private ArrayList<ICallback> listFor(Class<? extends EventClass> key) {
-        if (cbs.get(key) == null) {
-            cbs.put(key, new ArrayList<ICallback>());
+    /**
+     * @return whether emitting `key` would call anything, so costly arguments
+     *         needn't be built otherwise
+     */
+    public boolean hasListeners(Class<? extends EventClass> key) {
+        Listeners listeners = cbs.get(key);
+        if (listeners == null) {
+            return false;
+        }
+        // Fired once listeners may not have been swept out yet
+        for (ICallback<?> callback : listeners.callbacks) {
+            if (!Listeners.isRetired(callback)) {
+                return true;
+            }
         }
-        return cbs.get(key);
+        return false;
     }
-    private <T extends EventClass> void add(Class<T> key, ICallback cb) {listFor(key).add(cb); }
-    
+
     @Override
-    public void removeListener(Class<? extends EventClass> key, ICallback cb) {listFor(key).remove(cb);}
+    public void removeListener(Class<? extends EventClass> key, ICallback cb) {
+        Listeners listeners = cbs.get(key);
+        if (listeners != null) {
+            listeners.remove(cb);
+        }
+    }
 }
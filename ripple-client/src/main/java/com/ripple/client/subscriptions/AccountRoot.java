@@ -27,7 +27,7 @@ public class AccountRoot extends Publisher<AccountRoot.events> {
             PreviousTxnID = transactionHash;
             PreviousTxnLgrSeq = transactionLedgerIndex;
         } else {
-            ClientLogger.log("hrmmm .... "); // We should keep track of these and try and form a chain
+            ClientLogger.debug("hrmmm .... "); // We should keep track of these and try and form a chain
         }
     }
 
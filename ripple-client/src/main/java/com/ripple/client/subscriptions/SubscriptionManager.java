@@ -24,6 +24,16 @@ public class SubscriptionManager extends Publisher<SubscriptionManager.events> {
 
     Set<Stream>                  streams = new TreeSet<Stream>();
     Set<AccountID>              accounts = new TreeSet<AccountID>();
+    boolean                       binary = false;
+
+    /**
+     * Asks for transaction notifications as tx_blob/meta hex, which are
+     * decoded with the wire parser, rather than as JSON. Applies to
+     * subscriptions made after it's set.
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
 
     <T> Set<T> single(T element) {
         Set<T> set = new TreeSet<T>();
@@ -53,6 +63,7 @@ public class SubscriptionManager extends Publisher<SubscriptionManager.events> {
         try {
             if (streams != null && streams.size() > 0) subs.put("streams", new JSONArray(streams));
             if (accounts != null && accounts.size() > 0) subs.put("accounts", new JSONArray(accounts));
+            if (binary) subs.put("binary", true);
         } catch (JSONException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,185 @@
+package com.ripple.client.transactions;
+
+import com.ripple.client.async.Promise;
+import com.ripple.core.known.tx.Transaction;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.crypto.ecdsa.DeterministicSigner;
+import com.ripple.crypto.ecdsa.IKeyPair;
+import com.ripple.utils.Chunked;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs batches of transactions, that already have a Sequence and Fee,
+ * split into chunks over the executor, either waiting, or not, with
+ * signAsync, so an event loop needn't block on it.
+ *
+ * Each thread signs with its own {@link DeterministicSigner} for the
+ * batch (they hold mutable HMAC state) and each transaction hashes with its
+ * own digest, so nothing is shared between threads but the transactions
+ * themselves, each of which is only touched by one thread.
+ */
+public class BulkSigner {
+    private static final int MIN_CHUNK = 16;
+
+    public static class Signed {
+        public final Hash256 hash;
+        public final byte[] tx_blob;
+
+        public Signed(Hash256 hash, byte[] tx_blob) {
+            this.hash = hash;
+            this.tx_blob = tx_blob;
+        }
+    }
+
+    private final ExecutorService executor;
+    private static ExecutorService shared;
+
+    /**
+     * @param executor may be null, in which case batches are signed on the
+     *                 calling thread
+     */
+    public BulkSigner(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return a pool of daemon threads, one per core, shared by all, whose
+     *         threads exit when idle
+     */
+    public static synchronized ExecutorService sharedExecutor() {
+        if (shared == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(cores, cores, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ripple-signer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            shared = pool;
+        }
+        return shared;
+    }
+
+    /**
+     * Signs each transaction, setting its `tx_blob` and `hash`.
+     *
+     * @return the blobs and hashes, in the same order as `transactions`
+     */
+    public List<Signed> sign(final List<? extends Transaction> transactions, IKeyPair keyPair) {
+        int n = transactions.size();
+        Chunked.run(executor, n, Chunked.chunkSize(n, 2, MIN_CHUNK), signing(transactions, keyPair));
+        // The futures give us happens-before on the fields set by the workers
+        return signed(transactions);
+    }
+
+    /**
+     * As per sign, without waiting. The promise is settled on the thread
+     * signing the last chunk, or, without an executor, before returning.
+     */
+    public Promise<List<Signed>> signAsync(final List<? extends Transaction> transactions, IKeyPair keyPair) {
+        final Promise<List<Signed>> promise = new Promise<List<Signed>>();
+        int n = transactions.size();
+        Chunked.runAsync(executor, n, Chunked.chunkSize(n, 2, MIN_CHUNK), signing(transactions, keyPair),
+                new Chunked.Callback<Void>() {
+                    @Override
+                    public void done(List<Void> results, Throwable failure) {
+                        if (failure != null) {
+                            promise.fail(failure);
+                        } else {
+                            promise.complete(signed(transactions));
+                        }
+                    }
+                });
+        return promise;
+    }
+
+    private Chunked.Task<Void> signing(final List<? extends Transaction> transactions, IKeyPair keyPair) {
+        final ThreadLocalSigner signer = new ThreadLocalSigner(keyPair);
+        return new Chunked.Task<Void>() {
+            @Override
+            public Void run(int from, int to) {
+                signRange(transactions, signer, from, to);
+                return null;
+            }
+        };
+    }
+
+    private static List<Signed> signed(List<? extends Transaction> transactions) {
+        ArrayList<Signed> signed = new ArrayList<Signed>(transactions.size());
+        for (Transaction transaction : transactions) {
+            signed.add(new Signed(transaction.hash, transaction.tx_blob));
+        }
+        return signed;
+    }
+
+    private void signRange(List<? extends Transaction> transactions, IKeyPair signer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            transactions.get(i).sign(signer);
+        }
+    }
+
+    /**
+     * Delegates to `keyPair`, but signs with a DeterministicSigner per thread.
+     */
+    private static class ThreadLocalSigner implements IKeyPair {
+        private final IKeyPair keyPair;
+        private final ThreadLocal<DeterministicSigner> signers;
+
+        ThreadLocalSigner(final IKeyPair keyPair) {
+            this.keyPair = keyPair;
+            this.signers = new ThreadLocal<DeterministicSigner>() {
+                @Override
+                protected DeterministicSigner initialValue() {
+                    return new DeterministicSigner(keyPair.priv());
+                }
+            };
+        }
+
+        @Override
+        public byte[] sign(byte[] bytes) {
+            return signers.get().sign(bytes);
+        }
+
+        @Override
+        public String pubHex() {
+            return keyPair.pubHex();
+        }
+
+        @Override
+        public BigInteger pub() {
+            return keyPair.pub();
+        }
+
+        @Override
+        public byte[] pubBytes() {
+            return keyPair.pubBytes();
+        }
+
+        @Override
+        public String privHex() {
+            return keyPair.privHex();
+        }
+
+        @Override
+        public BigInteger priv() {
+            return keyPair.priv();
+        }
+
+        @Override
+        public boolean verify(byte[] data, byte[] sigBytes) {
+            return keyPair.verify(data, sigBytes);
+        }
+    }
+}
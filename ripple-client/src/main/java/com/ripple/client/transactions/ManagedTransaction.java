@@ -18,6 +18,11 @@ public class ManagedTransaction extends Transaction implements Sequenced, IPubli
         publisher.once(key, cb);
     }
 
+    @SuppressWarnings("rawtypes")
+    public <T extends events> int emit(Class<T> key, Object arg) {
+        return publisher.emit(key, arg);
+    }
+
     public <T extends events> int emit(Class<T> key, Object... args) {
         return publisher.emit(key, args);
     }
@@ -4,8 +4,11 @@ import com.ripple.client.Client;
 import com.ripple.client.ClientLogger;
 import com.ripple.client.Request;
 import com.ripple.client.Response;
+import com.ripple.client.async.Promise;
 import com.ripple.client.enums.Command;
+import com.ripple.client.enums.RPCErr;
 import com.ripple.client.subscriptions.AccountRoot;
+import com.ripple.client.subscriptions.ServerInfo;
 import com.ripple.client.transactions.TransactionMessage.TransactionResult;
 import com.ripple.core.enums.TransactionEngineResult;
 import com.ripple.core.enums.TransactionType;
@@ -16,21 +19,102 @@ import com.ripple.core.types.uint.UInt16;
 import com.ripple.core.types.uint.UInt32;
 import com.ripple.crypto.ecdsa.IKeyPair;
 import com.ripple.encodings.common.B16;
-import org.json.JSONObject;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Prepares, submits and tracks an account's transactions, on the client's
+ * event loop.
+ *
+ * Transactions are submitted in the order queued, pipelined, with up to
+ * `window` of them sequenced and in flight at once, so throughput isn't
+ * bound by round trips. Those queued before the server info and account
+ * root are primed, or beyond the window, wait in the backlog, and are only
+ * assigned a Sequence, and signed, as they enter it. Batches are signed
+ * off the loop, by the BulkSigner, and submitted back on it.
+ *
+ * Submitted transactions are indexed by hash, for matching validation
+ * notifications, and by Sequence, so each message costs O(1), or O(log n),
+ * however many are pending, and so gaps in the sequence can be found:
+ *
+ *   terPRE_SEQ      held until the transaction before it is accepted, then
+ *                   resubmitted, as is
+ *   tefPAST_SEQ     looked up by hash, as a held copy may have applied, and
+ *                   only if not found, re-sequenced and re-signed alone,
+ *                   after those in flight
+ *   telINSUF_FEE_P  re-signed with the fee as of the next ledger close, at
+ *                   the same Sequence
+ *   other ter*      held by the server, so resubmitted as is on each ledger
+ *                   close, until it's applied or rejected, or the server
+ *                   would have given up on it
+ *
+ * Each is given a LastLedgerSequence, LAST_LEDGER_OFFSET past the latest
+ * validated ledger, so one accepted but dropped before validating, say from
+ * the open ledger, can't hold its slot forever. Once that ledger is passed,
+ * it's looked up, and if not found, failed.
+ *
+ * Any other failure leaves a hole, which, if others are in flight after
+ * it, is filled with a no-op AccountSet. Shifting those down instead isn't
+ * safe, as the server holds their terPRE_SEQ blobs, and would apply them
+ * too, at their original sequences.
+ */
 public class TransactionManager {
     Client client;
     AccountRoot accountRoot;
     AccountID accountID;
     IKeyPair keyPair;
+    BulkSigner bulkSigner = new BulkSigner(BulkSigner.sharedExecutor());
     public long sequence = -1;
     public long transactionID;
+    int window = 10;
 
-    ArrayList<ManagedTransaction> submitted = new ArrayList<ManagedTransaction>();
-    ArrayList<ManagedTransaction> queued = new ArrayList<ManagedTransaction>();
+    // Submitted, awaiting validation, in order of submission
+    LinkedHashMap<Hash256, ManagedTransaction> submitted = new LinkedHashMap<Hash256, ManagedTransaction>();
+    // In flight, once assigned a Sequence, until validated or failed
+    TreeMap<Long, ManagedTransaction> bySequence = new TreeMap<Long, ManagedTransaction>();
+    // Queued, until accepted or failed
+    Set<ManagedTransaction> queued = identitySet();
+    // Submitted, but cut off before the response
+    ArrayList<ManagedTransaction> interrupted = new ArrayList<ManagedTransaction>();
+    // Queued, but not yet sequenced, in the order queued
+    ArrayDeque<ManagedTransaction> backlog = new ArrayDeque<ManagedTransaction>();
+    // terPRE_SEQ, waiting on the transaction before
+    Set<ManagedTransaction> blocked = identitySet();
+    // Other ter results, retried on each ledger close
+    IdentityHashMap<ManagedTransaction, Held> held = new IdentityHashMap<ManagedTransaction, Held>();
+    // telINSUF_FEE_P, waiting on the next ledger close
+    Set<ManagedTransaction> underpaid = identitySet();
+    // Fate unknown, timed out, or tefPAST_SEQ, until looked up by hash
+    Set<ManagedTransaction> unresolved = identitySet();
+    // tefPAST_SEQ, re-sequenced if not found by hash
+    Set<ManagedTransaction> pastSequence = identitySet();
+    private Set<ManagedTransaction> lookingUp = identitySet();
+    // No-ops filling holes in the sequence
+    Set<ManagedTransaction> fillers = identitySet();
+    private boolean listening, signing;
+
+    // The server holds ter results for a few ledgers, so past this many
+    // closes, no copy of it can still apply
+    public static final int MAX_HELD_CLOSES = 8;
+    // How many ledgers past the latest validated one a transaction may apply in
+    public static final int LAST_LEDGER_OFFSET = 10;
+
+    static class Held {
+        Response response;
+        int closes;
+    }
+
+    private static Set<ManagedTransaction> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<ManagedTransaction, Boolean>());
+    }
 
     public int awaiting() {
         return queued.size() + submitted.size();
@@ -44,35 +128,196 @@ public class TransactionManager {
     }
 
     public void queue(final ManagedTransaction transaction) {
-        queued.add(transaction);
+        client.run(new Runnable() {
+            @Override
+            public void run() {
+                queueInLoop(Collections.singletonList(transaction));
+            }
+        });
+    }
 
-        if (canSubmit()) {
-            makeSubmitRequest(transaction);
-        } else {
-            // We wait for basically any old event n see if we are primed after each, angular styles
-            client.on(Client.OnMessage.class, new Client.OnMessage() {
-                @Override
-                public void called(JSONObject jsonObject) {
-                    if (canSubmit()) {
-                        client.removeListener(Client.OnMessage.class, this);
-                        makeSubmitRequest(transaction);
+    /**
+     * Queues a batch, which is assigned fees and sequences in order, as it
+     * enters the window, and signed a window's worth at once using the
+     * BulkSigner before submission.
+     */
+    public void queue(final List<ManagedTransaction> transactions) {
+        client.run(new Runnable() {
+            @Override
+            public void run() {
+                queueInLoop(transactions);
+            }
+        });
+    }
+
+    private void queueInLoop(List<ManagedTransaction> transactions) {
+        queued.addAll(transactions);
+        backlog.addAll(transactions);
+        listen();
+        pump();
+    }
+
+    /**
+     * @param window how many transactions may be in flight, sequenced but
+     *               not yet validated, at once
+     */
+    public void setWindow(final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1");
+        }
+        client.run(new Runnable() {
+            @Override
+            public void run() {
+                TransactionManager.this.window = window;
+                pump();
+            }
+        });
+    }
+
+    private void listen() {
+        if (listening) {
+            return;
+        }
+        listening = true;
+        // Priming is by the subscription response, a ledger closing, or
+        // the account root's info, so those are all that need watching
+        client.on(Client.OnSubscribed.class, new Client.OnSubscribed() {
+            @Override
+            public void called(ServerInfo serverInfo) {
+                pump();
+            }
+        });
+        client.on(Client.OnLedgerClosed.class, new Client.OnLedgerClosed() {
+            @Override
+            public void called(ServerInfo serverInfo) {
+                retry();
+                pump();
+            }
+        });
+        accountRoot.on(AccountRoot.OnUpdate.class, new AccountRoot.OnUpdate() {
+            @Override
+            public void called(AccountRoot accountRoot) {
+                pump();
+            }
+        });
+    }
+
+    // Sequences, signs and submits from the backlog, while the window allows.
+    // Signing is off the loop, a batch at a time, so batches go in order.
+    private void pump() {
+        if (signing || backlog.isEmpty() || !canSubmit()) {
+            return;
+        }
+        final ArrayList<ManagedTransaction> entering = new ArrayList<ManagedTransaction>();
+        while (!backlog.isEmpty() && bySequence.size() < window) {
+            ManagedTransaction transaction = backlog.poll();
+            transaction.put(UInt32.Sequence, getSubmissionSequence());
+            transaction.put(Amount.Fee, client.serverInfo.transactionFee(transaction));
+            transaction.put(UInt32.LastLedgerSequence, lastLedgerSequence());
+            // Holding its slot, and Sequence, while signed
+            bySequence.put(transaction.sequence().longValue(), transaction);
+            entering.add(transaction);
+        }
+        if (entering.isEmpty()) {
+            return;
+        }
+        signing = true;
+        bulkSigner.signAsync(entering, keyPair).onDone(new Promise.Listener<List<BulkSigner.Signed>>() {
+            @Override
+            public void called(final Promise<List<BulkSigner.Signed>> promise) {
+                client.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        signing = false;
+                        if (promise.succeeded()) {
+                            for (ManagedTransaction transaction : entering) {
+                                submit(transaction);
+                            }
+                        } else {
+                            unsigned(entering, promise.failure());
+                        }
+                        pump();
                     }
+                });
+            }
+        });
+    }
+
+    // Frees the slots, last first, so the sequence is rewound, not filled
+    private void unsigned(List<ManagedTransaction> transactions, Throwable failure) {
+        Exception exception = failure instanceof Exception ? (Exception) failure : new RuntimeException(failure);
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            ManagedTransaction transaction = transactions.get(i);
+            queued.remove(transaction);
+            forgetSequence(transaction);
+            fill(transaction.sequence().longValue());
+            transaction.emit(ManagedTransaction.OnSumbitRequestError.class, exception);
+        }
+    }
+
+    // Retries those waiting on a ledger close, lowest Sequence first
+    private void retry() {
+        for (ManagedTransaction transaction : new ArrayList<ManagedTransaction>(held.keySet())) {
+            Held retrying = held.get(transaction);
+            if (++retrying.closes > MAX_HELD_CLOSES) {
+                failed(transaction, retrying.response, true);
+            } else {
+                submit(transaction);
+            }
+        }
+        for (ManagedTransaction transaction : new ArrayList<ManagedTransaction>(unresolved)) {
+            lookup(transaction);
+        }
+        for (ManagedTransaction transaction : new ArrayList<ManagedTransaction>(bySequence.values())) {
+            if (underpaid.remove(transaction)) {
+                transaction.put(UInt32.LastLedgerSequence, lastLedgerSequence());
+                transaction.prepare(keyPair, client.serverInfo.transactionFee(transaction), transaction.sequence());
+                submit(transaction);
+            } else if (blocked.contains(transaction)) {
+                // The server retries those it holds on each close too, so
+                // unless the one before is unresolved, so can we
+                ManagedTransaction before = bySequence.get(transaction.sequence().longValue() - 1);
+                if (before == null || submitted.containsKey(before.hash)) {
+                    blocked.remove(transaction);
+                    submit(transaction);
                 }
-            });
+            }
+        }
+        for (ManagedTransaction transaction : new ArrayList<ManagedTransaction>(submitted.values())) {
+            if (expired(transaction)) {
+                lookup(transaction);
+            }
         }
     }
 
+    private UInt32 lastLedgerSequence() {
+        return new UInt32(client.serverInfo.ledger_index + LAST_LEDGER_OFFSET);
+    }
+
+    // Whether its LastLedgerSequence has been validated, so it can no longer apply
+    private boolean expired(ManagedTransaction transaction) {
+        UInt32 last = transaction.get(UInt32.LastLedgerSequence);
+        return last != null && last.longValue() < client.serverInfo.ledger_index;
+    }
+
+    /**
+     * @param bulkSigner used to sign batches, off the loop, on the shared
+     *                   signing threads by default. Without an executor,
+     *                   batches are signed on the loop.
+     */
+    public void setBulkSigner(BulkSigner bulkSigner) {
+        this.bulkSigner = bulkSigner;
+    }
+
     private boolean canSubmit() {
         return client.serverInfo.primed() && accountRoot.primed();
     }
 
-    private Request makeSubmitRequest(final ManagedTransaction transaction) {
-        Amount fee = client.serverInfo.transactionFee(transaction);
-        transaction.prepare(keyPair, fee, getSubmissionSequence());
-
+    private Request submit(final ManagedTransaction transaction) {
         final Request req = client.newRequest(Command.submit);
         req.json("tx_blob", B16.toString(transaction.tx_blob));
-        if (!transaction.get(Amount.Amount).isNative) {
+        Amount amount = transaction.get(Amount.Amount);
+        if (amount != null && !amount.isNative) {
             req.json("build_path", true);
         }
 
@@ -90,13 +335,103 @@ public class TransactionManager {
             }
         });
 
+        rememberIfInterrupted(req, transaction);
         req.request();
         return req;
     }
 
-    /*
-    * The $10,000 question is when does sequence get decremented?
-    * */
+    // Cut off, or timed out, the submission may or may not have reached
+    // the server, so it's looked up before it's resubmitted, or its slot
+    // freed, lest it hold its Sequence, and those after it, forever
+    private void rememberIfInterrupted(Request req, final ManagedTransaction transaction) {
+        req.future().onDone(new Promise.Listener<Response>() {
+            @Override
+            public void called(final Promise<Response> promise) {
+                if (promise.failure() instanceof Client.DisconnectedException) {
+                    client.run(new Runnable() {
+                        @Override
+                        public void run() {
+                            interrupted.add(transaction);
+                        }
+                    });
+                } else if (promise.failure() instanceof TimeoutException) {
+                    client.run(new Runnable() {
+                        @Override
+                        public void run() {
+                            ClientLogger.debug("Submission of %s timed out, looking it up", transaction.hash);
+                            unresolved.add(transaction);
+                            lookup(transaction);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Called by the client on reconnecting. Submissions cut off may or may
+     * not have reached the server, and validations may have been missed, so
+     * each is looked up by hash. Those the server never saw are resubmitted,
+     * as the same signed blob.
+     */
+    public void reconcile() {
+        unresolved.addAll(interrupted);
+        interrupted.clear();
+        for (ManagedTransaction transaction : new ArrayList<ManagedTransaction>(unresolved)) {
+            lookup(transaction);
+        }
+        for (ManagedTransaction transaction : new ArrayList<ManagedTransaction>(submitted.values())) {
+            lookup(transaction);
+        }
+    }
+
+    /**
+     * Looks `transaction` up by hash. If it's unresolved, and found, it's
+     * accepted, and if not found, resubmitted, or re-sequenced, if its
+     * Sequence was used. Otherwise it stays unresolved, to be looked up
+     * again, on the next ledger close, or on reconnecting. If it was
+     * submitted, and isn't found, it's resubmitted as is.
+     */
+    private void lookup(final ManagedTransaction transaction) {
+        if (!lookingUp.add(transaction)) {
+            return;
+        }
+        // Asked of the server it was submitted to
+        Request req = client.newRequest(Command.tx).pin(client.primary());
+        req.json("transaction", transaction.hash.toString());
+
+        req.once(Request.OnResponse.class, new Request.OnResponse() {
+            @Override
+            public void called(Response response) {
+                lookingUp.remove(transaction);
+                if (response.succeeded) {
+                    if (unresolved.remove(transaction)) {
+                        pastSequence.remove(transaction);
+                        accepted(transaction);
+                    }
+                    TransactionResult tr = new TransactionResult(response.result, TransactionResult.Source.request_tx_result);
+                    if (tr.validated) {
+                        onTransactionResultMessage(tr);
+                    }
+                } else if (response.rpcerr == RPCErr.txnNotFound) {
+                    if (unresolved.remove(transaction)) {
+                        notFound(transaction);
+                    } else if (submitted.get(transaction.hash) == transaction) {
+                        if (expired(transaction)) {
+                            ClientLogger.debug("Submitted %s expired unvalidated", transaction.hash);
+                            failed(transaction, response, true);
+                        } else {
+                            // Lost by the server, as when it restarted
+                            ClientLogger.debug("Submitted %s is unknown, resubmitting it", transaction.hash);
+                            submit(transaction);
+                        }
+                    }
+                }
+            }
+        });
+        req.request();
+    }
+
     private UInt32 getSubmissionSequence() {
         long server = accountRoot.Sequence.longValue();
         if (sequence == -1 || server > sequence ) {
@@ -105,44 +440,168 @@ public class TransactionManager {
         return new UInt32(sequence++);
     }
 
+    /**
+     * Called when the submit request itself fails, so the transaction was
+     * never applied. Unless it was cut off, or timed out, when it may have
+     * been, and is looked up instead, see rememberIfInterrupted.
+     */
     public void handleSubmitError(ManagedTransaction transaction, Response response) {
-        invalidateSequence(transaction.sequence());
+        if (response.failure instanceof Client.DisconnectedException ||
+            response.failure instanceof TimeoutException) {
+            return;
+        }
+        failed(transaction, response, true);
     }
 
     public void handleSubmitSuccess(ManagedTransaction transaction, Response res) {
-        queued.remove(transaction); // TODO: re-queue
-
         TransactionEngineResult tr = res.engineResult();
+        long sequence = transaction.sequence().longValue();
+        Held wasHeld = held.remove(transaction);
+
+        switch (tr) {
+            case terPRE_SEQ:
+                if (!bySequence.containsKey(sequence - 1)) {
+                    fill(sequence - 1);
+                }
+                // Resubmitted once the one before is accepted, or, if it
+                // already was, on the next ledger close
+                blocked.add(transaction);
+                return;
+
+            case tefPAST_SEQ:
+            case tefALREADY:
+                if (fillers.remove(transaction)) {
+                    queued.remove(transaction);
+                    forgetSequence(transaction);
+                    unblock(sequence + 1);
+                    pump();
+                    return;
+                }
+                // It may be this very transaction that used the Sequence,
+                // a held or earlier copy having applied, so it's looked up
+                // before it's re-sequenced
+                if (tr == TransactionEngineResult.tefPAST_SEQ) {
+                    pastSequence.add(transaction);
+                }
+                unresolved.add(transaction);
+                lookup(transaction);
+                return;
+
+            case telINSUF_FEE_P:
+                underpaid.add(transaction);
+                return;
+        }
+
         switch (tr.resultClass()) {
             case tesSUCCESS:
-                submitted.add(transaction);
+                accepted(transaction);
                 transaction.emit(ManagedTransaction.OnSubmitSuccess.class, res);
                 return;
 
+            case tecCLAIMED:
+                // The Sequence is used, and the fee claimed, so no gap
+                failed(transaction, res, false);
+                unblock(sequence + 1);
+                break;
+
+            case terRETRY:
+                // Not failed yet, as the server may yet apply it
+                Held retrying = wasHeld == null ? new Held() : wasHeld;
+                retrying.response = res;
+                held.put(transaction, retrying);
+                return;
+
             case telLOCAL_ERROR:
-                // TODO, this could actually resolve ...
-                // Resubmitting exactly the same transaction probably wont hurt
-                // For the moment we are just going to make sure to watch for it
-                // closing
-                submitted.add(transaction);
             case temMALFORMED:
             case tefFAILURE:
-            case terRETRY:
-            case tecCLAIMED:
-                transaction.emit(ManagedTransaction.OnSubmitError.class, res);
+                failed(transaction, res, true);
                 break;
         }
     }
 
-    private void invalidateSequence(UInt32 sequence) {
+    private void accepted(ManagedTransaction transaction) {
+        queued.remove(transaction);
+        fillers.remove(transaction);
+        blocked.remove(transaction);
+        submitted.put(transaction.hash, transaction);
+        unblock(transaction.sequence().longValue() + 1);
+    }
 
+    // Not found by hash, so the server never saw, or has since dropped, it
+    private void notFound(ManagedTransaction transaction) {
+        if (pastSequence.remove(transaction)) {
+            long sequence = transaction.sequence().longValue();
+            forgetSequence(transaction);
+            unblock(sequence + 1);
+            ClientLogger.debug("Sequence %d already used, re-sequencing %s", sequence, transaction.hash);
+            transaction.put(UInt32.LastLedgerSequence, lastLedgerSequence());
+            transaction.prepare(keyPair, client.serverInfo.transactionFee(transaction), getSubmissionSequence());
+            bySequence.put(transaction.sequence().longValue(), transaction);
+        } else {
+            ClientLogger.debug("Resubmitting %s", transaction.hash);
+        }
+        submit(transaction);
+    }
+
+    private void failed(ManagedTransaction transaction, Response res, boolean leavesHole) {
+        if (submitted.get(transaction.hash) == transaction) {
+            submitted.remove(transaction.hash);
+        }
+        queued.remove(transaction);
+        unresolved.remove(transaction);
+        pastSequence.remove(transaction);
+        blocked.remove(transaction);
+        held.remove(transaction);
+        underpaid.remove(transaction);
+        forgetSequence(transaction);
+        if (fillers.remove(transaction)) {
+            // Not refilled, lest it fail the same way forever
+            ClientLogger.debug("Couldn't fill sequence %s: %s", transaction.sequence(), res.engineResult());
+        } else {
+            if (leavesHole) {
+                fill(transaction.sequence().longValue());
+            }
+            transaction.emit(ManagedTransaction.OnSubmitError.class, res);
+        }
+        pump();
+    }
+
+    /**
+     * A transaction didn't use `sequence`, so unless it was the last
+     * assigned, it's filled with a no-op, lest those after it wait forever.
+     */
+    private void fill(long sequence) {
+        if (bySequence.containsKey(sequence) || sequence < accountRoot.Sequence.longValue()) {
+            return;
+        }
+        if (bySequence.higherKey(sequence) == null && this.sequence == sequence + 1) {
+            this.sequence = sequence;
+            return;
+        }
+        ManagedTransaction filler = transaction(TransactionType.AccountSet);
+        filler.put(UInt32.LastLedgerSequence, lastLedgerSequence());
+        filler.prepare(keyPair, client.serverInfo.transactionFee(filler), new UInt32(sequence));
+        fillers.add(filler);
+        queued.add(filler);
+        bySequence.put(sequence, filler);
+        ClientLogger.debug("Filling sequence %d with %s", sequence, filler.hash);
+        submit(filler);
+    }
+
+    // The transaction before `sequence` is accepted, or its Sequence used
+    private void unblock(long sequence) {
+        ManagedTransaction next = bySequence.get(sequence);
+        if (next != null && blocked.remove(next)) {
+            submit(next);
+        }
     }
 
     public ManagedTransaction payment() {
         return transaction(TransactionType.Payment);
     }
 
-    private ManagedTransaction transaction(TransactionType tt) {
+    // May be called from any thread
+    private synchronized ManagedTransaction transaction(TransactionType tt) {
         ManagedTransaction tx = new ManagedTransaction(tt, transactionID++);
         tx.put(AccountID.Account, accountID);
         return tx;
@@ -152,24 +611,31 @@ public class TransactionManager {
         ManagedTransaction tx = submittedTransaction(tm.hash);
         if (tx != null) {
             tx.emit(ManagedTransaction.OnTransactionValidated.class, tm);
+            pump();
         } else {
-            ClientLogger.log("Can't find transaction");
+            ClientLogger.debug("Can't find transaction");
         }
     }
 
     private ManagedTransaction submittedTransaction(Hash256 hash) {
-        Iterator<ManagedTransaction> iterator = submitted.iterator();
+        ManagedTransaction transaction = submitted.remove(hash);
+        if (transaction != null) {
+            forgetSequence(transaction);
+        }
+        return transaction;
+    }
 
-        while (iterator.hasNext()) {
-            ManagedTransaction transaction = iterator.next();
-            if (transaction.hash.equals(hash)) {
-                iterator.remove();
-                return transaction;
-            }
-//            else {
-                // Client.log("hash: %s != transaction.hash: %s", hash, transaction.hash);
-//            }
+    private void forgetSequence(ManagedTransaction transaction) {
+        long sequence = transaction.sequence().longValue();
+        if (bySequence.get(sequence) == transaction) {
+            bySequence.remove(sequence);
         }
-        return null;
+    }
+
+    /**
+     * @return the transaction queued or submitted with `sequence`, if any
+     */
+    public ManagedTransaction pending(long sequence) {
+        return bySequence.get(sequence);
     }
 }
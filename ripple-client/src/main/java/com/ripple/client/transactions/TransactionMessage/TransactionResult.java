@@ -7,9 +7,12 @@ import com.ripple.core.fields.Field;
 import com.ripple.core.types.AccountID;
 import com.ripple.core.types.STArray;
 import com.ripple.core.types.STObject;
+import com.ripple.core.types.VariableLength;
 import com.ripple.core.types.hash.Hash256;
 import com.ripple.core.types.uint.UInt32;
 import com.ripple.core.types.uint.UInt8;
+import com.ripple.crypto.ecdsa.SignatureVerifier;
+import com.ripple.encodings.common.B16;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -38,25 +41,47 @@ public class TransactionResult {
         request_account_tx, request_account_tx_binary, transaction_subscription_notification
     }
 
+    /**
+     * From a validated transaction and its meta, already decoded, as when
+     * read back from a TxArchive
+     */
+    public TransactionResult(long ledgerIndex, Hash256 hash, STObject transaction, STObject meta) {
+        this.validated = true;
+        this.ledgerIndex = new UInt32(ledgerIndex);
+        this.hash = hash;
+        this.transaction = transaction;
+        this.meta = meta;
+        this.engineResult = TransactionEngineResult.fromNumber(meta.get(UInt8.TransactionResult));
+    }
+
     public TransactionResult(JSONObject json, Source resultMessageSource) {
         message = json;
 
         try {
             if (resultMessageSource == Source.transaction_subscription_notification) {
 
-                engineResult = TransactionEngineResult.valueOf(json.getString("engine_result"));
                 validated = json.getBoolean("validated");
                 ledgerHash = Hash256.translate.fromString(json.getString("ledger_hash"));
                 ledgerIndex = new UInt32(json.getLong("ledger_index"));
 
-                if (json.has("transaction")) {
+                Object tx = json.has("tx_blob") ? json.get("tx_blob") : json.opt("transaction");
+                if (tx instanceof String) {
+                    // A binary mode subscription
+                    decodeBinary((String) tx, json.optString("meta", null));
+                } else if (json.has("transaction")) {
                     transaction = STObject.fromJSONObject(json.getJSONObject("transaction"));
                     hash = transaction.get(Hash256.hash);
                 }
 
-                if (json.has("meta")) {
+                if (json.has("meta") && meta == null) {
                     meta = STObject.fromJSONObject(json.getJSONObject("meta"));
                 }
+
+                if (json.has("engine_result")) {
+                    engineResult = TransactionEngineResult.valueOf(json.getString("engine_result"));
+                } else if (meta != null) {
+                    engineResult = TransactionEngineResult.fromNumber(meta.get(UInt8.TransactionResult));
+                }
             }  else if (resultMessageSource == Source.request_tx_result) {
                 validated = json.optBoolean("validated", false);
                 if (validated && !json.has("meta")) {
@@ -98,12 +123,8 @@ public class TransactionResult {
                     },
                     */
 
-                    String tx = json.getString("tx_blob");
-                    meta = STObject.translate.fromWireHex(json.getString("meta"));
-                    transaction = STObject.translate.fromWireHex(tx);
-
+                    decodeBinary(json.getString("tx_blob"), json.getString("meta"));
                     engineResult = TransactionEngineResult.fromNumber(meta.get(UInt8.TransactionResult));
-                    hash = transaction.get(Hash256.hash);
                     ledgerIndex = new UInt32(json.getLong("ledger_index"));
                     ledgerHash = null;
                 }
@@ -115,6 +136,19 @@ public class TransactionResult {
         }
     }
 
+    /**
+     * Decodes with the wire parser, and as the blob has no hash field, hashes
+     * it locally.
+     */
+    private void decodeBinary(String txHex, String metaHex) {
+        byte[] blob = B16.decode(txHex);
+        transaction = STObject.translate.fromWireBytes(blob);
+        hash = Hash256.transactionID(blob);
+        if (metaHex != null) {
+            meta = STObject.translate.fromWireHex(metaHex);
+        }
+    }
+
     public AccountID createdAccount() {
         AccountID destination    =  null;
         Hash256   destinationIndex =  null;
@@ -174,4 +208,14 @@ public class TransactionResult {
     public AccountID initiatingAccount() {
         return transaction.get(AccountID.Account);
     }
+
+    /**
+     * @return the signing hash, signature and public key, to check with a SignatureVerifier
+     */
+    public SignatureVerifier.Item signatureItem() {
+        Hash256 signingHash = Hash256.signingHash(STObject.translate.toSigningBytes(transaction));
+        return new SignatureVerifier.Item(signingHash.bytes(),
+                                          transaction.get(VariableLength.TxnSignature).bytes(),
+                                          transaction.get(VariableLength.SigningPubKey).bytes());
+    }
 }
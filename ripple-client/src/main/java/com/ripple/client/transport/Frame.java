@@ -0,0 +1,259 @@
+package com.ripple.client.transport;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * A message, as received, with the routing keys (`type`, `id`, `status`)
+ * pulled out by a single scan over the top level of the text, that skips
+ * over nested values without building them.
+ *
+ * The spans of the other top level values are noted, so consumers can parse
+ * just the subtree they need with {@link #object}. The whole tree is only
+ * parsed if someone asks for {@link #json}.
+ */
+public class Frame {
+    private static final int MAX_KEYS = 16;
+
+    private final String text;
+    private JSONObject json;
+
+    private String type, status;
+    private int id = -1;
+
+    private final String[] keys = new String[MAX_KEYS];
+    private final int[] starts = new int[MAX_KEYS], ends = new int[MAX_KEYS];
+    private int count;
+    private boolean overflowed;
+
+    private Frame(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Wraps an already parsed message
+     */
+    public Frame(JSONObject json) {
+        this.text = null;
+        this.json = json;
+        this.type = json.optString("type", null);
+        this.status = json.optString("status", null);
+        this.id = json.optInt("id", -1);
+    }
+
+    public static Frame parse(String text) {
+        Frame frame = new Frame(text);
+        frame.scan();
+        return frame;
+    }
+
+    public String type() {
+        return type;
+    }
+
+    public String status() {
+        return status;
+    }
+
+    /**
+     * @return the id, or -1 if absent (or not an int)
+     */
+    public int id() {
+        return id;
+    }
+
+    public boolean has(String key) {
+        if (json == null && !overflowed) {
+            return indexOf(key) != -1;
+        }
+        return json().has(key);
+    }
+
+    public boolean parsed() {
+        return json != null;
+    }
+
+    /**
+     * @return the whole message, parsed on first use
+     */
+    public JSONObject json() {
+        if (json == null) {
+            try {
+                json = new JSONObject(text);
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return json;
+    }
+
+    /**
+     * @return the top level value at `key`, parsed alone, or null if absent
+     */
+    public Object value(String key) {
+        if (json != null) {
+            return json.opt(key);
+        }
+        int i = indexOf(key);
+        if (i == -1) {
+            // Past the keys we noted, so it's only in the whole tree
+            return overflowed ? json().opt(key) : null;
+        }
+        try {
+            return new JSONTokener(text.substring(starts[i], ends[i])).nextValue();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public JSONObject object(String key) {
+        Object value = value(key);
+        return value instanceof JSONObject ? (JSONObject) value : null;
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void scan() {
+        int i = skipWhitespace(0);
+        expect(i++, '{');
+
+        while (true) {
+            i = skipWhitespace(i);
+            if (text.charAt(i) == '}') {
+                return;
+            }
+            int keyEnd = skipString(i);
+            String key = text.substring(i + 1, keyEnd - 1);
+            i = skipWhitespace(keyEnd);
+            expect(i++, ':');
+            int start = skipWhitespace(i);
+            int end = skipValue(start);
+
+            note(key, start, end);
+            i = skipWhitespace(end);
+            if (text.charAt(i) == ',') {
+                i++;
+            } else {
+                expect(i, '}');
+                return;
+            }
+        }
+    }
+
+    private void note(String key, int start, int end) {
+        if (count < MAX_KEYS) {
+            keys[count] = key;
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        } else {
+            overflowed = true;
+        }
+        if (key.equals("type")) {
+            type = stringAt(start, end);
+        } else if (key.equals("status")) {
+            status = stringAt(start, end);
+        } else if (key.equals("id")) {
+            id = intAt(start, end);
+        }
+    }
+
+    private String stringAt(int start, int end) {
+        if (text.charAt(start) != '"') {
+            return null;
+        }
+        String raw = text.substring(start + 1, end - 1);
+        if (raw.indexOf('\\') == -1) {
+            return raw;
+        }
+        try {
+            return (String) new JSONTokener(text.substring(start, end)).nextValue();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int intAt(int start, int end) {
+        try {
+            return Integer.parseInt(text.substring(start, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        if (i == text.length()) {
+            throw new RuntimeException("Truncated message: " + text);
+        }
+        return i;
+    }
+
+    private void expect(int i, char c) {
+        if (text.charAt(i) != c) {
+            throw new RuntimeException("Expected '" + c + "' at " + i + " in: " + text);
+        }
+    }
+
+    /**
+     * @return the index after the closing quote of the string starting at `i`
+     */
+    private int skipString(int i) {
+        expect(i++, '"');
+        while (true) {
+            char c = text.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * @return the index after the value starting at `i`
+     */
+    private int skipValue(int i) {
+        char c = text.charAt(i);
+        if (c == '"') {
+            return skipString(i);
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (true) {
+                c = text.charAt(i);
+                if (c == '"') {
+                    i = skipString(i);
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+        }
+        // A number, true, false or null
+        while (i < text.length()) {
+            c = text.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
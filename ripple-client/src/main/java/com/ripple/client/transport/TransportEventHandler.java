@@ -4,7 +4,15 @@ import org.json.JSONObject;
 
 public interface TransportEventHandler {
     void onMessage(JSONObject msg);
+    /**
+     * A message as received, for the handler to route and parse as needed
+     */
+    void onFrame(String frame);
     void onConnecting(int attempt);
+    /**
+     * @param willReconnect whether the transport will reconnect by itself,
+     *                      if not, the client does
+     */
     void onDisconnected(boolean willReconnect);
     void onError(Exception error);
     void onConnected();
@@ -14,6 +22,10 @@ public interface TransportEventHandler {
         public void onMessage(JSONObject msg) {
         }
 
+        @Override
+        public void onFrame(String frame) {
+        }
+
         @Override
         public void onConnecting(int attempt) {
         }
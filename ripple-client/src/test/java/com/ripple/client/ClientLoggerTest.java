@@ -0,0 +1,78 @@
+package com.ripple.client;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class ClientLoggerTest {
+    @Test
+    public void testDisabledLevelsDontFormat() throws Exception {
+        boolean quiet = ClientLogger.quiet;
+        ClientLogger.Level level = ClientLogger.level;
+        Logger logger = ClientLogger.logger;
+        try {
+            ClientLogger.quiet = false;
+            ClientLogger.level = ClientLogger.Level.INFO;
+            final int[] logged = new int[]{0};
+            ClientLogger.logger = new Logger() {
+                @Override
+                public void log(String fmt, Object... args) {
+                    logged[0]++;
+                }
+            };
+
+            assertFalse(ClientLogger.isEnabled(ClientLogger.Level.DEBUG));
+            ClientLogger.debug("%s", new Object() {
+                @Override
+                public String toString() {
+                    throw new AssertionError("Shouldn't be formatted");
+                }
+            });
+            ClientLogger.warn("warning");
+            assertEquals(1, logged[0]);
+        } finally {
+            ClientLogger.quiet = quiet;
+            ClientLogger.level = level;
+            ClientLogger.logger = logger;
+        }
+    }
+
+    @Test
+    public void testAsyncLoggerWritesInOrder() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncLogger logger = new AsyncLogger(new PrintStream(bytes), 1024);
+        for (int i = 0; i < 100; i++) {
+            logger.log("line %d", i);
+        }
+        logger.flush();
+
+        String[] lines = bytes.toString().split("\n");
+        assertEquals(100, lines.length);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("line " + i, lines[i]);
+        }
+        assertTrue(logger.dropped() == 0);
+    }
+
+    @Test
+    public void testAsyncLoggerFormatsWhenLogged() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncLogger logger = new AsyncLogger(new PrintStream(bytes), 16);
+        assertFalse(logger.started());
+
+        JSONObject json = new JSONObject();
+        json.put("n", 1);
+        logger.log("%s", ClientLogger.pretty(json));
+        json.put("n", 2);
+        logger.flush();
+
+        assertTrue(logger.started());
+        assertEquals(new JSONObject("{\"n\": 1}").toString(4) + "\n", bytes.toString());
+    }
+}
@@ -1,11 +1,18 @@
 package com.ripple.client;
 
+import com.ripple.client.async.EventLoop;
+import com.ripple.client.async.Promise;
 import com.ripple.client.enums.Command;
 import com.ripple.client.subscriptions.ServerInfo;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import static junit.framework.TestCase.*;
 
 public class ClientTest {
@@ -109,4 +116,79 @@ public class ClientTest {
         assertEquals(256,  info.load_base);
         assertEquals(256,  info.load_factor);
     }
+
+    @Test
+    public void testCloseStopsTheSweeper() throws Exception {
+        MockPair pair = new MockPair().connect();
+        Client client = pair.client;
+        client.newRequest(Command.ping).request();
+        Thread sweeper = client.sweeper();
+        assertNotNull("Started by the request's timeout", sweeper);
+
+        client.close();
+        sweeper.join(5000);
+        assertFalse(sweeper.isAlive());
+        assertFalse(client.connected);
+
+        // Nor is it restarted
+        client.newRequest(Command.ping).request();
+        assertSame(sweeper, client.sweeper());
+    }
+
+    @Test
+    public void testCloseEndsTheLoop() throws Exception {
+        MockPair.RippledMock server = new MockPair.RippledMock();
+        EventLoop loop = new EventLoop("closing-client");
+        final Client client = new Client(server.ws, loop);
+        client.connect("wss://this.doesnt.matter.com");
+        server.connect();
+        Promise<Response> ping = client.request(Command.ping, null, 0);
+
+        client.close();
+        assertTrue(loop.awaitTermination(5000));
+        try {
+            ping.get(5, TimeUnit.SECONDS);
+            fail("Expected the request to fail on closing");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof Client.DisconnectedException);
+        }
+
+        // Rather than waiting forever on the loop
+        try {
+            client.call(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return client.inFlight();
+                }
+            });
+            fail("Expected the closed client to refuse");
+        } catch (RejectedExecutionException expected) {
+        }
+        try {
+            client.request(Command.ping, null, 0).get(5, TimeUnit.SECONDS);
+            fail("Expected the request to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof Client.DisconnectedException);
+        }
+        client.close();
+    }
+
+    @Test
+    public void testPrimingOutlivesASlowConnect() throws Exception {
+        MockPair pair = new MockPair();
+        pair.client.requestTimeoutMillis = 100;
+        Account account = pair.client.accountFromSeed("snSq7dKr5v39hJ8Enb45RpXFJL25h");
+        Thread.sleep(400);
+
+        pair.connect();
+        boolean primingSent = false;
+        for (MockPair.Message message : pair.server.unreadMarked()) {
+            Request request = message.getRequest(pair.client);
+            if (request != null && request.cmd == Command.ledger_entry) {
+                primingSent = true;
+            }
+        }
+        assertTrue(primingSent);
+        assertFalse(account.root.primed());
+    }
 }
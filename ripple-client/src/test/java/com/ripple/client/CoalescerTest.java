@@ -0,0 +1,106 @@
+package com.ripple.client;
+
+import com.ripple.client.async.Promise;
+import com.ripple.client.enums.Command;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static junit.framework.TestCase.*;
+
+public class CoalescerTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    static MockPair pair() {
+        MockPair pair = new MockPair().connect();
+        pair.server.unreadMarked();
+        return pair;
+    }
+
+    static JSONObject params(String json) {
+        return Client.parseJSON(json);
+    }
+
+    @Test
+    public void testKeyIgnoresIdAndKeyOrder() throws Exception {
+        JSONObject a = params("{\"id\": 1, \"command\": \"ledger_entry\", \"ledger\": {\"b\": 2, \"a\": [1, \"x\"]}}");
+        JSONObject b = params("{\"ledger\": {\"a\": [1, \"x\"], \"b\": 2}, \"command\": \"ledger_entry\", \"id\": 2}");
+        JSONObject c = params("{\"ledger\": {\"a\": [\"1\", \"x\"], \"b\": 2}, \"command\": \"ledger_entry\", \"id\": 2}");
+
+        assertEquals(Coalescer.key(a), Coalescer.key(b));
+        assertFalse(Coalescer.key(a).equals(Coalescer.key(c)));
+        assertEquals("{\"command\":\"ledger_entry\",\"ledger\":{\"a\":[1,\"x\"],\"b\":2}}", Coalescer.key(a));
+    }
+
+    @Test
+    public void testDuplicatesShareOneRoundTrip() throws Exception {
+        MockPair pair = pair();
+        ArrayList<Promise<Response>> promises = new ArrayList<Promise<Response>>();
+        for (int i = 0; i < 3; i++) {
+            promises.add(pair.client.request(Command.tx, params("{\"transaction\": \"AB\"}"), 0));
+        }
+        Promise<Response> other = pair.client.request(Command.tx, params("{\"transaction\": \"CD\"}"), 0);
+
+        assertEquals(2, pair.server.unread().size());
+        assertEquals(2, pair.client.coalescer.size());
+
+        Request leader = pair.server.unreadMarked().get(0).getRequest(pair.client);
+        pair.server.respondSuccess(leader, "{\"validated\": true}");
+
+        for (Promise<Response> promise : promises) {
+            Response response = promise.get();
+            assertTrue(response.succeeded);
+            assertTrue(response.result.getBoolean("validated"));
+        }
+        // Each has its own view of it, and its own copy of the JSON
+        assertNotSame(promises.get(0).get(), promises.get(1).get());
+        promises.get(0).get().result.put("validated", false);
+        assertTrue(promises.get(1).get().result.getBoolean("validated"));
+        assertTrue(promises.get(2).get().result.getBoolean("validated"));
+        assertSame(promises.get(1).get().result, promises.get(1).get().message.getJSONObject("result"));
+        assertFalse(other.isDone());
+        assertEquals(1, pair.client.coalescer.size());
+
+        // Once answered, the next one goes on the wire again
+        pair.client.request(Command.tx, params("{\"transaction\": \"AB\"}"), 0);
+        assertEquals(1, pair.server.unread().size());
+    }
+
+    @Test
+    public void testFollowersRetryWhenTheLeaderIsCancelled() throws Exception {
+        MockPair pair = pair();
+        Request leader = pair.client.newRequest(Command.server_info);
+        leader.request();
+        Promise<Response> follower = pair.client.request(Command.server_info, null, 0);
+        assertEquals(1, pair.server.unreadMarked().size());
+
+        leader.cancel();
+        assertFalse(follower.isDone());
+        Request retried = pair.server.popMessage().getRequest(pair.client);
+        assertNotSame(leader, retried);
+
+        pair.server.respondSuccess(retried, "{}");
+        assertTrue(follower.get().succeeded);
+        assertSame(retried, follower.get().request);
+    }
+
+    @Test
+    public void testWritesAreNeverCoalesced() throws Exception {
+        MockPair pair = pair();
+        pair.client.request(Command.submit, params("{\"tx_blob\": \"00\"}"), 0);
+        pair.client.request(Command.submit, params("{\"tx_blob\": \"00\"}"), 0);
+        assertEquals(2, pair.server.unread().size());
+    }
+
+    @Test
+    public void testCanBeTurnedOff() throws Exception {
+        MockPair pair = pair();
+        pair.client.coalescing = false;
+        pair.client.request(Command.server_info, null, 0);
+        pair.client.request(Command.server_info, null, 0);
+        assertEquals(2, pair.server.unread().size());
+    }
+}
@@ -0,0 +1,195 @@
+package com.ripple.client;
+
+import com.ripple.client.async.Backoff;
+import com.ripple.client.async.Promise;
+import com.ripple.client.enums.Command;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static junit.framework.TestCase.*;
+
+public class EndpointTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    static class Pool {
+        MockPair pair = new MockPair().connect();
+        MockPair.RippledMock secondary = new MockPair.RippledMock();
+        Endpoint endpoint = pair.client.addEndpoint(secondary.ws, "wss://secondary.example.com");
+
+        Pool() {
+            secondary.connect();
+        }
+
+        Client client() {
+            return pair.client;
+        }
+
+        // Answers the subscriptions made on connecting
+        void drain() {
+            for (MockPair.Message message : pair.server.unreadMarked()) {
+                pair.server.respondSuccess(message.getRequest(pair.client), "{}");
+            }
+            for (MockPair.Message message : secondary.unreadMarked()) {
+                secondary.respondSuccess(message.getRequest(pair.client), "{}");
+            }
+        }
+    }
+
+    static Request lastRequest(MockPair.RippledMock server, Client client) {
+        MockPair.Message message = server.popMessage();
+        assertNotNull("Expected a request", message);
+        return message.getRequest(client);
+    }
+
+    @Test
+    public void testSecondarySubscribesOnlyToTheServerStream() throws Exception {
+        Pool pool = new Pool();
+        Request subscribe = lastRequest(pool.secondary, pool.client());
+
+        assertEquals(Command.subscribe, subscribe.cmd);
+        assertSame(pool.endpoint, subscribe.pinned);
+        assertEquals("[\"server\"]", subscribe.json().get("streams").toString());
+
+        pool.secondary.respondSuccess(subscribe, "{\"load_base\": 256, \"load_factor\": 512}");
+        assertEquals(2.0, pool.endpoint.load());
+    }
+
+    @Test
+    public void testReadOnlyRequestsGoToTheCheapestEndpoint() throws Exception {
+        Pool pool = new Pool();
+        pool.drain();
+
+        pool.client().primary.rttMillis = 500;
+        pool.endpoint.rttMillis = 10;
+
+        Promise<Response> tx = pool.client().request(Command.tx, null, 0);
+        Request request = lastRequest(pool.secondary, pool.client());
+        assertSame(pool.endpoint, request.endpoint());
+        assertEquals(1, pool.endpoint.inFlight());
+
+        pool.secondary.respondSuccess(request, "{}");
+        assertTrue(tx.get().succeeded);
+        assertEquals(0, pool.endpoint.inFlight());
+        // The response was timed
+        assertTrue(pool.endpoint.rttMillis() < 10);
+    }
+
+    // Distinct, so they aren't coalesced
+    static JSONObject ledger(int index) throws Exception {
+        return new JSONObject().put("ledger_index", index);
+    }
+
+    @Test
+    public void testLoadAndQueueingSteerRequests() throws Exception {
+        Pool pool = new Pool();
+        pool.drain();
+
+        // Equally quick, but busier
+        JSONObject status = new JSONObject("{\"type\": \"serverStatus\", \"load_base\": 256, \"load_factor\": 1024}");
+        pool.secondary.sendMessage(status);
+        pool.client().request(Command.ledger_entry, ledger(0), 0);
+        assertEquals(1, pool.pair.server.unread().size());
+
+        // Until the primary's queue is long enough
+        for (int i = 1; i < 5; i++) {
+            pool.client().request(Command.ledger_entry, ledger(i), 0);
+        }
+        assertEquals(4, pool.pair.server.unread().size());
+        assertEquals(1, pool.secondary.unread().size());
+    }
+
+    @Test
+    public void testSubscriptionsAndSubmissionsStayOnThePrimary() throws Exception {
+        Pool pool = new Pool();
+        pool.drain();
+        pool.client().primary.rttMillis = 500;
+        pool.endpoint.rttMillis = 1;
+
+        pool.client().request(Command.submit, null, 0);
+        assertEquals(Command.submit, lastRequest(pool.pair.server, pool.client()).cmd);
+
+        pool.client().request(Command.subscribe, null, 0);
+        assertEquals(Command.subscribe, lastRequest(pool.pair.server, pool.client()).cmd);
+
+        assertEquals(0, pool.secondary.unread().size());
+    }
+
+    @Test
+    public void testInFlightReadsFailOverWhenAnEndpointDrops() throws Exception {
+        Pool pool = new Pool();
+        Request subscribe = lastRequest(pool.secondary, pool.client());
+        pool.pair.server.unreadMarked();
+        pool.client().primary.rttMillis = 500;
+        pool.endpoint.rttMillis = 1;
+
+        Promise<Response> tx = pool.client().request(Command.tx, null, 0);
+        Request request = lastRequest(pool.secondary, pool.client());
+
+        pool.secondary.disconnect();
+        assertFalse(pool.endpoint.connected());
+        // Pinned to the dropped endpoint, so failed
+        assertTrue(subscribe.future().isDone());
+        try {
+            subscribe.future().get();
+            fail("Expected the pinned request to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        // Resent, with the same id, to the primary
+        Request resent = lastRequest(pool.pair.server, pool.client());
+        assertSame(request, resent);
+        assertSame(pool.client().primary, request.endpoint());
+        assertFalse(tx.isDone());
+
+        pool.pair.server.respondSuccess(request, "{}");
+        assertTrue(tx.get().succeeded);
+        assertNull(pool.client().pending(request.id));
+    }
+
+    @Test
+    public void testReadsWaitWhenNothingIsConnected() throws Exception {
+        Pool pool = new Pool();
+        pool.secondary.disconnect();
+        pool.pair.server.disconnect();
+        pool.pair.server.unreadMarked();
+
+        Promise<Response> tx = pool.client().request(Command.tx, null, 0);
+        assertEquals(0, pool.pair.server.unread().size());
+
+        pool.pair.server.connect();
+        Request request = null;
+        for (MockPair.Message message : pool.pair.server.unreadMarked()) {
+            Request r = message.getRequest(pool.client());
+            if (r != null && r.cmd == Command.tx) {
+                request = r;
+            }
+        }
+        assertNotNull(request);
+        pool.pair.server.respondSuccess(request, "{}");
+        assertTrue(tx.get().succeeded);
+    }
+
+    @Test
+    public void testSecondaryIsReconnectedAfterBackoff() throws Exception {
+        Pool pool = new Pool();
+        pool.client().setBackoff(new Backoff(1, 1));
+        assertEquals(1, pool.secondary.ws.connects);
+
+        pool.secondary.disconnect();
+        assertFalse(pool.endpoint.connected);
+        for (int i = 0; i < 500 && pool.secondary.ws.connects < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, pool.secondary.ws.connects);
+
+        pool.secondary.unreadMarked();
+        pool.secondary.connect();
+        assertTrue(pool.endpoint.connected);
+        assertEquals(Command.subscribe, lastRequest(pool.secondary, pool.client()).cmd);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ripple.client;
+
+import com.ripple.crypto.ecdsa.IKeyPair;
+import com.ripple.crypto.ecdsa.Seed;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertSame;
+
+public class KeyStoreTest {
+    private List<byte[]> seeds(int n) {
+        ArrayList<byte[]> seeds = new ArrayList<byte[]>();
+        for (int i = 0; i < n; i++) {
+            seeds.add(Seed.passPhraseToSeedBytes("deposit-" + i));
+        }
+        return seeds;
+    }
+
+    @Test
+    public void testParallelDerivationMatchesSequential() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<byte[]> seeds = seeds(40);
+            List<IKeyPair> parallel = new KeyStore(100, executor).deriveAll(seeds);
+
+            assertEquals(seeds.size(), parallel.size());
+            for (int i = 0; i < seeds.size(); i++) {
+                IKeyPair expected = Seed.createKeyPair(seeds.get(i));
+                assertEquals(expected.pubHex(), parallel.get(i).pubHex());
+                assertEquals(expected.privHex(), parallel.get(i).privHex());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDerivationCacheIsBounded() throws Exception {
+        KeyStore store = new KeyStore(5, null);
+        List<byte[]> seeds = seeds(10);
+
+        IKeyPair first = store.derive(seeds.get(0));
+        assertSame(first, store.derive(seeds.get(0).clone()));
+
+        store.deriveAll(seeds);
+        assertEquals(5, store.cachedDerivations());
+    }
+}
@@ -0,0 +1,61 @@
+package com.ripple.client;
+
+import com.ripple.client.enums.Command;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static junit.framework.TestCase.*;
+
+public class PendingRequestsTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    @Test
+    public void testMatchesHashMap() throws Exception {
+        Client client = new MockPair().client;
+        PendingRequests pending = new PendingRequests(10000);
+        HashMap<Integer, Request> expected = new HashMap<Integer, Request>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 20000; i++) {
+            int id = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                Request request = new Request(Command.ping, id, client);
+                assertTrue(pending.add(request));
+                expected.put(id, request);
+            } else {
+                assertSame(expected.remove(id), pending.remove(id));
+            }
+            assertEquals(expected.size(), pending.inFlight());
+        }
+        for (int id = 0; id < 2000; id++) {
+            assertSame(expected.get(id), pending.get(id));
+        }
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        Client client = new MockPair().client;
+        PendingRequests pending = new PendingRequests(3);
+        for (int id = 0; id < 3; id++) {
+            assertTrue(pending.add(new Request(Command.ping, id, client)));
+        }
+        assertFalse(pending.add(new Request(Command.ping, 3, client)));
+        pending.remove(0);
+        assertTrue(pending.add(new Request(Command.ping, 3, client)));
+    }
+
+    @Test
+    public void testRemovedOnResponse() throws Exception {
+        MockPair pair = new MockPair().connect();
+        Request request = pair.server.popMessage().getRequest(pair.client);
+        assertEquals(1, pair.client.inFlight());
+
+        pair.server.respondSuccess(request, "{}");
+        assertEquals(0, pair.client.inFlight());
+        assertEquals(0, pair.client.awaitingDeadline());
+    }
+}
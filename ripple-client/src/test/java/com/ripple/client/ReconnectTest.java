@@ -0,0 +1,116 @@
+package com.ripple.client;
+
+import com.ripple.client.async.Backoff;
+import com.ripple.client.async.Promise;
+import com.ripple.client.enums.Command;
+import com.ripple.client.subscriptions.SubscriptionManager;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import static junit.framework.TestCase.*;
+
+public class ReconnectTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    static MockPair pair(long backoffMillis) {
+        MockPair pair = new MockPair();
+        pair.client.setBackoff(new Backoff(backoffMillis, backoffMillis));
+        return pair.connect();
+    }
+
+    static ArrayList<Request> sent(MockPair pair, Command cmd) {
+        ArrayList<Request> sent = new ArrayList<Request>();
+        for (MockPair.Message message : pair.server.unreadMarked()) {
+            Request request = message.getRequest(pair.client);
+            if (request != null && request.cmd == cmd) {
+                sent.add(request);
+            }
+        }
+        return sent;
+    }
+
+    static void awaitConnects(MockPair pair, int connects) throws InterruptedException {
+        for (int i = 0; i < 500 && pair.server.ws.connects < connects; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testReconnectsAfterBackoff() throws Exception {
+        MockPair pair = pair(1);
+        assertEquals(1, pair.server.ws.connects);
+
+        pair.server.disconnect();
+        assertFalse(pair.client.connected);
+        awaitConnects(pair, 2);
+        assertEquals(2, pair.server.ws.connects);
+
+        pair.server.unreadMarked();
+        pair.server.connect();
+        assertTrue(pair.client.connected);
+
+        ArrayList<Request> subscribes = sent(pair, Command.subscribe);
+        assertEquals("The whole set, in one request", 1, subscribes.size());
+        assertEquals("[\"server\",\"ledger\"]", subscribes.get(0).json().get("streams").toString());
+    }
+
+    @Test
+    public void testDeliberateDisconnectIsNotReconnected() throws Exception {
+        MockPair pair = pair(1);
+        pair.client.disconnect();
+        assertFalse(pair.client.connected);
+
+        Thread.sleep(300);
+        assertEquals(1, pair.server.ws.connects);
+    }
+
+    @Test
+    public void testSubscriptionListenerIsRegisteredOnce() throws Exception {
+        MockPair pair = pair(60000);
+        for (int i = 0; i < 3; i++) {
+            pair.server.disconnect();
+            pair.server.connect();
+        }
+        pair.server.unreadMarked();
+
+        pair.client.subscriptions.addStream(SubscriptionManager.Stream.transactions);
+        assertEquals(1, sent(pair, Command.subscribe).size());
+    }
+
+    @Test
+    public void testInFlightRequestsOnReconnecting() throws Exception {
+        MockPair pair = pair(60000);
+        Request subscribe = sent(pair, Command.subscribe).get(0);
+        Promise<Response> tx = pair.client.request(Command.tx, null, 0);
+        Promise<Response> submit = pair.client.request(Command.submit, null, 0);
+        pair.server.unreadMarked();
+
+        pair.server.disconnect();
+
+        // Superseded by resubscribing
+        assertTrue(subscribe.future().isCancelled());
+        // Not safe to repeat
+        try {
+            submit.get();
+            fail("Expected the submit to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof Client.DisconnectedException);
+        }
+        // Waiting to be replayed
+        assertFalse(tx.isDone());
+        assertEquals(0, pair.server.unread().size());
+
+        pair.server.connect();
+        ArrayList<MockPair.Message> replayed = new ArrayList<MockPair.Message>(pair.server.unread());
+        ArrayList<Request> txs = sent(pair, Command.tx);
+        assertEquals(1, txs.size());
+        assertEquals(2, replayed.size());
+
+        pair.server.respondSuccess(txs.get(0), "{}");
+        assertTrue(tx.get().succeeded);
+    }
+}
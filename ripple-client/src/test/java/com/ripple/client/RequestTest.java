@@ -1,4 +1,199 @@
 package com.ripple.client;
 
+import com.ripple.client.async.EventLoop;
+import com.ripple.client.async.Promise;
+import com.ripple.client.enums.Command;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static junit.framework.TestCase.*;
+
 public class RequestTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    @Test
+    public void testFutureAndCallbacksSettleOnResponse() throws Exception {
+        MockPair pair = new MockPair().connect();
+        Promise<Response> future = pair.client.request(Command.ping, null, 0);
+        Request request = pair.server.popMessage().getRequest(pair.client);
+
+        final boolean[] successRan = new boolean[]{false};
+        request.on(Request.OnSuccess.class, new Request.OnSuccess() {
+            @Override
+            public void called(Response response) {
+                successRan[0] = true;
+            }
+        });
+
+        assertFalse(future.isDone());
+        pair.server.respondSuccess(request, "{}");
+
+        assertTrue(successRan[0]);
+        assertTrue(future.get().succeeded);
+        assertSame(request.response, future.get());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        MockPair pair = new MockPair().connect();
+        final Request request = pair.client.newRequest(Command.tx).timeout(50);
+        final CountDownLatch timedOut = new CountDownLatch(1);
+
+        request.on(Request.OnTimeout.class, new Request.OnTimeout() {
+            @Override
+            public void called(Request r) {
+                timedOut.countDown();
+            }
+        });
+        request.request();
+
+        try {
+            request.future().get(5, TimeUnit.SECONDS);
+            fail("Expected the request to time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        assertNull(pair.client.pending(request.id));
+        assertNull(request.response);
+
+        // A late response is ignored
+        pair.server.respondSuccess(request, "{}");
+        assertNull(request.response);
+    }
+
+    @Test
+    public void testCancelRemovesPending() throws Exception {
+        MockPair pair = new MockPair().connect();
+        Request request = pair.client.newRequest(Command.tx);
+        request.request();
+        assertSame(request, pair.client.pending(request.id));
+
+        assertTrue(request.cancel());
+        assertTrue(request.future().isCancelled());
+        assertNull(pair.client.pending(request.id));
+    }
+
+    @Test
+    public void testCallbacksHearOfFailuresToo() throws Exception {
+        MockPair pair = new MockPair().connect();
+        final ArrayList<Response> errors = new ArrayList<Response>(), responses = new ArrayList<Response>();
+        ArrayList<Request> requests = new ArrayList<Request>();
+        // Read-only requests would be resent on reconnecting, so the submit
+        for (Command cmd : new Command[]{Command.tx, Command.submit}) {
+            Request request = pair.client.newRequest(cmd);
+            request.on(Request.OnError.class, new Request.OnError() {
+                @Override
+                public void called(Response response) {
+                    errors.add(response);
+                }
+            });
+            request.on(Request.OnResponse.class, new Request.OnResponse() {
+                @Override
+                public void called(Response response) {
+                    responses.add(response);
+                }
+            });
+            request.request();
+            requests.add(request);
+        }
+
+        requests.get(0).cancel();
+        pair.server.disconnect();
+
+        assertEquals(2, errors.size());
+        assertEquals(2, responses.size());
+        assertEquals("cancelled", errors.get(0).error);
+        assertSame(requests.get(0), errors.get(0).request);
+        assertEquals("disconnected", errors.get(1).error);
+        assertTrue(errors.get(1).failure instanceof Client.DisconnectedException);
+        assertFalse(responses.get(1).succeeded);
+    }
+
+    @Test
+    public void testCancelledBeforeConnectIsNeverSent() throws Exception {
+        MockPair pair = new MockPair();
+        Request request = pair.client.newRequest(Command.tx);
+        request.request();
+        request.cancel();
+
+        pair.connect();
+        for (MockPair.Message message : pair.server.unread()) {
+            assertFalse(Command.tx.toString().equals(message.msg.optString("command")));
+        }
+    }
+
+    @Test
+    public void testRequestAllInOrder() throws Exception {
+        MockPair pair = new MockPair().connect();
+        pair.server.unreadMarked();
+
+        List<JSONObject> params = new ArrayList<JSONObject>();
+        for (int i = 0; i < 3; i++) {
+            params.add(new JSONObject().put("ledger_index", i));
+        }
+        Promise<List<Response>> all = pair.client.requestAll(Command.ledger, params, 0);
+        Promise<Integer> count = all.map(new Promise.Transform<List<Response>, Integer>() {
+            @Override
+            public Integer apply(List<Response> responses) {
+                return responses.size();
+            }
+        });
+
+        // Respond in reverse
+        ArrayList<MockPair.Message> sent = pair.server.unreadMarked();
+        for (int i = sent.size() - 1; i >= 0; i--) {
+            Request request = sent.get(i).getRequest(pair.client);
+            pair.server.respondSuccess(request, new JSONObject().put("n", request.json().getInt("ledger_index")));
+            assertEquals(i == 0, all.isDone());
+        }
+
+        List<Response> responses = all.get();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, responses.get(i).result.getInt("n"));
+        }
+        assertEquals(3, (int) count.get());
+    }
+
+    @Test
+    public void testRequestsFromOtherThreadsRunOnTheLoop() throws Exception {
+        final MockPair.RippledMock server = new MockPair.RippledMock();
+        final Client client = new Client(server.ws, new EventLoop("test-client"));
+        client.setCallbackExecutor(Executors.newSingleThreadExecutor());
+        client.connect("wss://this.doesnt.matter.com");
+        server.connect();
+
+        Promise<Response> future = client.request(Command.ping, null, 0);
+        // Wait for the loop to have sent it, then respond from this thread
+        client.call(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+        final Request request = server.popMessage().getRequest(client);
+        assertEquals(Command.ping, request.cmd);
+        server.respondSuccess(request, "{}");
+
+        assertTrue(future.get(5, TimeUnit.SECONDS).succeeded);
+        // Only the subscribe request, which went unanswered, is left
+        assertNull(client.pending(request.id));
+        assertEquals(1, (int) client.call(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return client.inFlight();
+            }
+        }));
+    }
 }
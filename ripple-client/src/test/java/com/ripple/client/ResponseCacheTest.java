@@ -0,0 +1,129 @@
+package com.ripple.client;
+
+import com.ripple.client.async.Promise;
+import com.ripple.client.enums.Command;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static junit.framework.TestCase.*;
+
+public class ResponseCacheTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static JSONObject json(String s) {
+        return Client.parseJSON(s);
+    }
+
+    @Test
+    public void testRecognisesImmutableQueries() throws Exception {
+        assertTrue(ResponseCache.cacheable(Command.tx, json("{\"transaction\": \"AB\"}")));
+        assertTrue(ResponseCache.cacheable(Command.ledger, json("{\"ledger_index\": 5}")));
+        assertTrue(ResponseCache.cacheable(Command.ledger_entry, json("{\"ledger_hash\": \"AB\", \"index\": \"CD\"}")));
+        assertTrue(ResponseCache.cacheable(Command.account_tx, json("{\"ledger_index_min\": 1, \"ledger_index_max\": 9}")));
+
+        assertFalse(ResponseCache.cacheable(Command.ledger, json("{\"ledger_index\": \"validated\"}")));
+        assertFalse(ResponseCache.cacheable(Command.ledger_entry, json("{\"index\": \"CD\"}")));
+        assertFalse(ResponseCache.cacheable(Command.account_tx, json("{\"ledger_index_min\": -1, \"ledger_index_max\": -1}")));
+        assertFalse(ResponseCache.cacheable(Command.server_info, json("{}")));
+
+        assertTrue(ResponseCache.immutable(Command.tx, json("{}"), json("{\"validated\": true}"), 0));
+        assertFalse(ResponseCache.immutable(Command.tx, json("{}"), json("{\"validated\": false}"), 0));
+
+        JSONObject range = json("{\"ledger_index_min\": 1, \"ledger_index_max\": 9}");
+        JSONObject page = json("{\"ledger_index_min\": 1, \"ledger_index_max\": 9, " +
+                "\"transactions\": [{\"validated\": true}, {\"validated\": true}]}");
+        assertTrue(ResponseCache.immutable(Command.account_tx, range, page, 9));
+        // Not closed yet
+        assertFalse(ResponseCache.immutable(Command.account_tx, range, page, 8));
+        assertFalse(ResponseCache.immutable(Command.account_tx, range,
+                json("{\"ledger_index_min\": 1, \"ledger_index_max\": 9, " +
+                        "\"transactions\": [{\"validated\": false}]}"), 9));
+        // Searched only the ledgers the server had
+        assertFalse(ResponseCache.immutable(Command.account_tx, range,
+                json("{\"ledger_index_min\": 4, \"ledger_index_max\": 9, \"transactions\": []}"), 9));
+        assertFalse(ResponseCache.immutable(Command.account_tx, range, json("{\"transactions\": []}"), 9));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedByCount() throws Exception {
+        ResponseCache cache = new ResponseCache(2, 1 << 20);
+        cache.put("a", json("{\"n\": 1}"));
+        cache.put("b", json("{\"n\": 2}"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", json("{\"n\": 3}"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a").getInt("n"));
+        assertEquals(3, cache.get("c").getInt("n"));
+    }
+
+    @Test
+    public void testEvictsBySize() throws Exception {
+        ResponseCache cache = new ResponseCache(100, 30);
+        cache.put("a", json("{\"n\": 1}"));     // 1 + 7 chars
+        cache.put("b", json("{\"n\": 2}"));
+        cache.put("c", json("{\"n\": 3}"));
+        assertEquals(24, cache.chars());
+        cache.put("d", json("{\"n\": 4}"));
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("a"));
+        // Too big to ever fit
+        cache.put("e", json("{\"long\": \"xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx\"}"));
+        assertNull(cache.get("e"));
+    }
+
+    @Test
+    public void testReturnsCopies() throws Exception {
+        ResponseCache cache = new ResponseCache(10, 1 << 20);
+        JSONObject result = json("{\"n\": 1}");
+        cache.put("a", result);
+        result.put("n", 2);
+        cache.get("a").put("n", 3);
+        assertEquals(1, cache.get("a").getInt("n"));
+    }
+
+    @Test
+    public void testPersistsToDirectory() throws Exception {
+        ResponseCache cache = new ResponseCache(10, 1 << 20, folder.getRoot());
+        cache.put("{\"command\":\"tx\"}", json("{\"n\": 1}"));
+        cache.flush();
+
+        ResponseCache reopened = new ResponseCache(10, 1 << 20, folder.getRoot());
+        assertEquals(1, reopened.get("{\"command\":\"tx\"}").getInt("n"));
+        assertNull(reopened.get("{\"command\":\"ledger\"}"));
+        assertEquals(1, reopened.hits());
+        assertEquals(1, reopened.misses());
+    }
+
+    @Test
+    public void testClientAnswersValidatedQueriesFromTheCache() throws Exception {
+        MockPair pair = new MockPair().connect();
+        pair.server.unreadMarked();
+        pair.client.setResponseCache(new ResponseCache(10, 1 << 20));
+
+        Promise<Response> pending = pair.client.request(Command.tx, json("{\"transaction\": \"AB\"}"), 0);
+        Request request = pair.server.popMessage().getRequest(pair.client);
+        pair.server.respondSuccess(request, "{\"validated\": false}");
+        assertFalse(pending.get().result.getBoolean("validated"));
+
+        // Not validated, so asked again
+        pair.client.request(Command.tx, json("{\"transaction\": \"AB\"}"), 0);
+        request = pair.server.popMessage().getRequest(pair.client);
+        pair.server.respondSuccess(request, "{\"validated\": true}");
+
+        Promise<Response> cached = pair.client.request(Command.tx, json("{\"transaction\": \"AB\"}"), 0);
+        assertEquals(0, pair.server.unread().size());
+        assertTrue(cached.isDone());
+        assertTrue(cached.get().succeeded);
+        assertTrue(cached.get().result.getBoolean("validated"));
+    }
+}
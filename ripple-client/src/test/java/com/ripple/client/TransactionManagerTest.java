@@ -0,0 +1,504 @@
+package com.ripple.client;
+
+import com.ripple.client.enums.Command;
+import com.ripple.client.transactions.BulkSigner;
+import com.ripple.client.transactions.ManagedTransaction;
+import com.ripple.client.transactions.TransactionManager;
+import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.core.enums.TransactionEngineResult;
+import com.ripple.core.enums.TransactionType;
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.Amount;
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.core.types.uint.UInt16;
+import com.ripple.core.types.uint.UInt32;
+import com.ripple.core.types.uint.UInt8;
+import com.ripple.encodings.common.B16;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.*;
+
+public class TransactionManagerTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    static final String SEED = "snSq7dKr5v39hJ8Enb45RpXFJL25h";
+
+    MockPair pair = new MockPair().connect();
+    Client client = pair.client;
+    Request serverSubscribe = pair.server.popMessage().getRequest(client);
+    Account account = client.accountFromSeed(SEED);
+    TransactionManager tm = account.transactionManager();
+
+    {
+        // Signed on the loop, so submitted by the time queue returns
+        tm.setBulkSigner(new BulkSigner(null));
+    }
+
+    ArrayList<Request> sent(Command cmd) {
+        ArrayList<Request> sent = new ArrayList<Request>();
+        for (MockPair.Message message : pair.server.unreadMarked()) {
+            Request request = message.getRequest(client);
+            if (request != null && request.cmd == cmd) {
+                sent.add(request);
+            }
+        }
+        return sent;
+    }
+
+    void primeAccount(Request ledgerEntry) throws Exception {
+        JSONObject node = new JSONObject()
+                .put("LedgerEntryType", "AccountRoot")
+                .put("Account", account.address)
+                .put("Balance", "1000000000")
+                .put("Sequence", 5)
+                .put("OwnerCount", 0)
+                .put("Flags", 0)
+                .put("PreviousTxnID", "95B5F9CA0AEAD59CBBA5D14F0F248472255F241DEF3CF881CECA3CA4B01FC178")
+                .put("PreviousTxnLgrSeq", 1);
+        pair.server.respondSuccess(ledgerEntry, new JSONObject().put("node", node));
+    }
+
+    void primeServer() {
+        pair.server.respondSuccess(serverSubscribe, JSONBuilder.build()
+                .fee_base(10).fee_ref(10).load_base(256).load_factor(256)
+                .ledger_index(2642686).reserve_base(50000000).reserve_inc(12500000)
+                .finish());
+    }
+
+    ManagedTransaction payment() {
+        ManagedTransaction payment = tm.payment();
+        payment.put(AccountID.Destination, "rP1coskQzayaQ9geMdJgAV5f3tNZcHghzH");
+        payment.put(Amount.Amount, "1000");
+        return payment;
+    }
+
+    static STObject submittedTx(Request submit) {
+        return STObject.translate.fromWireBytes(B16.decode(submit.json().optString("tx_blob")));
+    }
+
+    static long sequenceOf(Request submit) {
+        return submittedTx(submit).get(UInt32.Sequence).longValue();
+    }
+
+    void respond(Request submit, String engineResult) throws Exception {
+        pair.server.respondSuccess(submit, new JSONObject().put("engine_result", engineResult));
+    }
+
+    void validate(ManagedTransaction transaction) {
+        STObject meta = STObject.newInstance();
+        meta.put(UInt8.TransactionResult, new UInt8(TransactionEngineResult.tesSUCCESS.asInteger()));
+        tm.onTransactionResultMessage(new TransactionResult(2642687, transaction.hash, transaction, meta));
+    }
+
+    ArrayList<ManagedTransaction> queuePrimed(int n) throws Exception {
+        primeAccount(sent(Command.ledger_entry).get(0));
+        primeServer();
+        ArrayList<ManagedTransaction> payments = new ArrayList<ManagedTransaction>();
+        for (int i = 0; i < n; i++) {
+            payments.add(payment());
+        }
+        tm.queue(payments);
+        return payments;
+    }
+
+    @Test
+    public void testWaitingTransactionsAreSubmittedInOrderOncePrimed() throws Exception {
+        ArrayList<Request> ledgerEntries = sent(Command.ledger_entry);
+        assertEquals(1, ledgerEntries.size());
+
+        ManagedTransaction first = payment(), second = payment(), third = payment();
+        tm.queue(first);
+        tm.queue(Arrays.asList(second, third));
+        tm.queue(payment());
+        assertEquals(4, tm.awaiting());
+        assertTrue(sent(Command.submit).isEmpty());
+
+        primeAccount(ledgerEntries.get(0));
+        assertTrue("Waiting on the server info too", sent(Command.submit).isEmpty());
+
+        primeServer();
+        ArrayList<Request> submits = sent(Command.submit);
+        assertEquals(4, submits.size());
+        for (int i = 0; i < submits.size(); i++) {
+            assertEquals(5 + i, sequenceOf(submits.get(i)));
+        }
+        assertSame(first, tm.pending(5));
+        assertSame(third, tm.pending(7));
+
+        // Once primed, there's no more waiting
+        tm.queue(payment());
+        assertEquals(1, sent(Command.submit).size());
+    }
+
+    @Test
+    public void testValidationIsMatchedByHash() throws Exception {
+        primeAccount(sent(Command.ledger_entry).get(0));
+        primeServer();
+
+        ManagedTransaction first = payment(), second = payment();
+        tm.queue(Arrays.asList(first, second));
+        ArrayList<Request> submits = sent(Command.submit);
+        assertEquals(2, submits.size());
+        for (Request submit : submits) {
+            pair.server.respondSuccess(submit, new JSONObject().put("engine_result", "tesSUCCESS"));
+        }
+        assertEquals(2, tm.awaiting());
+
+        final TransactionResult[] validated = new TransactionResult[1];
+        second.once(ManagedTransaction.OnTransactionValidated.class, new ManagedTransaction.OnTransactionValidated() {
+            @Override
+            public void called(TransactionResult result) {
+                validated[0] = result;
+            }
+        });
+
+        STObject meta = STObject.newInstance();
+        meta.put(UInt8.TransactionResult, new UInt8(TransactionEngineResult.tesSUCCESS.asInteger()));
+        TransactionResult result = new TransactionResult(2642687, second.hash, second, meta);
+        tm.onTransactionResultMessage(result);
+
+        assertSame(result, validated[0]);
+        assertEquals(1, tm.awaiting());
+        assertNull(tm.pending(second.sequence().longValue()));
+        assertSame(first, tm.pending(first.sequence().longValue()));
+
+        // Only matched once
+        validated[0] = null;
+        tm.onTransactionResultMessage(result);
+        assertNull(validated[0]);
+    }
+
+    // Runs what it's given only when asked
+    static class Deferred extends AbstractExecutorService {
+        ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+
+        void runAll() {
+            ArrayList<Runnable> running = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : running) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return tasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testBatchesAreSignedOffTheLoopInOrder() throws Exception {
+        Deferred signer = new Deferred();
+        tm.setBulkSigner(new BulkSigner(signer));
+        tm.setWindow(2);
+        ArrayList<ManagedTransaction> payments = queuePrimed(3);
+
+        assertTrue("Not signed on the loop", sent(Command.submit).isEmpty());
+        assertNull(payments.get(0).tx_blob);
+        assertSame("Its slot held while signed", payments.get(1), tm.pending(6));
+
+        signer.runAll();
+        ArrayList<Request> submits = sent(Command.submit);
+        assertEquals(2, submits.size());
+        assertEquals(5, sequenceOf(submits.get(0)));
+        assertEquals(6, sequenceOf(submits.get(1)));
+
+        respond(submits.get(0), "tesSUCCESS");
+        validate(payments.get(0));
+        assertTrue(sent(Command.submit).isEmpty());
+        signer.runAll();
+        assertEquals(7, sequenceOf(sent(Command.submit).get(0)));
+    }
+
+    @Test
+    public void testWindowLimitsTransactionsInFlight() throws Exception {
+        tm.setWindow(3);
+        ArrayList<ManagedTransaction> payments = queuePrimed(5);
+        ArrayList<Request> submits = sent(Command.submit);
+        assertEquals(3, submits.size());
+        assertEquals(5, tm.awaiting());
+        assertNull("Not sequenced until in the window", payments.get(3).sequence());
+
+        for (Request submit : submits) {
+            respond(submit, "tesSUCCESS");
+        }
+        assertTrue("Accepted isn't validated", sent(Command.submit).isEmpty());
+
+        validate(payments.get(0));
+        submits = sent(Command.submit);
+        assertEquals(1, submits.size());
+        assertEquals(8, sequenceOf(submits.get(0)));
+        assertSame(payments.get(3), tm.pending(8));
+    }
+
+    @Test
+    public void testPastSequenceIsResequencedAlone() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(3);
+        ArrayList<Request> submits = sent(Command.submit);
+        Hash256 before = payments.get(0).hash;
+
+        respond(submits.get(0), "tefPAST_SEQ");
+        respond(submits.get(1), "tesSUCCESS");
+        respond(submits.get(2), "tesSUCCESS");
+
+        // Looked up first
+        ArrayList<Request> lookups = sent(Command.tx);
+        assertEquals(1, lookups.size());
+        assertTrue(sent(Command.submit).isEmpty());
+        assertEquals(before.toString(), lookups.get(0).json().optString("transaction"));
+        pair.server.respondError(lookups.get(0), "txnNotFound");
+
+        submits = sent(Command.submit);
+        assertEquals(1, submits.size());
+        assertEquals(8, sequenceOf(submits.get(0)));
+        assertSame(payments.get(0), tm.pending(8));
+        assertNull(tm.pending(5));
+        assertFalse("Re-signed", before.equals(payments.get(0).hash));
+        assertSame(payments.get(1), tm.pending(6));
+    }
+
+    @Test
+    public void testHeldCopyThatAppliedIsntResequenced() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(2);
+        ArrayList<Request> submits = sent(Command.submit);
+        respond(submits.get(1), "terPRE_SEQ");
+        respond(submits.get(0), "tesSUCCESS");
+
+        // Resubmitted, but the copy the server held applied in the meantime
+        ArrayList<Request> resubmits = sent(Command.submit);
+        assertEquals(1, resubmits.size());
+        respond(resubmits.get(0), "tefPAST_SEQ");
+        ArrayList<Request> lookups = sent(Command.tx);
+        assertEquals(1, lookups.size());
+        ManagedTransaction second = payments.get(1);
+        pair.server.respondSuccess(lookups.get(0), new JSONObject()
+                .put("hash", second.hash.toString()).put("validated", false));
+
+        assertTrue("Not re-sequenced", sent(Command.submit).isEmpty());
+        assertSame(second, tm.pending(6));
+        assertEquals(2, tm.awaiting());
+        validate(second);
+        assertEquals(1, tm.awaiting());
+    }
+
+    @Test
+    public void testTimedOutSubmissionIsLookedUpAndResubmitted() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(2);
+        ArrayList<Request> submits = sent(Command.submit);
+        submits.get(0).expire();
+        respond(submits.get(1), "terPRE_SEQ");
+
+        ArrayList<Request> lookups = sent(Command.tx);
+        assertEquals(1, lookups.size());
+        assertEquals(payments.get(0).hash.toString(), lookups.get(0).json().optString("transaction"));
+        pair.server.respondError(lookups.get(0), "txnNotFound");
+
+        ArrayList<Request> resubmits = sent(Command.submit);
+        assertEquals(1, resubmits.size());
+        assertEquals(5, sequenceOf(resubmits.get(0)));
+        respond(resubmits.get(0), "tesSUCCESS");
+
+        resubmits = sent(Command.submit);
+        assertEquals("The one after, no longer blocked", 1, resubmits.size());
+        assertEquals(6, sequenceOf(resubmits.get(0)));
+    }
+
+    @Test
+    public void testSubmittedButUnknownAfterReconnectingIsResubmitted() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(1);
+        respond(sent(Command.submit).get(0), "tesSUCCESS");
+
+        pair.server.disconnect();
+        pair.server.connect();
+        ArrayList<Request> lookups = sent(Command.tx);
+        assertEquals(1, lookups.size());
+        assertEquals(payments.get(0).hash.toString(), lookups.get(0).json().optString("transaction"));
+        pair.server.respondError(lookups.get(0), "txnNotFound");
+
+        ArrayList<Request> resubmits = sent(Command.submit);
+        assertEquals(1, resubmits.size());
+        assertEquals(B16.toString(payments.get(0).tx_blob), resubmits.get(0).json().getString("tx_blob"));
+        assertSame(payments.get(0), tm.pending(5));
+    }
+
+    @Test
+    public void testHoleIsFilledAndTheTailResubmitted() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(3);
+        final ArrayList<ManagedTransaction> failed = new ArrayList<ManagedTransaction>();
+        payments.get(0).once(ManagedTransaction.OnSubmitError.class, new ManagedTransaction.OnSubmitError() {
+            @Override
+            public void called(Response response) {
+                failed.add(null);
+            }
+        });
+        ArrayList<Request> submits = sent(Command.submit);
+        byte[] blocked = payments.get(1).tx_blob;
+
+        respond(submits.get(0), "temBAD_AMOUNT");
+        assertEquals(1, failed.size());
+        ArrayList<Request> fillers = sent(Command.submit);
+        assertEquals(1, fillers.size());
+        STObject filler = submittedTx(fillers.get(0));
+        assertEquals(TransactionType.AccountSet, TransactionType.fromNumber(filler.get(UInt16.TransactionType)));
+        assertEquals(5, sequenceOf(fillers.get(0)));
+
+        respond(submits.get(1), "terPRE_SEQ");
+        respond(submits.get(2), "terPRE_SEQ");
+        assertTrue("Held, until the one before is accepted", sent(Command.submit).isEmpty());
+
+        respond(fillers.get(0), "tesSUCCESS");
+        ArrayList<Request> resubmits = sent(Command.submit);
+        assertEquals(1, resubmits.size());
+        assertTrue("The same blob", Arrays.equals(blocked, B16.decode(resubmits.get(0).json().optString("tx_blob"))));
+
+        respond(resubmits.get(0), "tesSUCCESS");
+        resubmits = sent(Command.submit);
+        assertEquals(1, resubmits.size());
+        assertEquals(7, sequenceOf(resubmits.get(0)));
+    }
+
+    @Test
+    public void testLastFailureRewindsTheSequence() throws Exception {
+        queuePrimed(2);
+        ArrayList<Request> submits = sent(Command.submit);
+        respond(submits.get(0), "tesSUCCESS");
+        respond(submits.get(1), "tefBAD_AUTH");
+        assertTrue("Nothing after it to fill for", sent(Command.submit).isEmpty());
+
+        tm.queue(payment());
+        assertEquals(6, sequenceOf(sent(Command.submit).get(0)));
+    }
+
+    void closeLedger(int loadFactor) throws Exception {
+        closeLedger(loadFactor, 2642687);
+    }
+
+    void closeLedger(int loadFactor, int ledgerIndex) throws Exception {
+        pair.server.sendMessage(JSONBuilder.build()
+                .fee_base(10).fee_ref(10).load_base(256).load_factor(loadFactor)
+                .ledger_index(ledgerIndex).reserve_base(50000000).reserve_inc(12500000)
+                .finish().put("type", "ledgerClosed"));
+    }
+
+    @Test
+    public void testUnvalidatedPastItsLastLedgerIsFailedAndFilled() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(2);
+        final ArrayList<Response> errors = new ArrayList<Response>();
+        payments.get(0).on(ManagedTransaction.OnSubmitError.class, new ManagedTransaction.OnSubmitError() {
+            @Override
+            public void called(Response response) {
+                errors.add(response);
+            }
+        });
+        ArrayList<Request> submits = sent(Command.submit);
+        long last = 2642686 + TransactionManager.LAST_LEDGER_OFFSET;
+        assertEquals(last, submittedTx(submits.get(0)).get(UInt32.LastLedgerSequence).longValue());
+        respond(submits.get(0), "tesSUCCESS");
+        respond(submits.get(1), "tesSUCCESS");
+
+        // Not until its last ledger is validated
+        closeLedger(256, (int) last);
+        assertTrue(sent(Command.tx).isEmpty());
+
+        closeLedger(256, (int) last + 1);
+        ArrayList<Request> lookups = sent(Command.tx);
+        assertEquals(2, lookups.size());
+        pair.server.respondError(lookups.get(0), "txnNotFound");
+
+        assertEquals(1, errors.size());
+        ArrayList<Request> fillers = sent(Command.submit);
+        assertEquals(1, fillers.size());
+        STObject filler = submittedTx(fillers.get(0));
+        assertEquals(TransactionType.AccountSet, TransactionType.fromNumber(filler.get(UInt16.TransactionType)));
+        assertEquals(5, sequenceOf(fillers.get(0)));
+        assertEquals(last + 1 + TransactionManager.LAST_LEDGER_OFFSET,
+                filler.get(UInt32.LastLedgerSequence).longValue());
+        assertNotSame(payments.get(0), tm.pending(5));
+    }
+
+    @Test
+    public void testRetryResultsAreHeldAndRetriedOnClose() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(2);
+        final ArrayList<Response> errors = new ArrayList<Response>();
+        payments.get(0).on(ManagedTransaction.OnSubmitError.class, new ManagedTransaction.OnSubmitError() {
+            @Override
+            public void called(Response response) {
+                errors.add(response);
+            }
+        });
+        ArrayList<Request> submits = sent(Command.submit);
+        byte[] blob = payments.get(0).tx_blob;
+        respond(submits.get(0), "terINSUF_FEE_B");
+        respond(submits.get(1), "terPRE_SEQ");
+        assertTrue("Not failed, nor filled", errors.isEmpty() && sent(Command.submit).isEmpty());
+
+        for (int close = 0; close < TransactionManager.MAX_HELD_CLOSES; close++) {
+            closeLedger(256);
+            ArrayList<Request> resubmits = sent(Command.submit);
+            assertEquals(1, resubmits.size());
+            assertTrue(Arrays.equals(blob, B16.decode(resubmits.get(0).json().optString("tx_blob"))));
+            respond(resubmits.get(0), "terINSUF_FEE_B");
+        }
+        assertTrue(errors.isEmpty());
+        assertSame(payments.get(0), tm.pending(5));
+
+        // Given up on, and only then filled
+        closeLedger(256);
+        assertEquals(1, errors.size());
+        ArrayList<Request> fillers = sent(Command.submit);
+        assertEquals(1, fillers.size());
+        assertEquals(5, sequenceOf(fillers.get(0)));
+        assertNotSame(payments.get(0), tm.pending(5));
+    }
+
+    @Test
+    public void testInsufficientFeeIsRetriedOnLedgerClose() throws Exception {
+        ArrayList<ManagedTransaction> payments = queuePrimed(1);
+        Amount underpaid = payments.get(0).get(Amount.Fee);
+        respond(sent(Command.submit).get(0), "telINSUF_FEE_P");
+        assertTrue(sent(Command.submit).isEmpty());
+        assertEquals(1, tm.awaiting());
+
+        closeLedger(512);
+        ArrayList<Request> submits = sent(Command.submit);
+        assertEquals(1, submits.size());
+        assertEquals(5, sequenceOf(submits.get(0)));
+        Amount fee = submittedTx(submits.get(0)).get(Amount.Fee);
+        assertEquals(client.serverInfo.transactionFee(payments.get(0)), fee);
+        assertTrue(fee.compareTo(underpaid) > 0);
+    }
+}
@@ -8,12 +8,15 @@ import com.ripple.core.fields.Field;
 import com.ripple.core.types.AccountID;
 import com.ripple.core.types.Amount;
 import com.ripple.core.types.STObject;
+import com.ripple.core.types.VariableLength;
 import com.ripple.core.types.hash.Hash256;
 import com.ripple.core.types.uint.UInt32;
+import com.ripple.encodings.common.B16;
 import org.json.JSONObject;
 import org.junit.Test;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
 
 /**
  * Created with IntelliJ IDEA. User: nick Date: 10/10/13 Time: 6:37 PM
@@ -92,6 +95,25 @@ public class TransactionTest {
                 new UInt32(1));
     }
 
+    @Test
+    public void testPreparedBlobMatchesFullSerialization() throws Exception {
+        final AccountID niqwit1 = AccountID.fromSeedString("snSq7dKr5v39hJ8Enb45RpXFJL25h");
+
+        ManagedTransaction transaction = new ManagedTransaction(TransactionType.Payment, 0);
+        transaction.put(AccountID.Account, niqwit1);
+        transaction.put(AccountID.Destination, "rP1coskQzayaQ9geMdJgAV5f3tNZcHghzH");
+        transaction.put(Amount.Amount, "1");
+        transaction.prepare(niqwit1.getKeyPair(), Amount.fromString("15"), new UInt32(1));
+
+        byte[] expected = STObject.translate.toWireBytes(transaction);
+        assertEquals(B16.toString(expected), B16.toString(transaction.tx_blob));
+        assertEquals(Hash256.transactionID(expected), transaction.hash);
+
+        Hash256 signingHash = Hash256.signingHash(STObject.translate.toSigningBytes(transaction));
+        byte[] signature = transaction.get(VariableLength.TxnSignature).bytes();
+        assertTrue(niqwit1.getKeyPair().verify(signingHash.bytes(), signature));
+    }
+
     @Test
     public void testSerializationAndSigning() throws Exception {
         String tx = "{\"Account\": \"rwMyB1diFJ7xqEKYGYgk9tKrforvTr33M5\","
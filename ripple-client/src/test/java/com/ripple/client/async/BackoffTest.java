@@ -0,0 +1,43 @@
+package com.ripple.client.async;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class BackoffTest {
+    @Test
+    public void testDoublesUpToTheCapWithJitter() throws Exception {
+        Backoff backoff = new Backoff(100, 1000, new Random(7));
+        long[] ceilings = {100, 200, 400, 800, 1000, 1000};
+
+        for (long ceiling : ceilings) {
+            long delay = backoff.next();
+            assertTrue(delay + " not in [" + ceiling / 2 + ", " + ceiling + "]",
+                       delay >= ceiling / 2 && delay <= ceiling);
+        }
+        assertEquals(ceilings.length, backoff.attempts());
+    }
+
+    @Test
+    public void testManyAttemptsDontOverflow() throws Exception {
+        Backoff backoff = new Backoff(500, 30000, new Random(7));
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.next();
+            assertTrue(delay >= 0 && delay <= 30000);
+        }
+    }
+
+    @Test
+    public void testResetStartsOver() throws Exception {
+        Backoff backoff = new Backoff(100, 100000, new Random(7));
+        for (int i = 0; i < 10; i++) {
+            backoff.next();
+        }
+        backoff.reset();
+        assertEquals(0, backoff.attempts());
+        assertTrue(backoff.next() <= 100);
+    }
+}
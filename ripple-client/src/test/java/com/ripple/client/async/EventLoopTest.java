@@ -0,0 +1,67 @@
+package com.ripple.client.async;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class EventLoopTest {
+    @Test
+    public void testRunsAllTasksInProducerOrderOnOneThread() throws Exception {
+        final EventLoop loop = new EventLoop("test-loop");
+        final int producers = 4, perProducer = 20000;
+        final int[] lastSeen = new int[producers];
+        final boolean[] outOfOrder = new boolean[]{false};
+        final boolean[] offLoop = new boolean[]{false};
+        final CountDownLatch done = new CountDownLatch(producers * perProducer);
+
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= perProducer; i++) {
+                        final int n = i;
+                        loop.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                // Only ever touched on the loop, so needs no locking
+                                if (lastSeen[producer] != n - 1) {
+                                    outOfOrder[0] = true;
+                                }
+                                lastSeen[producer] = n;
+                                if (!loop.inLoop()) {
+                                    offLoop[0] = true;
+                                }
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        final CountDownLatch flushed = new CountDownLatch(1);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushed.countDown();
+            }
+        });
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+
+        assertFalse(outOfOrder[0]);
+        assertFalse(offLoop[0]);
+        assertFalse(loop.inLoop());
+    }
+}
@@ -0,0 +1,38 @@
+package com.ripple.client.async;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TimerWheelTest {
+    @Test
+    public void testExpiresInDeadlineOrderNeverEarly() throws Exception {
+        TimerWheel<String> wheel = new TimerWheel<String>(10, 8, 0);
+        wheel.schedule("a", 0, 25);
+        wheel.schedule("b", 0, 500);   // several turns of the wheel
+        TimerWheel.Timeout<String> c = wheel.schedule("c", 0, 40);
+        c.cancel();
+
+        assertTrue(wheel.advance(20).isEmpty());
+        assertEquals(Arrays.asList("a"), wheel.advance(30));
+        assertTrue(wheel.advance(490).isEmpty());
+        assertEquals(1, wheel.size());
+        assertEquals(Arrays.asList("b"), wheel.advance(500));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testStalledSweepCatchesUp() throws Exception {
+        TimerWheel<Integer> wheel = new TimerWheel<Integer>(10, 8, 0);
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(i, 0, i * 10);
+        }
+        List<Integer> expired = wheel.advance(10000);
+        assertEquals(20, expired.size());
+        assertEquals(0, wheel.size());
+    }
+}
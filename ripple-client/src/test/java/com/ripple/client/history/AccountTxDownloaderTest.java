@@ -0,0 +1,290 @@
+package com.ripple.client.history;
+
+import com.ripple.client.Client;
+import com.ripple.client.ClientLogger;
+import com.ripple.client.async.EventLoop;
+import com.ripple.client.transport.TransportEventHandler;
+import com.ripple.client.transactions.TransactionMessage.TransactionResultTest;
+import com.ripple.client.transport.WebSocketTransport;
+import com.ripple.core.types.uint.UInt32;
+import com.ripple.encodings.common.B16;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static junit.framework.TestCase.*;
+
+public class AccountTxDownloaderTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Answers account_tx from a fixed history, paging by `limit`, with the
+     * responses delivered in shuffled batches from another thread.
+     */
+    static class FakeServer implements WebSocketTransport {
+        final long[] ledgers;
+        final Random random = new Random(42);
+        final ArrayList<String> responses = new ArrayList<String>();
+        TransportEventHandler handler;
+        int requests, failAfter = Integer.MAX_VALUE;
+        // Whether to answer with real transactions, which can be archived
+        boolean binary;
+
+        FakeServer(long[] ledgers) {
+            this.ledgers = ledgers;
+            Thread delivery = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    deliverForever();
+                }
+            });
+            delivery.setDaemon(true);
+            delivery.start();
+        }
+
+        @Override
+        public void setHandler(TransportEventHandler events) {
+            handler = events;
+        }
+
+        @Override
+        public void connect(URI url) {
+            handler.onConnected();
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public synchronized void sendMessage(JSONObject msg) {
+            try {
+                JSONObject response = new JSONObject();
+                response.put("id", msg.getInt("id"));
+                response.put("type", "response");
+                response.put("status", "success");
+
+                if (msg.getString("command").equals("account_tx")) {
+                    if (++requests > failAfter) {
+                        response.put("status", "error");
+                        response.put("error", "tooBusy");
+                    } else {
+                        response.put("result", page(msg));
+                    }
+                } else {
+                    response.put("result", new JSONObject());
+                }
+                responses.add(response.toString());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        JSONObject page(JSONObject request) throws Exception {
+            long min = request.getLong("ledger_index_min"), max = request.getLong("ledger_index_max");
+            int limit = request.getInt("limit");
+            int from = request.has("marker") ? request.getJSONObject("marker").getInt("seq") : 0;
+
+            JSONArray transactions = new JSONArray();
+            JSONObject result = new JSONObject().put("transactions", transactions);
+            for (int i = from; i < ledgers.length; i++) {
+                if (ledgers[i] < min || ledgers[i] > max) {
+                    continue;
+                }
+                if (transactions.length() == limit) {
+                    result.put("marker", new JSONObject().put("ledger", ledgers[i]).put("seq", i));
+                    break;
+                }
+                JSONObject tx = new JSONObject()
+                        .put("ledger_index", ledgers[i])
+                        .put("validated", true);
+                if (binary) {
+                    tx.put("tx_blob", B16.toString(TxIndexTest.payment(TxIndexTest.alice, i + 1)))
+                      .put("meta", TransactionResultTest.META);
+                } else {
+                    tx.put("tx_blob", "TX" + i);
+                }
+                transactions.put(tx);
+            }
+            return result;
+        }
+
+        void deliverForever() {
+            while (true) {
+                ArrayList<String> batch;
+                synchronized (this) {
+                    batch = new ArrayList<String>(responses);
+                    responses.clear();
+                }
+                Collections.shuffle(batch, random);
+                for (String response : batch) {
+                    handler.onFrame(response);
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    static long[] history(int n, long maxLedger) {
+        Random random = new Random(7);
+        long[] ledgers = new long[n];
+        for (int i = 0; i < n; i++) {
+            ledgers[i] = 1 + random.nextInt((int) maxLedger);
+        }
+        Arrays.sort(ledgers);
+        return ledgers;
+    }
+
+    AccountTxDownloader downloader(FakeServer server, File output, File checkpoint) {
+        Client client = new Client(server, new EventLoop("downloader-test"));
+        client.connect("wss://fake.example.com");
+        AccountTxDownloader downloader = new AccountTxDownloader(client, "rAccount", 1, 5000, output, checkpoint);
+        downloader.rangeSize = 400;
+        downloader.concurrency = 4;
+        downloader.pageLimit = 37;
+        downloader.timeoutMillis = 10000;
+        return downloader;
+    }
+
+    // The tx indices in the output, in order
+    static ArrayList<Integer> written(File output) throws IOException {
+        ArrayList<Integer> written = new ArrayList<Integer>();
+        BufferedReader reader = new BufferedReader(new FileReader(output));
+        try {
+            String line;
+            long previous = 0;
+            while ((line = reader.readLine()) != null) {
+                JSONArray transactions = new JSONObject(line).getJSONArray("transactions");
+                for (int i = 0; i < transactions.length(); i++) {
+                    JSONObject tx = transactions.getJSONObject(i);
+                    long ledger = tx.getLong("ledger_index");
+                    assertTrue("In ledger order", ledger >= previous);
+                    previous = ledger;
+                    written.add(Integer.parseInt(tx.getString("tx_blob").substring(2)));
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            reader.close();
+        }
+        return written;
+    }
+
+    static void assertAllOnce(ArrayList<Integer> written, long[] ledgers) {
+        assertEquals(ledgers.length, written.size());
+        for (int i = 0; i < ledgers.length; i++) {
+            assertEquals(i, (int) written.get(i));
+        }
+    }
+
+    @Test
+    public void testDownloadsConcurrentlyInLedgerOrder() throws Exception {
+        long[] ledgers = history(1000, 5000);
+        File output = folder.newFile("txs.json"), checkpoint = new File(folder.getRoot(), "txs.checkpoint");
+
+        AccountTxDownloader downloader = downloader(new FakeServer(ledgers), output, checkpoint);
+        downloader.run();
+
+        assertAllOnce(written(output), ledgers);
+        assertEquals(1000, downloader.transactions());
+        assertEquals(5001, new JSONObject(new BufferedReader(new FileReader(checkpoint)).readLine())
+                .getLong("next_ledger"));
+    }
+
+    @Test
+    public void testResumesFromTheCheckpoint() throws Exception {
+        long[] ledgers = history(1000, 5000);
+        File output = folder.newFile("txs.json"), checkpoint = new File(folder.getRoot(), "txs.checkpoint");
+
+        FakeServer failing = new FakeServer(ledgers);
+        failing.failAfter = 15;
+        AccountTxDownloader interrupted = downloader(failing, output, checkpoint);
+        interrupted.attempts = 1;
+        try {
+            interrupted.run();
+            fail("Expected the download to fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("tooBusy"));
+        }
+        assertTrue(checkpoint.isFile());
+        assertTrue(written(output).size() < ledgers.length);
+
+        FakeServer server = new FakeServer(ledgers);
+        downloader(server, output, checkpoint).run();
+        assertAllOnce(written(output), ledgers);
+
+        // Only the rest was fetched
+        FakeServer uninterrupted = new FakeServer(ledgers);
+        downloader(uninterrupted, folder.newFile("all.json"), new File(folder.getRoot(), "all.checkpoint")).run();
+        assertTrue(server.requests + " vs " + uninterrupted.requests, server.requests < uninterrupted.requests);
+    }
+
+    @Test
+    public void testArchivesAsItDownloadsAndResumes() throws Exception {
+        long[] ledgers = history(300, 5000);
+        File output = folder.newFile("txs.json"), checkpoint = new File(folder.getRoot(), "txs.checkpoint");
+        File archive = new File(folder.getRoot(), "txs.archive");
+        TxIndex byHash = TxIndex.open(new File(folder.getRoot(), "txs.by-hash"));
+        TxArchiveWriter writer = new TxArchiveWriter(archive, byHash, null);
+
+        FakeServer failing = new FakeServer(ledgers);
+        failing.binary = true;
+        failing.failAfter = 6;
+        AccountTxDownloader interrupted = downloader(failing, output, checkpoint);
+        interrupted.archiveTo(writer);
+        interrupted.attempts = 1;
+        try {
+            interrupted.run();
+            fail("Expected the download to fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("tooBusy"));
+        }
+        assertTrue(writer.size() < ledgers.length);
+
+        FakeServer server = new FakeServer(ledgers);
+        server.binary = true;
+        AccountTxDownloader resumed = downloader(server, output, checkpoint);
+        resumed.archiveTo(writer);
+        resumed.run();
+        writer.close();
+        byHash.close();
+
+        TxArchive archived = TxArchive.open(archive);
+        byHash = TxIndex.openReadOnly(new File(folder.getRoot(), "txs.by-hash"));
+        try {
+            assertEquals(ledgers.length, archived.size());
+            assertEquals(ledgers.length, byHash.size());
+            for (int i = 0; i < ledgers.length; i++) {
+                TxArchive.Record record = archived.get(i);
+                assertEquals(ledgers[i], record.ledgerIndex);
+                assertEquals(i + 1, record.transaction().get(UInt32.Sequence).longValue());
+                assertNotNull(archived.find(byHash, record.hash));
+            }
+        } finally {
+            byHash.close();
+            archived.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.ripple.client.history;
+
+import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.core.types.Amount;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.encodings.common.B16;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.ripple.client.transactions.TransactionMessage.TransactionResultTest.META;
+import static com.ripple.client.transactions.TransactionMessage.TransactionResultTest.TX;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class DumpAnalyzerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final int N = 500;
+
+    static class Totals {
+        int count;
+        BigDecimal fees = BigDecimal.ZERO;
+        ArrayList<Long> ledgers = new ArrayList<Long>();
+    }
+
+    // Only even ledgers, so it filters too
+    static final DumpAnalyzer.Analysis<Totals> analysis = new DumpAnalyzer.Analysis<Totals>() {
+        @Override
+        public Totals start() {
+            return new Totals();
+        }
+
+        @Override
+        public void add(Totals totals, TransactionResult result) {
+            if (result.ledgerIndex.longValue() % 2 == 0) {
+                totals.count++;
+                totals.fees = totals.fees.add(result.transaction.get(Amount.Fee).value());
+                totals.ledgers.add(result.ledgerIndex.longValue());
+            }
+        }
+
+        @Override
+        public Totals combine(Totals earlier, Totals later) {
+            earlier.count += later.count;
+            earlier.fees = earlier.fees.add(later.fees);
+            earlier.ledgers.addAll(later.ledgers);
+            return earlier;
+        }
+    };
+
+    static void assertSame(Totals expected, Totals actual) {
+        assertEquals(expected.count, actual.count);
+        assertEquals(expected.fees, actual.fees);
+        assertEquals(expected.ledgers, actual.ledgers);
+    }
+
+    static long ledger(int i) {
+        return 3000000 + i * 7 / 3;
+    }
+
+    TxArchive archive() throws Exception {
+        File file = new File(folder.getRoot(), "txs.archive");
+        TxArchiveWriter writer = new TxArchiveWriter(file);
+        byte[] tx = B16.decode(TX), meta = B16.decode(META);
+        for (int i = 0; i < N; i++) {
+            writer.append(ledger(i), Hash256.transactionID(tx), tx, meta);
+        }
+        writer.close();
+        return TxArchive.open(file);
+    }
+
+    File dump() throws Exception {
+        File file = folder.newFile("txs.json");
+        FileWriter writer = new FileWriter(file);
+        for (int page = 0; page < N / 10; page++) {
+            JSONArray transactions = new JSONArray();
+            for (int i = page * 10; i < page * 10 + 10; i++) {
+                transactions.put(new JSONObject()
+                        .put("ledger_index", ledger(i))
+                        .put("tx_blob", TX)
+                        .put("meta", META)
+                        .put("validated", true));
+            }
+            writer.write(new JSONObject().put("transactions", transactions).toString());
+            writer.write('\n');
+        }
+        writer.close();
+        return file;
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        TxArchive archive = archive();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Totals plain = analysis.start();
+            for (TxArchive.Record record : archive) {
+                analysis.add(plain, record.result());
+            }
+            assertTrue(plain.count > 0 && plain.count < N);
+
+            DumpAnalyzer sequential = new DumpAnalyzer(null);
+            sequential.chunkSize = 37;
+            assertSame(plain, sequential.analyze(archive, analysis));
+
+            DumpAnalyzer parallel = new DumpAnalyzer(executor);
+            parallel.chunkSize = 37;
+            for (int run = 0; run < 3; run++) {
+                assertSame(plain, parallel.analyze(archive, analysis));
+            }
+        } finally {
+            executor.shutdown();
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testJSONDumpMatchesArchive() throws Exception {
+        TxArchive archive = archive();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DumpAnalyzer analyzer = new DumpAnalyzer(executor);
+            analyzer.pagesPerChunk = 3;
+            analyzer.readAhead = 2;
+            assertSame(analyzer.analyze(archive, analysis), analyzer.analyze(dump(), analysis));
+        } finally {
+            executor.shutdown();
+            archive.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.ripple.client.history;
+
+import com.ripple.client.ClientLogger;
+import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.core.enums.TransactionEngineResult;
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.encodings.common.B16;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static com.ripple.client.transactions.TransactionMessage.TransactionResultTest.META;
+import static com.ripple.client.transactions.TransactionMessage.TransactionResultTest.TX;
+import static junit.framework.TestCase.*;
+
+public class TxArchiveTest {
+    static {
+        ClientLogger.quiet = true;
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final byte[] tx = B16.decode(TX), meta = B16.decode(META);
+    static final Hash256 hash = Hash256.transactionID(tx);
+
+    File archive(int n) throws IOException {
+        File file = new File(folder.getRoot(), "txs.archive");
+        TxArchiveWriter writer = new TxArchiveWriter(file);
+        for (int i = 0; i < n; i++) {
+            writer.append(1000 + i / 3, hash, tx, meta);
+        }
+        writer.close();
+        return file;
+    }
+
+    static byte[] bytes(TxArchive.Record record) {
+        byte[] bytes = new byte[record.txBytes().remaining()];
+        record.txBytes().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        TxArchive archive = TxArchive.open(archive(10));
+        try {
+            assertEquals(10, archive.size());
+            for (int i = 0; i < 10; i++) {
+                TxArchive.Record record = archive.get(i);
+                assertEquals(1000 + i / 3, record.ledgerIndex);
+                assertEquals(hash, record.hash);
+                assertEquals(tx.length, record.txBytes().remaining());
+                assertEquals(meta.length, record.metaBytes().remaining());
+            }
+
+            TxArchive.Record record = archive.get(4);
+            assertEquals(STObject.translate.toJSONObject(STObject.translate.fromWireBytes(tx)).toString(),
+                         STObject.translate.toJSONObject(record.transaction()).toString());
+            assertEquals(STObject.translate.toJSONObject(STObject.translate.fromWireBytes(meta)).toString(),
+                         STObject.translate.toJSONObject(record.meta()).toString());
+
+            TransactionResult result = record.result();
+            assertEquals(hash, result.hash);
+            assertEquals(1001, result.ledgerIndex.longValue());
+            assertEquals(TransactionEngineResult.tesSUCCESS, result.engineResult);
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testFirstAtOrAfter() throws Exception {
+        TxArchive archive = TxArchive.open(archive(10));
+        try {
+            assertEquals(0, archive.firstAtOrAfter(0));
+            assertEquals(0, archive.firstAtOrAfter(1000));
+            assertEquals(3, archive.firstAtOrAfter(1001));
+            assertEquals(9, archive.firstAtOrAfter(1003));
+            assertEquals(10, archive.firstAtOrAfter(1004));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testReopeningAppends() throws Exception {
+        File file = archive(5);
+        TxArchiveWriter writer = new TxArchiveWriter(file);
+        assertEquals(5, writer.size());
+        writer.append(2000, hash, tx, meta);
+        writer.close();
+
+        TxArchive archive = TxArchive.open(file);
+        try {
+            assertEquals(6, archive.size());
+            assertEquals(2000, archive.get(5).ledgerIndex);
+            assertEquals(1001, archive.get(4).ledgerIndex);
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testScansWithoutAFooterAndDropsATornRecord() throws Exception {
+        File file = new File(folder.getRoot(), "crashed.archive");
+        TxArchiveWriter writer = new TxArchiveWriter(file);
+        for (int i = 0; i < 4; i++) {
+            writer.append(1000 + i, hash, tx, meta);
+        }
+        writer.sync();
+        // Never closed, as if it crashed halfway through a fifth record
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(raw.length() + 20);
+        raw.seek(raw.length() - 20);
+        raw.writeInt(500);
+        raw.close();
+
+        TxArchive archive = TxArchive.open(file);
+        try {
+            assertEquals(4, archive.size());
+            assertEquals(1003, archive.get(3).ledgerIndex);
+        } finally {
+            archive.close();
+        }
+
+        writer = new TxArchiveWriter(file);
+        assertEquals(4, writer.size());
+        writer.append(1004, hash, tx, meta);
+        writer.close();
+
+        archive = TxArchive.open(file);
+        try {
+            assertEquals(5, archive.size());
+            assertEquals(1004, archive.get(4).ledgerIndex);
+            assertTrue(Arrays.equals(tx, bytes(archive.get(4))));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testScanStopsAtACorruptChecksum() throws Exception {
+        File file = new File(folder.getRoot(), "corrupt.archive");
+        TxArchiveWriter writer = new TxArchiveWriter(file);
+        for (int i = 0; i < 3; i++) {
+            writer.append(1000 + i, hash, tx, meta);
+        }
+        writer.sync();
+
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.seek(raw.length() - 1);
+        int last = raw.read();
+        raw.seek(raw.length() - 1);
+        raw.write(last ^ 0xFF);
+        raw.close();
+
+        TxArchive archive = TxArchive.open(file);
+        try {
+            assertEquals(2, archive.size());
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testAppendsBinaryAccountTxPages() throws Exception {
+        JSONArray transactions = new JSONArray();
+        for (int i = 0; i < 3; i++) {
+            transactions.put(new JSONObject()
+                    .put("ledger_index", 3225338 + i)
+                    .put("tx_blob", TX)
+                    .put("meta", META)
+                    .put("validated", true));
+        }
+        File file = new File(folder.getRoot(), "pages.archive");
+        TxArchiveWriter writer = new TxArchiveWriter(file);
+        writer.appendPage(new JSONObject().put("transactions", transactions));
+        writer.close();
+
+        TxArchive archive = TxArchive.open(file);
+        try {
+            assertEquals(3, archive.size());
+            int n = 0;
+            for (TxArchive.Record record : archive) {
+                assertEquals(3225338 + n++, record.ledgerIndex);
+                assertEquals(hash, record.hash);
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws Exception {
+        File file = folder.newFile("other");
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.writeBytes("{\"transactions\":[]}\n");
+        raw.close();
+        try {
+            TxArchive.open(file);
+            fail("Expected a bad header");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Not a transaction archive"));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.ripple.client.history;
+
+import com.ripple.client.transactions.TransactionMessage.TransactionResult;
+import com.ripple.core.enums.TransactionEngineResult;
+import com.ripple.core.enums.TransactionType;
+import com.ripple.core.known.tx.Transaction;
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.Amount;
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.core.types.uint.UInt8;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static junit.framework.TestCase.*;
+
+public class TxColumnsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final AccountID alice = AccountID.fromAddress("rHb9CJAWyB4rj91VRWn96DkukG4bwdtyTh"),
+                           bob = AccountID.fromAddress("rP1coskQzayaQ9geMdJgAV5f3tNZcHghzH"),
+                           issuer = AccountID.fromAddress("rMTzGg7nPPEMJthjgEBfiPZGoAM7MEVa1r");
+
+    static TransactionResult result(long ledger, TransactionType type, AccountID from, AccountID to,
+                                    Amount amount, TransactionEngineResult engineResult) {
+        Transaction tx = new Transaction(0, type);
+        tx.put(AccountID.Account, from);
+        if (to != null) {
+            tx.put(AccountID.Destination, to);
+        }
+        if (amount != null) {
+            tx.put(Amount.Amount, amount);
+        }
+        tx.put(Amount.Fee, Amount.fromDropString("12"));
+        STObject meta = STObject.newInstance();
+        meta.put(UInt8.TransactionResult, new UInt8(engineResult.asInteger()));
+        return new TransactionResult(ledger, Hash256.transactionID(new byte[]{(byte) ledger}), tx, meta);
+    }
+
+    static ArrayList<TransactionResult> history(int n) {
+        Random random = new Random(3);
+        ArrayList<TransactionResult> history = new ArrayList<TransactionResult>();
+        long ledger = 1000;
+        for (int i = 0; i < n; i++) {
+            ledger += random.nextInt(3);
+            AccountID from = random.nextBoolean() ? alice : bob, to = from == alice ? bob : alice;
+            TransactionEngineResult engineResult = random.nextInt(5) == 0 ?
+                    TransactionEngineResult.tecPATH_DRY : TransactionEngineResult.tesSUCCESS;
+            switch (random.nextInt(3)) {
+                case 0:
+                    history.add(result(ledger, TransactionType.Payment, from, to,
+                            Amount.fromDropString(String.valueOf(1 + random.nextInt(1000000))), engineResult));
+                    break;
+                case 1:
+                    BigDecimal value = new BigDecimal(random.nextInt(100000)).movePointLeft(random.nextInt(8));
+                    history.add(result(ledger, TransactionType.Payment, from, to,
+                            new Amount(value.add(BigDecimal.ONE), "USD", issuer, false), engineResult));
+                    break;
+                default:
+                    history.add(result(ledger, TransactionType.AccountSet, from, null, null, engineResult));
+            }
+        }
+        return history;
+    }
+
+    TxColumns columns(ArrayList<TransactionResult> history) throws Exception {
+        File directory = new File(folder.getRoot(), "columns");
+        TxColumnsWriter writer = new TxColumnsWriter(directory);
+        for (TransactionResult tr : history) {
+            writer.add(tr);
+        }
+        writer.close();
+        return TxColumns.open(directory);
+    }
+
+    static boolean successfulPayment(TransactionResult tr, AccountID from, String currency, long min, long max) {
+        long ledger = tr.ledgerIndex.longValue();
+        Amount amount = tr.transaction.get(Amount.Amount);
+        return ledger >= min && ledger <= max &&
+               tr.engineResult == TransactionEngineResult.tesSUCCESS &&
+               tr.transactionType() == TransactionType.Payment &&
+               tr.initiatingAccount().equals(from) &&
+               (amount.isNative ? TxColumns.XRP : amount.currencyString()).equals(currency);
+    }
+
+    @Test
+    public void testSumsMatchDecodingEveryTransaction() throws Exception {
+        ArrayList<TransactionResult> history = history(2000);
+        TxColumns columns = columns(history);
+        assertEquals(2000, columns.size());
+
+        long min = 1500, max = 2500;
+        for (String currency : new String[]{TxColumns.XRP, "USD"}) {
+            int expectedCount = 0;
+            BigDecimal expectedSum = BigDecimal.ZERO;
+            for (TransactionResult tr : history) {
+                if (successfulPayment(tr, alice, currency, min, max)) {
+                    expectedCount++;
+                    expectedSum = expectedSum.add(tr.transaction.get(Amount.Amount).value());
+                }
+            }
+            assertTrue(expectedCount > 10);
+
+            TxColumns.Scan scan = columns.scan()
+                    .ledgers(min, max)
+                    .type(TransactionType.Payment)
+                    .result(TransactionEngineResult.tesSUCCESS)
+                    .account(alice)
+                    .currency(currency);
+            assertEquals(expectedCount, scan.count());
+            assertEquals(expectedCount, scan.rows().length);
+            assertEquals(0, expectedSum.compareTo(scan.sumAmount()));
+            assertEquals(12L * expectedCount, scan.sumFees());
+        }
+    }
+
+    @Test
+    public void testDictionaryEncoding() throws Exception {
+        ArrayList<TransactionResult> history = history(100);
+        TxColumns columns = columns(history);
+
+        assertEquals(3, columns.accounts.length);
+        for (int row = 0; row < history.size(); row++) {
+            TransactionResult tr = history.get(row);
+            assertEquals(tr.initiatingAccount(), columns.account(columns.account[row]));
+            assertEquals(tr.transaction.get(AccountID.Destination), columns.account(columns.destination[row]));
+            Amount amount = tr.transaction.get(Amount.Amount);
+            if (amount == null) {
+                assertEquals(TxColumns.NONE, columns.currency[row]);
+            } else {
+                assertEquals(0, amount.value().compareTo(columns.amount(row)));
+                if (!amount.isNative) {
+                    assertEquals("USD", columns.currencies[columns.currency[row]]);
+                    assertEquals(issuer, columns.account(columns.issuer[row]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+        TxColumns columns = columns(history(500));
+
+        // An account in no row matches nothing
+        assertEquals(0, columns.scan().account(AccountID.fromAddress("rrrrrrrrrrrrrrrrrrrrBZbvji")).count());
+        assertEquals(0, columns.scan().currency("EUR").count());
+
+        try {
+            columns.scan().type(TransactionType.Payment).sumAmount();
+            fail("Expected mixed currencies to be refused");
+        } catch (IllegalStateException expected) {
+        }
+
+        int accountSets = columns.scan().type(TransactionType.AccountSet).count();
+        int noDestination = columns.scan().where(new TxColumns.RowFilter() {
+            @Override
+            public boolean accept(TxColumns columns, int row) {
+                return columns.destination[row] == TxColumns.NONE;
+            }
+        }).count();
+        assertEquals(accountSets, noDestination);
+        assertEquals(500, columns.scan().count());
+    }
+}
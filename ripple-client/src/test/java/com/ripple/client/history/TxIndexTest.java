@@ -0,0 +1,161 @@
+package com.ripple.client.history;
+
+import com.ripple.core.enums.TransactionType;
+import com.ripple.core.known.tx.Transaction;
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.Amount;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.core.types.uint.UInt32;
+import com.ripple.encodings.common.B16;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static com.ripple.client.transactions.TransactionMessage.TransactionResultTest.META;
+import static junit.framework.TestCase.*;
+
+public class TxIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final AccountID alice = AccountID.fromAddress("rHb9CJAWyB4rj91VRWn96DkukG4bwdtyTh"),
+                           bob = AccountID.fromAddress("rP1coskQzayaQ9geMdJgAV5f3tNZcHghzH");
+    static final byte[] meta = B16.decode(META);
+
+    static byte[] payment(AccountID from, long sequence) {
+        Transaction tx = new Transaction(0, TransactionType.Payment);
+        tx.put(AccountID.Account, from);
+        tx.put(AccountID.Destination, from == alice ? bob : alice);
+        tx.put(Amount.Amount, Amount.fromDropString("1000"));
+        tx.put(Amount.Fee, Amount.fromDropString("12"));
+        tx.put(UInt32.Sequence, new UInt32(sequence));
+        return tx.toWireBytes();
+    }
+
+    static AccountID from(int i) {
+        return i % 2 == 0 ? alice : bob;
+    }
+
+    File archive, byHashFile, bySequenceFile;
+
+    void write(int from, int to, boolean indexed) throws Exception {
+        TxIndex byHash = indexed ? TxIndex.open(byHashFile) : null,
+                bySequence = indexed ? TxIndex.open(bySequenceFile) : null;
+        TxArchiveWriter writer = new TxArchiveWriter(archive, byHash, bySequence);
+        for (int i = from; i < to; i++) {
+            byte[] tx = payment(from(i), i + 1);
+            writer.append(1000 + i, Hash256.transactionID(tx), tx, meta);
+        }
+        writer.close();
+        if (indexed) {
+            byHash.close();
+            bySequence.close();
+        }
+    }
+
+    void assertFindsAll(int n) throws Exception {
+        TxArchive opened = TxArchive.open(archive);
+        TxIndex byHash = TxIndex.openReadOnly(byHashFile), bySequence = TxIndex.openReadOnly(bySequenceFile);
+        try {
+            assertEquals(n, byHash.size());
+            assertEquals(n, bySequence.size());
+            for (int i = 0; i < n; i++) {
+                Hash256 hash = Hash256.transactionID(payment(from(i), i + 1));
+                TxArchive.Record record = opened.find(byHash, hash);
+                assertNotNull("Finds " + i, record);
+                assertEquals(1000 + i, record.ledgerIndex);
+
+                record = opened.find(bySequence, from(i), i + 1);
+                assertNotNull("Finds " + i + " by sequence", record);
+                assertEquals(hash, record.hash);
+            }
+            assertNull(opened.find(byHash, Hash256.transactionID(payment(alice, n + 1))));
+            assertNull(opened.find(bySequence, alice, 0));
+            // Only even sequences are bob's
+            assertNull(opened.find(bySequence, bob, 1));
+        } finally {
+            byHash.close();
+            bySequence.close();
+            opened.close();
+        }
+    }
+
+    void files() {
+        archive = new File(folder.getRoot(), "txs.archive");
+        byHashFile = new File(folder.getRoot(), "txs.by-hash");
+        bySequenceFile = new File(folder.getRoot(), "txs.by-sequence");
+    }
+
+    @Test
+    public void testIndexesAsAppendedAndGrows() throws Exception {
+        files();
+        write(0, 3000, true);
+        assertFindsAll(3000);
+    }
+
+    @Test
+    public void testCatchesUpOnRecordsAppendedUnindexed() throws Exception {
+        files();
+        write(0, 100, true);
+        write(100, 250, false);
+        write(250, 300, true);
+        assertFindsAll(300);
+    }
+
+    @Test
+    public void testTruncatesRecordsAndTheirEntries() throws Exception {
+        files();
+        write(0, 20, true);
+        TxIndex byHash = TxIndex.open(byHashFile), bySequence = TxIndex.open(bySequenceFile);
+        TxArchiveWriter writer = new TxArchiveWriter(archive, byHash, bySequence);
+        writer.truncate(12);
+        assertEquals(12, writer.size());
+        writer.close();
+        byHash.close();
+        bySequence.close();
+        assertFindsAll(12);
+
+        write(12, 30, true);
+        assertFindsAll(30);
+    }
+
+    @Test
+    public void testIgnoresOffsetsThatArentRecords() throws Exception {
+        files();
+        write(0, 10, true);
+        Hash256 hash = Hash256.transactionID(payment(alice, 99));
+        TxIndex byHash = TxIndex.open(byHashFile);
+        byHash.put(hash, 9);
+        byHash.close();
+
+        TxArchive opened = TxArchive.open(archive);
+        byHash = TxIndex.openReadOnly(byHashFile);
+        try {
+            assertEquals(1, byHash.get(hash).length);
+            assertNull(opened.find(byHash, hash));
+        } finally {
+            byHash.close();
+            opened.close();
+        }
+    }
+
+    @Test
+    public void testPutIsIdempotent() throws Exception {
+        TxIndex index = TxIndex.open(new File(folder.getRoot(), "index"));
+        try {
+            Hash256 hash = Hash256.transactionID(payment(alice, 1));
+            index.put(hash, 8);
+            index.put(hash, 8);
+            index.put(hash, 100);
+            assertEquals(2, index.size());
+            long[] offsets = index.get(hash);
+            assertEquals(2, offsets.length);
+            assertEquals(8, offsets[0]);
+            assertEquals(100, offsets[1]);
+        } finally {
+            index.close();
+        }
+    }
+}
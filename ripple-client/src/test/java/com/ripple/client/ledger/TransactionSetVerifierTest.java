@@ -0,0 +1,65 @@
+package com.ripple.client.ledger;
+
+import com.ripple.core.types.hash.Hash256;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class TransactionSetVerifierTest {
+    static final String TX1 = "120007220000000024000195F964400000170A53AC2065D5460561EC9DE000000000000000000000000000494C53000000000092D705968936C419CE614BF264B5EEB1CEA47FF468400000000000000A7321028472865AF4CB32AA285834B57576B7290AA8C31B459047DB27E16F418D6A71667447304502202ABE08D5E78D1E74A4C18F2714F64E87B8BD57444AFA5733109EB3C077077520022100DB335EE97386E4C0591CAC024D50E9230D8F171EEB901B5E5E4BD6D1E0AEF98C811439408A69F0895E62149CFCC006FB89FA7D1E6E5D";
+    static final String TX1_META = "201C00000000F8E311006F563596CE72C902BAFAAB56CC486ACAF9B4AFC67CF7CADBB81A4AA9CBDC8C5CB1AAE824000195F934000000000000000E501062A3338CAF2E1BEE510FC33DE1863C56948E962CCE173CA55C14BE8A20D7F00064400000170A53AC2065D5460561EC9DE000000000000000000000000000494C53000000000092D705968936C419CE614BF264B5EEB1CEA47FF4811439408A69F0895E62149CFCC006FB89FA7D1E6E5DE1E1E31100645662A3338CAF2E1BEE510FC33DE1863C56948E962CCE173CA55C14BE8A20D7F000E8365C14BE8A20D7F0005862A3338CAF2E1BEE510FC33DE1863C56948E962CCE173CA55C14BE8A20D7F0000311000000000000000000000000494C530000000000041192D705968936C419CE614BF264B5EEB1CEA47FF4E1E1E511006456AB03F8AA02FFA4635E7CE2850416AEC5542910A2B4DBE93C318FEB08375E0DB5E7220000000032000000000000000058801C5AFB5862D4666D0DF8E5BE1385DC9B421ED09A4269542A07BC0267584B64821439408A69F0895E62149CFCC006FB89FA7D1E6E5DE1E1E511006125003136FA55DE15F43F4A73C4F6CB1C334D9E47BDE84467C0902796BB81D4924885D1C11E6D56CF23A37E39A571A0F22EC3E97EB0169936B520C3088963F16C5EE4AC59130B1BE624000195F92D000000086240000018E16CCA08E1E7220000000024000195FA2D000000096240000018E16CC9FE811439408A69F0895E62149CFCC006FB89FA7D1E6E5DE1E1F1031000";
+    static final String TX2 = "12000822000000002400113FCF201900113F3268400000000000000A73210256C64F0378DCCCB4E0224B36F7ED1E5586455FF105F760245ADB35A8B03A25FD7447304502200A8BED7B8955F45633BA4E9212CE386C397E32ACFF6ECE08EB74B5C86200C606022100EF62131FF50B288244D9AB6B3D18BACD44924D2BAEEF55E1B3232B7E033A27918114E0E893E991B2142E74486F7D3331CF711EA84213";
+    static final String TX2_META = "201C00000001F8E511006125003136FA55610A3178D0A69167DF32E28990FD60D50F5610A5CF5C832CBF0C7FCC0913516B5656091AD066271ED03B106812AD376D48F126803665E3ECBFDBBB7A3FFEB474B2E62400113FCF2D000000456240000000768913E4E1E722000000002400113FD02D000000446240000000768913DA8114E0E893E991B2142E74486F7D3331CF711EA84213E1E1E5110064565943CB2C05B28743AADF0AE47E9C57E9C15BD23284CF6DA9561993D688DA919AE7220000000036561993D688DA919A585943CB2C05B28743AADF0AE47E9C57E9C15BD23284CF6DA9561993D688DA919A01110000000000000000000000004C54430000000000021192D705968936C419CE614BF264B5EEB1CEA47FF403110000000000000000000000004254430000000000041192D705968936C419CE614BF264B5EEB1CEA47FF4E1E1E411006F5678812E6E2AB80D5F291F8033D7BC23F0A6E4EA80C998BFF38E80E2A09D2C4D93E722000000002400113F32250031361633000000000000000034000000000000329255C7D1671589B1B4AB1071E38299B8338632DAD19A7D0F8D28388F40845AF0BCC550105943CB2C05B28743AADF0AE47E9C57E9C15BD23284CF6DA9561993D688DA919A64D4C7A75562493C000000000000000000000000004C5443000000000092D705968936C419CE614BF264B5EEB1CEA47FF465D44AA183A77ECF80000000000000000000000000425443000000000092D705968936C419CE614BF264B5EEB1CEA47FF48114E0E893E991B2142E74486F7D3331CF711EA84213E1E1E511006456F78A0FFA69890F27C2A79C495E1CEB187EE8E677E3FDFA5AD0B8FCFC6E644E38E72200000000310000000000003293320000000000000000582114A41BB356843CE99B2858892C8F1FEF634B09F09AF2EB3E8C9AA7FD0E3A1A8214E0E893E991B2142E74486F7D3331CF711EA84213E1E1F1031000";
+    static final String TRANSACTION_HASH = "7597469704639256442E505C2291DEDF8AEC835C974BC98545D490F462343178";
+
+    private JSONObject binaryLedger(String transactionHash) throws Exception {
+        JSONArray transactions = new JSONArray();
+        transactions.put(new JSONObject().put("tx_blob", TX1).put("meta", TX1_META));
+        transactions.put(new JSONObject().put("tx_blob", TX2).put("meta", TX2_META));
+
+        JSONObject ledger = new JSONObject();
+        ledger.put("ledger_index", "3225338");
+        ledger.put("transaction_hash", transactionHash);
+        ledger.put("transactions", transactions);
+        return new JSONObject().put("result", new JSONObject().put("ledger", ledger));
+    }
+
+    @Test
+    public void testVerifyBinaryLedger() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        int threshold = TransactionSetVerifier.PARALLEL_THRESHOLD;
+
+        try {
+            TransactionSetVerifier verifier = new TransactionSetVerifier(executor);
+            TransactionSetVerifier.Result sequential = verifier.verify(binaryLedger(TRANSACTION_HASH));
+            TransactionSetVerifier.PARALLEL_THRESHOLD = 0;
+            TransactionSetVerifier.Result parallel = verifier.verify(binaryLedger(TRANSACTION_HASH));
+
+            assertTrue(sequential.verified());
+            assertTrue(parallel.verified());
+            assertEquals(3225338, parallel.ledgerIndex);
+            assertEquals(2, parallel.transactionIDs.size());
+            assertTrue(parallel.transactionIDs.contains(Hash256.translate.fromString(
+                    "A197ECCF23E55193CBE292F7A373F0DE0F521D4DCAE32484E20EC634C1ACE528")));
+        } finally {
+            TransactionSetVerifier.PARALLEL_THRESHOLD = threshold;
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDetectsTamperedSet() throws Exception {
+        String wrong = TRANSACTION_HASH.replace('7', '8');
+        TransactionSetVerifier verifier = new TransactionSetVerifier(null);
+        TransactionSetVerifier.Result result = verifier.verify(binaryLedger(wrong));
+        assertFalse(result.verified());
+        assertEquals(Hash256.translate.fromString(TRANSACTION_HASH), result.computed);
+    }
+}
@@ -0,0 +1,111 @@
+package com.ripple.client.pubsub;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+public class PublisherTest {
+    public static abstract class events<T> extends Publisher.Callback<T> {}
+    public abstract static class OnValue extends events<Integer> {}
+
+    static class Counter extends OnValue {
+        int calls, sum;
+
+        @Override
+        public void called(Integer value) {
+            calls++;
+            sum += value;
+        }
+    }
+
+    @Test
+    public void testOnAndRemove() throws Exception {
+        Publisher<events> publisher = new Publisher<events>();
+        Counter counter = new Counter();
+        assertEquals(0, publisher.emit(OnValue.class, 1));
+
+        publisher.on(OnValue.class, counter);
+        publisher.emit(OnValue.class, 1);
+        publisher.emit(OnValue.class, 2);
+        publisher.removeListener(OnValue.class, counter);
+        publisher.emit(OnValue.class, 4);
+
+        assertEquals(2, counter.calls);
+        assertEquals(3, counter.sum);
+    }
+
+    @Test
+    public void testOnceFiresOnceEvenReentrantly() throws Exception {
+        final Publisher<events> publisher = new Publisher<events>();
+        final Counter counter = new Counter();
+
+        publisher.once(OnValue.class, new OnValue() {
+            @Override
+            public void called(Integer value) {
+                counter.called(value);
+                // Emitting again from within the callback mustn't refire it
+                publisher.emit(OnValue.class, 10);
+            }
+        });
+        publisher.emit(OnValue.class, 1);
+        publisher.emit(OnValue.class, 2);
+
+        assertEquals(1, counter.calls);
+        assertEquals(1, counter.sum);
+    }
+
+    @Test
+    public void testManyOncesAreSweptAndOthersKept() throws Exception {
+        Publisher<events> publisher = new Publisher<events>();
+        Counter persistent = new Counter(), once = new Counter();
+        publisher.on(OnValue.class, persistent);
+
+        for (int i = 0; i < 1000; i++) {
+            publisher.once(OnValue.class, once);
+            publisher.emit(OnValue.class, 1);
+        }
+        assertEquals(1000, persistent.calls);
+        assertEquals(1000, once.calls);
+        // Only the persistent listener remains
+        assertEquals(1, publisher.emit(OnValue.class, 1));
+    }
+
+    @Test
+    public void testFiredOncesArentCountedBeforeBeingSwept() throws Exception {
+        Publisher<events> publisher = new Publisher<events>();
+        Counter[] persistent = {new Counter(), new Counter(), new Counter()};
+        for (Counter counter : persistent) {
+            publisher.on(OnValue.class, counter);
+        }
+        publisher.once(OnValue.class, new Counter());
+
+        assertEquals(4, publisher.emit(OnValue.class, 1));
+        // The fired once is still in the array, but isn't called
+        assertEquals(3, publisher.emit(OnValue.class, 1));
+
+        for (Counter counter : persistent) {
+            publisher.removeListener(OnValue.class, counter);
+        }
+        assertFalse(publisher.hasListeners(OnValue.class));
+        assertEquals(0, publisher.emit(OnValue.class, 1));
+    }
+
+    @Test
+    public void testRemovingDuringEmitDoesntSkipOthers() throws Exception {
+        final Publisher<events> publisher = new Publisher<events>();
+        final Counter second = new Counter();
+
+        publisher.on(OnValue.class, new OnValue() {
+            @Override
+            public void called(Integer value) {
+                publisher.removeListener(OnValue.class, this);
+            }
+        });
+        publisher.on(OnValue.class, second);
+
+        publisher.emit(OnValue.class, 1);
+        publisher.emit(OnValue.class, 1);
+        assertEquals(2, second.calls);
+    }
+}
@@ -0,0 +1,78 @@
+package com.ripple.client.transactions;
+
+import com.ripple.core.enums.TransactionType;
+import com.ripple.core.types.AccountID;
+import com.ripple.core.types.Amount;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.core.types.uint.UInt32;
+import com.ripple.crypto.ecdsa.IKeyPair;
+import com.ripple.encodings.common.B16;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class BulkSignerTest {
+    final AccountID niqwit1 = AccountID.fromSeedString("snSq7dKr5v39hJ8Enb45RpXFJL25h");
+
+    private ArrayList<ManagedTransaction> payments(int n) {
+        ArrayList<ManagedTransaction> payments = new ArrayList<ManagedTransaction>();
+        for (int i = 0; i < n; i++) {
+            ManagedTransaction transaction = new ManagedTransaction(TransactionType.Payment, i);
+            transaction.put(AccountID.Account, niqwit1);
+            transaction.put(AccountID.Destination, "rP1coskQzayaQ9geMdJgAV5f3tNZcHghzH");
+            transaction.put(Amount.Amount, String.valueOf(i + 1));
+            transaction.put(Amount.Fee, "12");
+            transaction.put(UInt32.Sequence, new UInt32(i + 1));
+            payments.add(transaction);
+        }
+        return payments;
+    }
+
+    @Test
+    public void testMatchesSerialPrepareInOrder() throws Exception {
+        IKeyPair keyPair = niqwit1.getKeyPair();
+        ArrayList<ManagedTransaction> serial = payments(100);
+        for (ManagedTransaction transaction : serial) {
+            transaction.prepare(keyPair, Amount.fromString("12"), transaction.sequence());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<BulkSigner.Signed> signed = new BulkSigner(executor).sign(payments(100), keyPair);
+            assertEquals(serial.size(), signed.size());
+
+            for (int i = 0; i < serial.size(); i++) {
+                BulkSigner.Signed result = signed.get(i);
+                assertEquals(B16.toString(serial.get(i).tx_blob), B16.toString(result.tx_blob));
+                assertEquals(serial.get(i).hash, result.hash);
+                assertEquals(Hash256.transactionID(result.tx_blob), result.hash);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSignAsyncMatchesSign() throws Exception {
+        IKeyPair keyPair = niqwit1.getKeyPair();
+        List<BulkSigner.Signed> expected = new BulkSigner(null).sign(payments(40), keyPair);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<BulkSigner.Signed> signed = new BulkSigner(executor).signAsync(payments(40), keyPair)
+                                                                    .get(5, TimeUnit.SECONDS);
+            assertEquals(expected.size(), signed.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).hash, signed.get(i).hash);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
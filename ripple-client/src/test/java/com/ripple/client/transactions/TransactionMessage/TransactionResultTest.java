@@ -0,0 +1,57 @@
+package com.ripple.client.transactions.TransactionMessage;
+
+import com.ripple.core.enums.TransactionEngineResult;
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.encodings.common.B16;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class TransactionResultTest {
+    public static final String TX = "12000822000000002400113FCF201900113F3268400000000000000A73210256C64F0378DCCCB4E0224B36F7ED1E5586455FF105F760245ADB35A8B03A25FD7447304502200A8BED7B8955F45633BA4E9212CE386C397E32ACFF6ECE08EB74B5C86200C606022100EF62131FF50B288244D9AB6B3D18BACD44924D2BAEEF55E1B3232B7E033A27918114E0E893E991B2142E74486F7D3331CF711EA84213";
+    public static final String META = "201C00000001F8E511006125003136FA55610A3178D0A69167DF32E28990FD60D50F5610A5CF5C832CBF0C7FCC0913516B5656091AD066271ED03B106812AD376D48F126803665E3ECBFDBBB7A3FFEB474B2E62400113FCF2D000000456240000000768913E4E1E722000000002400113FD02D000000446240000000768913DA8114E0E893E991B2142E74486F7D3331CF711EA84213E1E1E5110064565943CB2C05B28743AADF0AE47E9C57E9C15BD23284CF6DA9561993D688DA919AE7220000000036561993D688DA919A585943CB2C05B28743AADF0AE47E9C57E9C15BD23284CF6DA9561993D688DA919A01110000000000000000000000004C54430000000000021192D705968936C419CE614BF264B5EEB1CEA47FF403110000000000000000000000004254430000000000041192D705968936C419CE614BF264B5EEB1CEA47FF4E1E1E411006F5678812E6E2AB80D5F291F8033D7BC23F0A6E4EA80C998BFF38E80E2A09D2C4D93E722000000002400113F32250031361633000000000000000034000000000000329255C7D1671589B1B4AB1071E38299B8338632DAD19A7D0F8D28388F40845AF0BCC550105943CB2C05B28743AADF0AE47E9C57E9C15BD23284CF6DA9561993D688DA919A64D4C7A75562493C000000000000000000000000004C5443000000000092D705968936C419CE614BF264B5EEB1CEA47FF465D44AA183A77ECF80000000000000000000000000425443000000000092D705968936C419CE614BF264B5EEB1CEA47FF48114E0E893E991B2142E74486F7D3331CF711EA84213E1E1E511006456F78A0FFA69890F27C2A79C495E1CEB187EE8E677E3FDFA5AD0B8FCFC6E644E38E72200000000310000000000003293320000000000000000582114A41BB356843CE99B2858892C8F1FEF634B09F09AF2EB3E8C9AA7FD0E3A1A8214E0E893E991B2142E74486F7D3331CF711EA84213E1E1F1031000";
+
+    private JSONObject notification() throws Exception {
+        return new JSONObject()
+                .put("type", "transaction")
+                .put("validated", true)
+                .put("engine_result", "tesSUCCESS")
+                .put("ledger_hash", "95B5F9CA0AEAD59CBBA5D14F0F248472255F241DEF3CF881CECA3CA4B01FC178")
+                .put("ledger_index", 3225338);
+    }
+
+    @Test
+    public void testBinaryNotification() throws Exception {
+        JSONObject json = notification().put("transaction", TX).put("meta", META);
+        TransactionResult result = new TransactionResult(json, TransactionResult.Source.transaction_subscription_notification);
+
+        assertEquals(Hash256.transactionID(B16.decode(TX)), result.hash);
+        assertEquals(TransactionEngineResult.tesSUCCESS, result.engineResult);
+        assertEquals(3225338, result.ledgerIndex.longValue());
+        assertNotNull(result.modifiedRoots());
+        assertTrue(result.modifiedRoots().containsKey(result.initiatingAccount()));
+    }
+
+    @Test
+    public void testBinaryMatchesJSON() throws Exception {
+        STObject tx = STObject.translate.fromWireHex(TX);
+        STObject meta = STObject.translate.fromWireHex(META);
+
+        JSONObject txJSON = STObject.translate.toJSONObject(tx);
+        txJSON.put("hash", Hash256.transactionID(B16.decode(TX)).toString());
+        JSONObject json = notification()
+                .put("transaction", txJSON)
+                .put("meta", STObject.translate.toJSONObject(meta));
+
+        TransactionResult fromJSON = new TransactionResult(json, TransactionResult.Source.transaction_subscription_notification);
+        TransactionResult fromBinary = new TransactionResult(notification().put("tx_blob", TX).put("meta", META),
+                TransactionResult.Source.transaction_subscription_notification);
+
+        assertEquals(fromJSON.hash, fromBinary.hash);
+        assertEquals(fromJSON.modifiedRoots().keySet(), fromBinary.modifiedRoots().keySet());
+    }
+}
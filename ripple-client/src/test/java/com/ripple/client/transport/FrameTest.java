@@ -0,0 +1,52 @@
+package com.ripple.client.transport;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static junit.framework.TestCase.*;
+
+public class FrameTest {
+    @Test
+    public void testRoutingKeys() throws Exception {
+        Frame frame = Frame.parse("{ \"result\" : {\"a\": [1, {\"b\": \"}]\\\"{\"}], \"id\": 99},\n" +
+                                  "  \"id\": 7, \"status\": \"success\", \"type\":\"response\" }");
+        assertEquals("response", frame.type());
+        assertEquals("success", frame.status());
+        assertEquals(7, frame.id());
+        assertFalse(frame.parsed());
+
+        JSONObject result = frame.object("result");
+        assertEquals(99, result.getInt("id"));
+        assertEquals("}]\"{", result.getJSONArray("a").getJSONObject(1).getString("b"));
+        // Only the subtree was parsed
+        assertFalse(frame.parsed());
+        assertTrue(frame.has("status"));
+        assertFalse(frame.has("error"));
+        assertNull(frame.value("error"));
+    }
+
+    @Test
+    public void testMissingAndNonIntId() throws Exception {
+        assertEquals(-1, Frame.parse("{\"type\":\"ledgerClosed\"}").id());
+        assertEquals(-1, Frame.parse("{\"id\":\"abc\",\"type\":\"response\"}").id());
+        assertNull(Frame.parse("{}").type());
+    }
+
+    @Test
+    public void testEscapedType() throws Exception {
+        assertEquals("a\"b", Frame.parse("{\"type\":\"a\\\"b\"}").type());
+    }
+
+    @Test
+    public void testManyKeysFallBackToTheWholeTree() throws Exception {
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < 40; i++) {
+            json.put("key" + i, i);
+        }
+        Frame frame = Frame.parse(json.toString());
+        for (int i = 0; i < 40; i++) {
+            assertTrue(frame.has("key" + i));
+            assertEquals(i, frame.value("key" + i));
+        }
+    }
+}
@@ -50,6 +50,7 @@ public class TxFormat extends Format {
 
         put(Field.Flags,               Requirement.OPTIONAL);
         put(Field.SourceTag,           Requirement.OPTIONAL);
+        put(Field.LastLedgerSequence,  Requirement.OPTIONAL);
         put(Field.PreviousTxnID,       Requirement.OPTIONAL);
         put(Field.OperationLimit,      Requirement.OPTIONAL);
         put(Field.TxnSignature,        Requirement.OPTIONAL);
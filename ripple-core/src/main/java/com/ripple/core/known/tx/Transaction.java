@@ -3,6 +3,8 @@ package com.ripple.core.known.tx;
 import com.ripple.core.enums.TransactionType;
 import com.ripple.core.fields.Field;
 import com.ripple.core.formats.TxFormat;
+import com.ripple.core.serialized.BinarySerializer;
+import com.ripple.core.serialized.BytesTree;
 import com.ripple.core.types.Amount;
 import com.ripple.core.types.STObject;
 import com.ripple.core.types.VariableLength;
@@ -29,22 +31,59 @@ public class Transaction extends STObject {
         return get(UInt32.Sequence);
     }
 
+    /**
+     * Signs the transaction, setting `tx_blob` and `hash`.
+     *
+     * The signing fields are serialized once, split either side of where
+     * TxnSignature sorts, then the signing hash is fed both halves and the
+     * signature field is spliced between them to give `tx_blob`.
+     */
     public void prepare(IKeyPair keyPair, Amount fee, UInt32 Sequence) {
-        remove(Field.TxnSignature);
-
         put(UInt32.Sequence, Sequence);
         put(Amount.Fee, fee);
+        sign(keyPair);
+    }
+
+    /**
+     * As per prepare, for a transaction with Sequence and Fee already set.
+     */
+    public void sign(IKeyPair keyPair) {
+        remove(Field.TxnSignature);
         put(VariableLength.SigningPubKey, keyPair.pubBytes());
 
-        byte[] signingBlob = STObject.translate.toWireBytes(this);
-        Hash256 signingHash = Hash256.signingHash(signingBlob);
-        byte[] signature = keyPair.sign(signingHash.bytes());
+        BytesTree beforeTree = new BytesTree(), afterTree = new BytesTree();
+        BinarySerializer before = new BinarySerializer(beforeTree),
+                          after = new BinarySerializer(afterTree);
+
+        for (Field field : this) {
+            if (field.isSigningField()) {
+                BinarySerializer to = Field.comparator.compare(field, Field.TxnSignature) < 0 ? before : after;
+                to.add(field, get(field), STObject.Translators.forField(field));
+            }
+        }
+
+        byte[] head = before.bytes(), tail = after.bytes();
+
+        Hash256.HalfSha512 signing = new Hash256.HalfSha512();
+        signing.update(Hash256.HASH_PREFIX_TX_SIGN);
+        signing.update(head);
+        signing.update(tail);
+        byte[] signature = keyPair.sign(signing.finish().bytes());
 
         // This is included in the final hash
         put(VariableLength.TxnSignature, signature);
-        put(VariableLength.SigningPubKey, keyPair.pubBytes());
 
-        tx_blob = STObject.translate.toWireBytes(this);
+        byte[] header = BinarySerializer.fieldHeader(Field.TxnSignature);
+        byte[] vl = BinarySerializer.encodeVL(signature.length);
+
+        byte[] blob = new byte[head.length + header.length + vl.length + signature.length + tail.length];
+        int pos = 0;
+        for (byte[] part : new byte[][]{head, header, vl, signature, tail}) {
+            System.arraycopy(part, 0, blob, pos, part.length);
+            pos += part.length;
+        }
+
+        tx_blob = blob;
         hash = Hash256.transactionID(tx_blob);
     }
 }
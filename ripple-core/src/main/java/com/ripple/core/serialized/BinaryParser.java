@@ -3,19 +3,34 @@ package com.ripple.core.serialized;
 import com.ripple.core.fields.Field;
 import com.ripple.encodings.common.B16;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class should parse headers and object markers
  */
 public class BinaryParser {
     byte[] bytes;
+    // Instead of `bytes`, for buffers with no accessible array
+    private final ByteBuffer buffer;
     private int cursor = 0;
     private final int size;
 
     public BinaryParser(byte[] bytes) {
         size = bytes.length;
         this.bytes = bytes;
+        this.buffer = null;
     }
 
+    /**
+     * Parses the remaining bytes of `buffer` where they are, so a slice of a
+     * memory mapped file needn't be copied to the heap first. The position of
+     * `buffer` itself is left alone.
+     */
+    public BinaryParser(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+        this.size = this.buffer.remaining();
+        this.bytes = null;
+    }
 
 
     public BinaryParser(String hex) {
@@ -26,7 +41,7 @@ public class BinaryParser {
         return read(n, false);
     }
     public byte peekOne() {
-        return bytes[cursor];
+        return bytes != null ? bytes[cursor] : buffer.get(cursor);
     }
     public byte[] read(int n) {
         return read(n, true);
@@ -77,11 +92,11 @@ public class BinaryParser {
     }
 
     public byte readOne() {
-        return bytes[cursor++];
+        return bytes != null ? bytes[cursor++] : buffer.get(cursor++);
     }
     private byte[] read(int n, boolean advance) {
         byte[] ret = new byte[n];
-        System.arraycopy(bytes, cursor, ret, 0, n);
+        copy(ret, 0, n);
         if (advance) {
             cursor += n;
         }
@@ -89,10 +104,23 @@ public class BinaryParser {
     }
 
     public void read(int n, byte[] to, int offset) {
-        System.arraycopy(bytes, cursor, to, offset, n);
+        copy(to, offset, n);
         cursor += n;
     }
 
+    private void copy(byte[] to, int offset, int n) {
+        if (bytes != null) {
+            System.arraycopy(bytes, cursor, to, offset, n);
+        } else {
+            if (cursor + n > size) {
+                throw new ArrayIndexOutOfBoundsException(cursor + n);
+            }
+            // The slice is ours, so its position is just scratch
+            buffer.position(cursor);
+            buffer.get(to, offset, n);
+        }
+    }
+
     public int getSize() {
         return size;
     }
@@ -13,7 +13,8 @@ import com.ripple.crypto.ecdsa.Seed;
 import com.ripple.utils.Utils;
 import org.bouncycastle.util.encoders.Hex;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static com.ripple.config.Config.getB58IdentiferCodecs;
@@ -150,15 +151,32 @@ public class AccountID implements SerializedType, Comparable<AccountID> {
         }
     }
 
-    static public Map<String, AccountID> accounts = new HashMap<String, AccountID>();
+    private static final int MAX_CACHED_PASS_PHRASES = 1024;
+
+    // A synchronized LRU of derived accounts; `root` is never evicted
+    static public Map<String, AccountID> accounts = Collections.synchronizedMap(
+            new LinkedHashMap<String, AccountID>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, AccountID> eldest) {
+                    return size() > MAX_CACHED_PASS_PHRASES;
+                }
+            });
+
+    private static final AccountID root;
 
     public static AccountID accountForPassPhrase(String value) {
+        if (value.equals("root")) {
+            return root;
+        }
 
-        if (accounts.get(value) == null) {
-            accounts.put(value, accountForPass(value));
+        AccountID account = accounts.get(value);
+        if (account == null) {
+            // Derived outside the lock, a race just means deriving twice
+            account = accountForPass(value);
+            accounts.put(value, account);
         }
 
-        return accounts.get(value);
+        return account;
     }
 
     private static AccountID accountForPass(String value) {
@@ -166,7 +184,7 @@ public class AccountID implements SerializedType, Comparable<AccountID> {
     }
 
     static {
-        accounts.put("root", accountForPass("masterpassphrase"));
+        root = accountForPass("masterpassphrase");
     }
 
     @Override
@@ -464,6 +464,13 @@ public class Amount extends Number implements SerializedType, Comparable<Amount>
         }
     }
 
+    /**
+     * @return the value, exactly, in drops when native
+     */
+    public BigDecimal value() {
+        return value;
+    }
+
     /**
      * @return A String containing the value as a decimal number (in XRP scale when native)
      *
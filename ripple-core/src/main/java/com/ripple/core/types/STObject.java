@@ -194,15 +194,25 @@ public class STObject implements SerializedType, Iterable<Field> {
 
         @Override
         public void toBytesTree(STObject obj, BytesTree to) {
+            toBytesTree(obj, to, false);
+        }
+
+        public void toBytesTree(STObject obj, BytesTree to, boolean signingFieldsOnly) {
             BinarySerializer serializer = new BinarySerializer(to);
 
             for (Field field : obj) {
-                if (field.isSerialized()) {
+                if (signingFieldsOnly ? field.isSigningField() : field.isSerialized()) {
                     SerializedType value = obj.fields.get(field);
                     serializer.add(field, value, Translators.forField(field));
                 }
             }
         }
+
+        public byte[] toSigningBytes(STObject obj) {
+            BytesTree to = new BytesTree();
+            toBytesTree(obj, to, true);
+            return to.bytes();
+        }
     }
 
     public int size() {
@@ -17,6 +17,10 @@ public class VariableLength implements SerializedType {
 
     byte[] buffer;
 
+    public byte[] bytes() {
+        return buffer;
+    }
+
     static class Translator extends TypeTranslator<VariableLength> {
         @Override
         public VariableLength fromParser(BinaryParser parser, Integer hint) {
@@ -55,16 +55,34 @@ public class Hash256 extends HASH{
     }
 
     public static class HalfSha512 {
+        // Never updated, only cloned, which is much cheaper than a provider lookup
+        private static volatile MessageDigest prototype;
+
         MessageDigest messageDigest;
 
         public HalfSha512() {
             try {
-                messageDigest = MessageDigest.getInstance("SHA-512", "BC");
-            } catch (Exception e) {
+                messageDigest = (MessageDigest) prototype().clone();
+            } catch (CloneNotSupportedException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        // Looked up on first use, so a missing provider fails that call, not
+        // the class; racing callers at worst both look it up
+        private static MessageDigest prototype() {
+            MessageDigest digest = prototype;
+            if (digest == null) {
+                try {
+                    digest = MessageDigest.getInstance("SHA-512", "BC");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                prototype = digest;
+            }
+            return digest;
+        }
+
         public void update(byte[] bytes) {
             messageDigest.update(bytes);
         }
@@ -1,8 +1,55 @@
 package com.ripple.core.types.shamap;
 
+import com.ripple.core.types.hash.Hash256;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class ShaMap extends ShaMapInnerNode {
     public ShaMap() {
         super(0);
     }
+
+    /**
+     * Hashes each of the (up to 16) root branches as a separate task on the
+     * executor, then combines them as per {@link #hash()}.
+     */
+    public Hash256 hash(ExecutorService executor) {
+        if (empty()) {
+            return ZERO_256;
+        }
+        if (cachedHash != null) {
+            return cachedHash;
+        }
+
+        @SuppressWarnings("unchecked")
+        Future<Hash256>[] futures = (Future<Hash256>[]) new Future<?>[16];
+        for (int i = 0; i < 16; i++) {
+            final ShaMapNode node = branches[i];
+            if (node != null) {
+                futures[i] = executor.submit(new Callable<Hash256>() {
+                    @Override
+                    public Hash256 call() throws Exception {
+                        return node.hash();
+                    }
+                });
+            }
+        }
+
+        Hash256[] hashes = new Hash256[16];
+        try {
+            for (int i = 0; i < 16; i++) {
+                hashes[i] = futures[i] != null ? futures[i].get() : ZERO_256;
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        cachedHash = hashBranches(hashes);
+        return cachedHash;
+    }
 }
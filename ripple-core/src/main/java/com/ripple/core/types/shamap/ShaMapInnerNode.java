@@ -7,6 +7,8 @@ public class ShaMapInnerNode extends ShaMapNode {
     ShaMapNode[] branches;
     private int slotBits = 0;
     int depth;
+    // Invalidated on any mutation beneath this node, as all go via the root
+    Hash256 cachedHash;
 
     protected ShaMapInnerNode(int node_depth) {
         branches = new ShaMapNode[16];
@@ -18,29 +20,40 @@ public class ShaMapInnerNode extends ShaMapNode {
         if (empty()) {
             return ZERO_256;
         }
+        if (cachedHash != null) {
+            return cachedHash;
+        }
+
+        Hash256[] hashes = new Hash256[16];
+        for (int i = 0; i < 16; i++) {
+            ShaMapNode node = branches[i];
+            hashes[i] = node != null ? node.hash() : ZERO_256;
+        }
 
+        cachedHash = hashBranches(hashes);
+        return cachedHash;
+    }
+
+    protected static Hash256 hashBranches(Hash256[] hashes) {
         Hash256.HalfSha512 hasher = new Hash256.HalfSha512();
         hasher.update(Hash256.HASH_PREFIX_INNER_NODE);
 
-        for (ShaMapNode node : branches) {
-            if (node != null) {
-                Hash256 hash = node.hash();
-                hasher.update(hash);
-            }  else {
-                hasher.update(ZERO_256);
-            }
+        for (Hash256 hash : hashes) {
+            hasher.update(hash);
         }
 
         return hasher.finish();
     }
 
     protected void setNode(int slot, ShaMapNode node) {
+        cachedHash = null;
         slotBits = slotBits | (1 << slot);
         branches[slot] = node;
     }
 
     @SuppressWarnings("unused")
     protected void removeNode(int slot) {
+        cachedHash = null;
         branches[slot] = null;
         slotBits = slotBits & ~(1 << slot);
     }
@@ -50,6 +63,7 @@ public class ShaMapInnerNode extends ShaMapNode {
     }
 
     private void addLeaf(Hash256 id, NodeType nodeType, ShaMapLeafNode.Item blob, ShaMapLeafNode moved) {
+        cachedHash = null;
         int ix = id.nibblet(depth);
         ShaMapNode existing = branches[ix];
 
@@ -16,16 +16,22 @@ public class ShaMapLeafNode extends ShaMapNode {
             case tnTRANSACTION_NM:
                 return index;
             case tnTRANSACTION_MD:
-                Hash256.HalfSha512 half = new Hash256.HalfSha512();
-                half.update(Hash256.HASH_PREFIX_TX_NODE);
-                half.update(blob.bytes());
-                half.update(index);
-                return half.finish();
+                return prefixedHash(Hash256.HASH_PREFIX_TX_NODE);
+            case tnACCOUNT_STATE:
+                return prefixedHash(Hash256.HASH_PREFIX_LEAF_NODE);
             default:
-                throw new UnsupportedOperationException("Currently only support transaction leaf nodes");
+                throw new UnsupportedOperationException("Unsupported leaf node type: " + type);
         }
     }
 
+    private Hash256 prefixedHash(byte[] prefix) {
+        Hash256.HalfSha512 half = new Hash256.HalfSha512();
+        half.update(prefix);
+        half.update(blob.bytes());
+        half.update(index);
+        return half.finish();
+    }
+
     public ShaMapLeafNode(Hash256 index, NodeType type, Item blob) {
         this.index = index;
         this.type = type;
@@ -0,0 +1,314 @@
+package com.ripple.core.types.shamap;
+
+import com.ripple.core.types.hash.Hash256;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Persists a ShaMap as a stream of length prefixed nodes, each in rippled's
+ * node wire format (the node contents followed by a wire type byte), in
+ * depth first order.
+ *
+ *      header:  'S' 'M' 'A' 'P' version(1) root_hash(32)
+ *      node:    length(4) wire_node(length)
+ *
+ * Inner nodes with fewer than 12 branches use the compressed form of
+ * (hash, branch) pairs. Every node is hashed on load and checked against the
+ * hash its parent (or the header) expects, and the hashes are then cached on
+ * the rebuilt tree so it needn't be hashed again.
+ */
+public class ShaMapStore {
+    public static final byte[] MAGIC = new byte[]{'S', 'M', 'A', 'P'};
+    public static final byte VERSION = 1;
+
+    public static final byte WIRE_TRANSACTION = 0;
+    public static final byte WIRE_ACCOUNT_STATE = 1;
+    public static final byte WIRE_INNER = 2;
+    public static final byte WIRE_COMPRESSED_INNER = 3;
+    public static final byte WIRE_TRANSACTION_WITH_META = 4;
+
+    private static final int COMPRESS_BELOW = 12;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static void write(ShaMap map, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        buffer.put(map.hash().bytes());
+        writeNode(map, buffer, channel);
+        flush(buffer, channel);
+    }
+
+    /**
+     * Memory maps the file and rebuilds the tree from it.
+     */
+    public static ShaMap readMapped(FileChannel channel) throws IOException {
+        long size = channel.size() - channel.position();
+        if (size > Integer.MAX_VALUE) {
+            return read(channel);
+        }
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, channel.position(), size);
+        return read(new Input(mapped, null));
+    }
+
+    public static ShaMap read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        return read(new Input(buffer, channel));
+    }
+
+    private static ShaMap read(Input in) throws IOException {
+        if (!Arrays.equals(MAGIC, in.read(MAGIC.length))) {
+            throw new IllegalStateException("Not a ShaMap store");
+        }
+        byte version = in.read(1)[0];
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported ShaMap store version: " + version);
+        }
+        Hash256 rootHash = new Hash256(in.read(32));
+        return (ShaMap) readNode(in, 0, rootHash);
+    }
+
+    public static byte[] toWire(ShaMapNode node) {
+        if (node instanceof ShaMapInnerNode) {
+            return innerToWire((ShaMapInnerNode) node);
+        } else {
+            return leafToWire((ShaMapLeafNode) node);
+        }
+    }
+
+    private static byte[] innerToWire(ShaMapInnerNode inner) {
+        int branches = 0;
+        for (ShaMapNode node : inner.branches) {
+            if (node != null) branches++;
+        }
+
+        ByteBuffer wire;
+        if (branches < COMPRESS_BELOW) {
+            wire = ByteBuffer.allocate(branches * 33 + 1);
+            for (int i = 0; i < 16; i++) {
+                ShaMapNode node = inner.branches[i];
+                if (node != null) {
+                    wire.put(node.hash().bytes());
+                    wire.put((byte) i);
+                }
+            }
+            wire.put(WIRE_COMPRESSED_INNER);
+        } else {
+            wire = ByteBuffer.allocate(16 * 32 + 1);
+            for (ShaMapNode node : inner.branches) {
+                wire.put(node != null ? node.hash().bytes() : ShaMapInnerNode.ZERO_256.bytes());
+            }
+            wire.put(WIRE_INNER);
+        }
+        return wire.array();
+    }
+
+    private static byte[] leafToWire(ShaMapLeafNode leaf) {
+        byte[] blob = leaf.blob.bytes();
+
+        switch (leaf.type) {
+            case tnTRANSACTION_NM:
+                ByteBuffer tx = ByteBuffer.allocate(blob.length + 1);
+                tx.put(blob);
+                tx.put(WIRE_TRANSACTION);
+                return tx.array();
+            case tnTRANSACTION_MD:
+            case tnACCOUNT_STATE:
+                ByteBuffer wire = ByteBuffer.allocate(blob.length + 33);
+                wire.put(blob);
+                wire.put(leaf.index.bytes());
+                wire.put(leaf.type == ShaMapNode.NodeType.tnACCOUNT_STATE ?
+                         WIRE_ACCOUNT_STATE : WIRE_TRANSACTION_WITH_META);
+                return wire.array();
+            default:
+                throw new UnsupportedOperationException("Can't persist node of type " + leaf.type);
+        }
+    }
+
+    private static void writeNode(ShaMapNode node, ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        byte[] wire = toWire(node);
+
+        if (buffer.remaining() < 4) {
+            flush(buffer, channel);
+        }
+        buffer.putInt(wire.length);
+        if (buffer.remaining() < wire.length) {
+            flush(buffer, channel);
+        }
+        if (buffer.remaining() < wire.length) {
+            writeFully(ByteBuffer.wrap(wire), channel);
+        } else {
+            buffer.put(wire);
+        }
+
+        if (node instanceof ShaMapInnerNode) {
+            for (ShaMapNode branch : ((ShaMapInnerNode) node).branches) {
+                if (branch != null) {
+                    writeNode(branch, buffer, channel);
+                }
+            }
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        writeFully(buffer, channel);
+        buffer.clear();
+    }
+
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ShaMapNode readNode(Input in, int depth, Hash256 expected) throws IOException {
+        byte[] wire = in.read(in.readInt());
+        if (wire.length == 0) {
+            throw new IllegalStateException("Empty node at depth " + depth);
+        }
+        int last = wire.length - 1;
+        byte wireType = wire[last];
+
+        ShaMapNode node;
+        Hash256 computed;
+
+        if (wireType == WIRE_INNER || wireType == WIRE_COMPRESSED_INNER) {
+            ShaMapInnerNode inner = depth == 0 ? new ShaMap() : new ShaMapInnerNode(depth);
+            Hash256[] hashes = branchHashes(wire, wireType);
+
+            for (int i = 0; i < 16; i++) {
+                if (!hashes[i].equals(ShaMapInnerNode.ZERO_256)) {
+                    inner.setNode(i, readNode(in, depth + 1, hashes[i]));
+                }
+            }
+            computed = inner.empty() ? ShaMapInnerNode.ZERO_256 : ShaMapInnerNode.hashBranches(hashes);
+            inner.cachedHash = computed;
+            node = inner;
+        } else {
+            if (depth == 0) {
+                throw new IllegalStateException("Root node must be an inner node");
+            }
+            ShaMapLeafNode leaf = wireToLeaf(wire, wireType);
+            computed = leaf.hash();
+            node = leaf;
+        }
+
+        if (!computed.equals(expected)) {
+            throw new IllegalStateException("Hash mismatch at depth " + depth +
+                                            ", expected " + expected + " but computed " + computed);
+        }
+        return node;
+    }
+
+    private static Hash256[] branchHashes(byte[] wire, byte wireType) {
+        Hash256[] hashes = new Hash256[16];
+        Arrays.fill(hashes, ShaMapInnerNode.ZERO_256);
+
+        if (wireType == WIRE_INNER) {
+            if (wire.length != 16 * 32 + 1) {
+                throw new IllegalStateException("Invalid inner node length: " + wire.length);
+            }
+            for (int i = 0; i < 16; i++) {
+                hashes[i] = new Hash256(Arrays.copyOfRange(wire, i * 32, i * 32 + 32));
+            }
+        } else {
+            if ((wire.length - 1) % 33 != 0) {
+                throw new IllegalStateException("Invalid compressed inner node length: " + wire.length);
+            }
+            for (int pos = 0; pos < wire.length - 1; pos += 33) {
+                int branch = wire[pos + 32] & 0xFF;
+                if (branch > 15) {
+                    throw new IllegalStateException("Invalid branch: " + branch);
+                }
+                hashes[branch] = new Hash256(Arrays.copyOfRange(wire, pos, pos + 32));
+            }
+        }
+        return hashes;
+    }
+
+    private static ShaMapLeafNode wireToLeaf(byte[] wire, byte wireType) {
+        int last = wire.length - 1;
+
+        switch (wireType) {
+            case WIRE_TRANSACTION:
+                byte[] tx = Arrays.copyOfRange(wire, 0, last);
+                return new ShaMapLeafNode(Hash256.transactionID(tx), ShaMapNode.NodeType.tnTRANSACTION_NM, item(tx));
+            case WIRE_TRANSACTION_WITH_META:
+            case WIRE_ACCOUNT_STATE:
+                if (last < 32) {
+                    throw new IllegalStateException("Leaf node too short: " + wire.length);
+                }
+                Hash256 index = new Hash256(Arrays.copyOfRange(wire, last - 32, last));
+                byte[] blob = Arrays.copyOfRange(wire, 0, last - 32);
+                ShaMapNode.NodeType type = wireType == WIRE_ACCOUNT_STATE ?
+                                           ShaMapNode.NodeType.tnACCOUNT_STATE :
+                                           ShaMapNode.NodeType.tnTRANSACTION_MD;
+                return new ShaMapLeafNode(index, type, item(blob));
+            default:
+                throw new IllegalStateException("Unknown wire type: " + wireType);
+        }
+    }
+
+    private static ShaMapLeafNode.Item item(final byte[] bytes) {
+        return new ShaMapLeafNode.Item() {
+            @Override
+            public byte[] bytes() {
+                return bytes;
+            }
+        };
+    }
+
+    private static class Input {
+        ByteBuffer buffer;
+        ReadableByteChannel channel;
+
+        Input(ByteBuffer buffer, ReadableByteChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+
+        int readInt() throws IOException {
+            byte[] b = read(4);
+            return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+        }
+
+        byte[] read(int n) throws IOException {
+            if (n < 0) {
+                throw new IllegalStateException("Invalid length: " + n);
+            }
+            byte[] out = new byte[n];
+            int offset = 0;
+
+            while (offset < n) {
+                if (!buffer.hasRemaining() && !refill()) {
+                    throw new EOFException("Truncated ShaMap store");
+                }
+                int chunk = Math.min(n - offset, buffer.remaining());
+                buffer.get(out, offset, chunk);
+                offset += chunk;
+            }
+            return out;
+        }
+
+        private boolean refill() throws IOException {
+            if (channel == null) {
+                return false;
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            return read > 0;
+        }
+    }
+}
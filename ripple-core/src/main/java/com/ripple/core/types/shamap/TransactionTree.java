@@ -0,0 +1,37 @@
+package com.ripple.core.types.shamap;
+
+import com.ripple.core.serialized.BinarySerializer;
+import com.ripple.core.types.hash.Hash256;
+
+/**
+ * A ShaMap of tnTRANSACTION_MD leaves, the root hash of which is the
+ * `TransactionHash` of the ledger containing them.
+ */
+public class TransactionTree extends ShaMap {
+    private int size = 0;
+
+    public void addTransaction(Hash256 transactionID, byte[] tx, byte[] meta) {
+        addLeaf(transactionID, NodeType.tnTRANSACTION_MD, transactionWithMeta(tx, meta));
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the leaf item, both blobs VL encoded, as hashed (and stored) by rippled
+     */
+    public static ShaMapLeafNode.Item transactionWithMeta(byte[] tx, byte[] meta) {
+        BinarySerializer s = new BinarySerializer();
+        s.addLengthEncoded(tx);
+        s.addLengthEncoded(meta);
+        final byte[] bytes = s.bytes();
+        return new ShaMapLeafNode.Item() {
+            @Override
+            public byte[] bytes() {
+                return bytes;
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.ripple.crypto.ecdsa;
+
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * A reusable signer for a single private key.
+ *
+ * Nonces are derived deterministically, as per RFC 6979 (HMAC-SHA256), so
+ * signing the same hash twice yields the same signature, and k*G is computed
+ * with the {@link FixedBaseMultiplier} table. Signatures are canonical, with
+ * s in the lower half of the curve order.
+ *
+ * Holds mutable HMAC state, so instances must not be shared between threads.
+ */
+public class DeterministicSigner {
+    private static final BigInteger N = SECP256K1.getN();
+    private static final BigInteger HALF_N = N.shiftRight(1);
+
+    private final BigInteger secret;
+    private final byte[] secretBytes;
+    private final HMac hmac = new HMac(new SHA256Digest());
+    private final byte[] v = new byte[32], k = new byte[32];
+
+    public DeterministicSigner(BigInteger secret) {
+        if (secret.signum() <= 0 || secret.compareTo(N) >= 0) {
+            throw new IllegalArgumentException("Private key out of range");
+        }
+        this.secret = secret;
+        this.secretBytes = toBytes32(secret);
+    }
+
+    /**
+     * @param hash a 256 bit message hash
+     * @return the DER encoded signature
+     */
+    public byte[] sign(byte[] hash) {
+        return signature(hash).encodeToDER();
+    }
+
+    public ECDSASignature signature(byte[] hash) {
+        BigInteger e = new BigInteger(1, hash);
+        initNonces(toBytes32(e.mod(N)));
+
+        for (boolean retry = false; ; retry = true) {
+            if (retry) {
+                reseed();
+            }
+            BigInteger nonce = nextNonce();
+            BigInteger r = FixedBaseMultiplier.multiply(nonce).getX().toBigInteger().mod(N);
+            if (r.signum() == 0) {
+                continue;
+            }
+            BigInteger s = nonce.modInverse(N).multiply(e.add(secret.multiply(r))).mod(N);
+            if (s.signum() == 0) {
+                continue;
+            }
+            if (s.compareTo(HALF_N) > 0) {
+                s = N.subtract(s);
+            }
+            return new ECDSASignature(r, s);
+        }
+    }
+
+    public static boolean isCanonical(ECDSASignature signature) {
+        return signature.s.compareTo(HALF_N) <= 0;
+    }
+
+    // RFC 6979 3.2 steps b. through f.
+    private void initNonces(byte[] hashBytes) {
+        Arrays.fill(v, (byte) 0x01);
+        Arrays.fill(k, (byte) 0x00);
+
+        mac(k, v, new byte[]{0x00}, secretBytes, hashBytes);
+        mac(v, v);
+        mac(k, v, new byte[]{0x01}, secretBytes, hashBytes);
+        mac(v, v);
+    }
+
+    // RFC 6979 3.2 step h.
+    private BigInteger nextNonce() {
+        while (true) {
+            mac(v, v);
+            BigInteger candidate = new BigInteger(1, v);
+            if (candidate.signum() > 0 && candidate.compareTo(N) < 0) {
+                return candidate;
+            }
+            reseed();
+        }
+    }
+
+    private void reseed() {
+        mac(k, v, new byte[]{0x00});
+        mac(v, v);
+    }
+
+    /**
+     * Sets `out` to HMAC_K(parts...) keyed with the current `k`
+     */
+    private void mac(byte[] out, byte[]... parts) {
+        hmac.init(new KeyParameter(k));
+        for (byte[] part : parts) {
+            hmac.update(part, 0, part.length);
+        }
+        hmac.doFinal(out, 0);
+    }
+
+    private static byte[] toBytes32(BigInteger n) {
+        byte[] bytes = n.toByteArray();
+        byte[] out = new byte[32];
+        if (bytes.length > 32) {
+            System.arraycopy(bytes, bytes.length - 32, out, 0, 32);
+        } else {
+            System.arraycopy(bytes, 0, out, 32 - bytes.length, bytes.length);
+        }
+        return out;
+    }
+}
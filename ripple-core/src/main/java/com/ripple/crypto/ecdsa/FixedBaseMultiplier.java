@@ -0,0 +1,75 @@
+package com.ripple.crypto.ecdsa;
+
+import org.bouncycastle.math.ec.ECPoint;
+
+import java.math.BigInteger;
+
+/**
+ * Multiplies the secp256k1 generator G by a scalar using a table of
+ * precomputed multiples, so k*G costs at most 64 point additions and no
+ * doublings.
+ *
+ *      table[i][j] = j * 16^i * G      for i in [0, 64), j in [0, 16)
+ *
+ * The table (1024 points) is built once, on first use, and shared by all
+ * threads; it is never mutated after construction.
+ */
+public class FixedBaseMultiplier {
+    private static final int WINDOW_BITS = 4;
+    private static final int WINDOW_SIZE = 1 << WINDOW_BITS;
+    private static final int WINDOWS = 256 / WINDOW_BITS;
+
+    private static class Holder {
+        static final ECPoint[][] table = buildTable();
+    }
+
+    private static ECPoint[][] buildTable() {
+        ECPoint[][] table = new ECPoint[WINDOWS][WINDOW_SIZE];
+        ECPoint base = SECP256K1.getG();
+
+        for (int i = 0; i < WINDOWS; i++) {
+            table[i][0] = SECP256K1.getCurve().getInfinity();
+            table[i][1] = base;
+            for (int j = 2; j < WINDOW_SIZE; j++) {
+                table[i][j] = table[i][j - 1].add(base);
+            }
+            // 16^(i+1) * G
+            base = table[i][WINDOW_SIZE - 1].add(base);
+        }
+        return table;
+    }
+
+    /**
+     * @param k a scalar in [1, n)
+     */
+    public static ECPoint multiply(BigInteger k) {
+        if (k.signum() <= 0 || k.bitLength() > 256) {
+            throw new IllegalArgumentException("Scalar out of range");
+        }
+        ECPoint[][] table = Holder.table;
+        byte[] bytes = k.toByteArray();
+        ECPoint result = null;
+
+        // Walk the big endian bytes from the least significant end, two windows per byte
+        for (int b = bytes.length - 1, window = 0; b >= 0 && window < WINDOWS; b--, window += 2) {
+            int octet = bytes[b] & 0xFF;
+            result = addMultiple(result, table[window][octet & 0x0F]);
+            result = addMultiple(result, table[window + 1][octet >>> 4]);
+        }
+        return result;
+    }
+
+    private static ECPoint addMultiple(ECPoint sum, ECPoint multiple) {
+        if (multiple.isInfinity()) {
+            return sum;
+        }
+        return sum == null ? multiple : sum.add(multiple);
+    }
+
+    /**
+     * @return the compressed encoding of k*G, as per SECP256K1.gMultBy
+     */
+    public static byte[] multiplyEncoded(BigInteger k) {
+        return multiply(k).getEncoded(true);
+    }
+}
@@ -1,7 +1,6 @@
 package com.ripple.crypto.ecdsa;
 
 import com.ripple.utils.Utils;
-import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.bouncycastle.crypto.params.ECPublicKeyParameters;
 import org.bouncycastle.crypto.signers.ECDSASigner;
 import org.bouncycastle.math.ec.ECPoint;
@@ -67,16 +66,12 @@ public class KeyPair implements IKeyPair {
         }
     }
 
+    /**
+     * Signs with an RFC 6979 nonce, giving a canonical (low S) signature.
+     * Use a {@link DeterministicSigner} directly when signing many hashes
+     * with the same key.
+     */
     public static byte[] sign(byte[] bytes, BigInteger secret) {
-        ECDSASignature sig = createECDSASignature(bytes, secret);
-        return sig.encodeToDER();
-    }
-
-    private static ECDSASignature createECDSASignature(byte[] bytes, BigInteger secret) {
-        ECDSASigner signer = new ECDSASigner();
-        ECPrivateKeyParameters privKey = new ECPrivateKeyParameters(secret, SECP256K1.getParams());
-        signer.init(true, privKey);
-        BigInteger[] sigs = signer.generateSignature(bytes);
-        return new ECDSASignature(sigs[0], sigs[1]);
+        return new DeterministicSigner(secret).sign(bytes);
     }
 }
@@ -36,6 +36,6 @@ public class SECP256K1 {
     }
 
     static byte[] gMultBy(BigInteger secret) {
-        return getG().multiply(secret).getEncoded(true);
+        return FixedBaseMultiplier.multiplyEncoded(secret);
     }
 }
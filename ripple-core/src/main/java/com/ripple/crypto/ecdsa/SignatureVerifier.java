@@ -0,0 +1,140 @@
+package com.ripple.crypto.ecdsa;
+
+import com.ripple.utils.Chunked;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.math.ec.ECPoint;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Verifies signatures, keeping an LRU cache of decoded public key points
+ * keyed by the (compressed) `SigningPubKey` bytes, so the point decompression
+ * is only done once per signer.
+ *
+ * Batches are split into chunks and verified on the executor.
+ */
+public class SignatureVerifier {
+    private static final int MIN_CHUNK = 16;
+
+    public static class Item {
+        public final byte[] hash, signature, pubKey;
+
+        public Item(byte[] hash, byte[] signature, byte[] pubKey) {
+            this.hash = hash;
+            this.signature = signature;
+            this.pubKey = pubKey;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final LRU cache;
+
+    public SignatureVerifier(int cacheSize, ExecutorService executor) {
+        this.cache = new LRU(cacheSize);
+        this.executor = executor;
+    }
+
+    public boolean verify(Item item) {
+        return verify(item.hash, item.signature, item.pubKey);
+    }
+
+    public boolean verify(byte[] hash, byte[] sigBytes, byte[] pubKey) {
+        try {
+            ECDSASignature signature = ECDSASignature.decodeFromDER(sigBytes);
+            if (signature == null) {
+                return false;
+            }
+            ECDSASigner signer = new ECDSASigner();
+            signer.init(false, publicKeyParameters(pubKey));
+            return signer.verifySignature(hash, signature.r, signature.s);
+        } catch (RuntimeException e) {
+            // Malformed DER or a point not on the curve
+            return false;
+        }
+    }
+
+    /**
+     * @return the results, in the same order as `items`
+     */
+    public boolean[] verify(final List<Item> items) {
+        final int n = items.size();
+        final boolean[] results = new boolean[n];
+        Chunked.run(executor, n, Chunked.chunkSize(n, 2, MIN_CHUNK), new Chunked.Task<Void>() {
+            @Override
+            public Void run(int from, int to) {
+                verifyRange(items, results, from, to);
+                return null;
+            }
+        });
+        return results;
+    }
+
+    private void verifyRange(List<Item> items, boolean[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = verify(items.get(i));
+        }
+    }
+
+    public int cachedKeys() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private ECPublicKeyParameters publicKeyParameters(byte[] pubKey) {
+        PubKey key = new PubKey(pubKey);
+        ECPublicKeyParameters params;
+
+        synchronized (cache) {
+            params = cache.get(key);
+        }
+        if (params == null) {
+            // Decoded outside the lock, a race just means decoding twice
+            ECPoint point = SECP256K1.getCurve().decodePoint(pubKey);
+            params = new ECPublicKeyParameters(point, SECP256K1.getParams());
+            synchronized (cache) {
+                cache.put(key, params);
+            }
+        }
+        return params;
+    }
+
+    private static class LRU extends LinkedHashMap<PubKey, ECPublicKeyParameters> {
+        private final int capacity;
+
+        LRU(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PubKey, ECPublicKeyParameters> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static class PubKey {
+        final byte[] bytes;
+        final int hashCode;
+
+        PubKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PubKey && Arrays.equals(bytes, ((PubKey) obj).bytes);
+        }
+    }
+}
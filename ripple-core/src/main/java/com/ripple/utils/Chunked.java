@@ -0,0 +1,155 @@
+package com.ripple.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a task over the indices [0, n), split into contiguous chunks, each
+ * run on the executor, or in turn on the calling thread, if there's no
+ * executor, or, waiting on them, only the one chunk.
+ *
+ * Chunks are cut the same either way, so a task accumulating per chunk
+ * gives the same results however it's run.
+ */
+public class Chunked {
+    public interface Task<T> {
+        /**
+         * @return the result for the chunk [from, to)
+         */
+        T run(int from, int to) throws Exception;
+    }
+
+    public interface Callback<T> {
+        /**
+         * @param results each chunk's, in order, or null if one failed
+         * @param failure the first chunk's failure, or null
+         */
+        void done(List<T> results, Throwable failure);
+    }
+
+    /**
+     * @return a chunk size giving about `perCore` chunks per core, but no
+     *         less than `min`
+     */
+    public static int chunkSize(int n, int perCore, int min) {
+        int chunks = Runtime.getRuntime().availableProcessors() * perCore;
+        return Math.max(Math.max(1, min), (n + chunks - 1) / chunks);
+    }
+
+    /**
+     * Runs the chunks, waiting for all of them.
+     *
+     * @return each chunk's result, in order
+     */
+    public static <T> List<T> run(ExecutorService executor, int n, int chunkSize, final Task<T> task) {
+        if (executor == null || n <= chunkSize) {
+            try {
+                return runHere(n, chunkSize, task);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        ArrayList<Future<T>> futures = new ArrayList<Future<T>>();
+        for (int start = 0; start < n; start += chunkSize) {
+            final int from = start, to = Math.min(n, start + chunkSize);
+            futures.add(executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return task.run(from, to);
+                }
+            }));
+        }
+        ArrayList<T> results = new ArrayList<T>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+        return results;
+    }
+
+    /**
+     * Runs the chunks without waiting for them, on the executor, even if
+     * there's only the one. `callback` is called once, on the thread
+     * finishing the last chunk, or on the calling thread, if there's no
+     * executor.
+     */
+    public static <T> void runAsync(ExecutorService executor, int n, int chunkSize,
+                                    final Task<T> task, final Callback<T> callback) {
+        if (executor == null || n == 0) {
+            List<T> results;
+            try {
+                results = runHere(n, chunkSize, task);
+            } catch (Exception e) {
+                callback.done(null, e);
+                return;
+            }
+            callback.done(results, null);
+            return;
+        }
+
+        final int chunks = (n + chunkSize - 1) / chunkSize;
+        final Object[] results = new Object[chunks];
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicInteger remaining = new AtomicInteger(chunks);
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int i = chunk, from = chunk * chunkSize, to = Math.min(n, from + chunkSize);
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            results[i] = task.run(from, to);
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                        finished(remaining, 1, results, failure, callback);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Those not submitted fail, so the callback's still called
+                failure.compareAndSet(null, e);
+                finished(remaining, chunks - chunk, results, failure, callback);
+                return;
+            }
+        }
+    }
+
+    // The decrements order each chunk's writes before the last's reads
+    @SuppressWarnings("unchecked")
+    private static <T> void finished(AtomicInteger remaining, int chunks, Object[] results,
+                                     AtomicReference<Throwable> failure, Callback<T> callback) {
+        if (remaining.addAndGet(-chunks) == 0) {
+            Throwable failed = failure.get();
+            callback.done(failed == null ? (List<T>) Arrays.asList(results) : null, failed);
+        }
+    }
+
+    private static <T> List<T> runHere(int n, int chunkSize, Task<T> task) throws Exception {
+        ArrayList<T> results = new ArrayList<T>();
+        for (int start = 0; start < n; start += chunkSize) {
+            results.add(task.run(start, Math.min(n, start + chunkSize)));
+        }
+        return results;
+    }
+}
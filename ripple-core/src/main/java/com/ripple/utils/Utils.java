@@ -56,17 +56,24 @@ public class Utils {
         return hash;
     }
 
-    public static byte[] sha512(byte[] byteArrays) {
-        MessageDigest messageDigest;
-        try {
-            messageDigest = MessageDigest.getInstance("SHA-512", "BC");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        } catch (NoSuchProviderException e) {
-            throw new RuntimeException(e);
+    // Provider lookups are slow, and digests aren't thread safe, so keep one per thread
+    private static final ThreadLocal<MessageDigest> sha512Digest = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-512", "BC");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            } catch (NoSuchProviderException e) {
+                throw new RuntimeException(e);
+            }
         }
-        messageDigest.update(byteArrays);
-        return messageDigest.digest();
+    };
+
+    public static byte[] sha512(byte[] byteArrays) {
+        MessageDigest messageDigest = sha512Digest.get();
+        // digest() resets it for the next use
+        return messageDigest.digest(byteArrays);
     }
 
     public static byte[] SHA256_RIPEMD160(byte[] input) {
@@ -0,0 +1,31 @@
+package com.ripple.core.serialized;
+
+import com.ripple.core.types.STObject;
+import com.ripple.encodings.common.B16;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class BinaryParserTest {
+    static final String TX = "12000822000000002400113FCF201900113F3268400000000000000A73210256C64F0378DCCCB4E0224B36F7ED1E5586455FF105F760245ADB35A8B03A25FD7447304502200A8BED7B8955F45633BA4E9212CE386C397E32ACFF6ECE08EB74B5C86200C606022100EF62131FF50B288244D9AB6B3D18BACD44924D2BAEEF55E1B3232B7E033A27918114E0E893E991B2142E74486F7D3331CF711EA84213";
+
+    @Test
+    public void testParsesADirectBufferSliceInPlace() throws Exception {
+        byte[] tx = B16.decode(TX);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(tx.length + 10);
+        buffer.put(new byte[]{1, 2, 3, 4, 5});
+        buffer.put(tx);
+        buffer.put(new byte[]{6, 7, 8, 9, 10});
+
+        buffer.position(5);
+        buffer.limit(5 + tx.length);
+        STObject parsed = STObject.translate.fromParser(new BinaryParser(buffer));
+
+        assertEquals(STObject.translate.toJSONObject(STObject.translate.fromWireBytes(tx)).toString(),
+                     STObject.translate.toJSONObject(parsed).toString());
+        // Left where it was
+        assertEquals(5, buffer.position());
+    }
+}
@@ -0,0 +1,57 @@
+package com.ripple.crypto.ecdsa;
+
+import com.ripple.core.TestFixtures;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.utils.Utils;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeterministicSignerTest {
+    private static byte[] sha256(String message) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(message.getBytes("utf-8"));
+    }
+
+    // secp256k1 RFC 6979 (HMAC-SHA256) vectors with canonical S
+    @Test
+    public void testKnownVectors() throws Exception {
+        DeterministicSigner signer = new DeterministicSigner(BigInteger.ONE);
+
+        ECDSASignature sig = signer.signature(sha256("Satoshi Nakamoto"));
+        assertEquals(Utils.hexBig("934b1ea10a4b3c1757e2b0c017d0b6143ce3c9a7e6a4a49860d7a6ab210ee3d8"), sig.r);
+        assertEquals(Utils.hexBig("2442ce9d2b916064108014783e923ec36b49743e2ffa1c4496f01a512aafd9e5"), sig.s);
+
+        sig = signer.signature(sha256("All those moments will be lost in time, like tears in rain. Time to die..."));
+        assertEquals(Utils.hexBig("8600dbd41e348fe5c9465ab92d23e3db8b98b873beecd930736488696438cb6b"), sig.r);
+        assertEquals(Utils.hexBig("547fe64427496db33bf66019dacbf0039c04199abb0122918601db38a72cfc21"), sig.s);
+    }
+
+    @Test
+    public void testFixedBaseMultiplication() throws Exception {
+        BigInteger k = Utils.hexBig("1ACAAEDECE405B2A958212629E16F2EB46B153EEE94CDD350FDEFF52795525B7");
+        assertEquals(SECP256K1.getG().multiply(k), FixedBaseMultiplier.multiply(k));
+        assertEquals(SECP256K1.getG(), FixedBaseMultiplier.multiply(BigInteger.ONE));
+        BigInteger nMinusOne = SECP256K1.getN().subtract(BigInteger.ONE);
+        assertEquals(SECP256K1.getG().negate(), FixedBaseMultiplier.multiply(nMinusOne));
+    }
+
+    @Test
+    public void testSignaturesAreReproducibleCanonicalAndVerify() throws Exception {
+        IKeyPair keyPair = Seed.createKeyPair(TestFixtures.master_seed_bytes);
+        DeterministicSigner signer = new DeterministicSigner(keyPair.priv());
+
+        for (int i = 0; i < 20; i++) {
+            byte[] hash = Hash256.signingHash(new byte[]{(byte) i}).bytes();
+            byte[] signature = signer.sign(hash);
+
+            assertArrayEquals(signature, keyPair.sign(hash));
+            assertTrue(DeterministicSigner.isCanonical(ECDSASignature.decodeFromDER(signature)));
+            assertTrue(keyPair.verify(hash, signature));
+        }
+    }
+}
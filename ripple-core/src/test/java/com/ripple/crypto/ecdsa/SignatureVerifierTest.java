@@ -0,0 +1,72 @@
+package com.ripple.crypto.ecdsa;
+
+import com.ripple.core.TestFixtures;
+import com.ripple.core.types.STObject;
+import com.ripple.core.types.VariableLength;
+import com.ripple.core.types.hash.Hash256;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignatureVerifierTest {
+    IKeyPair keyPair = Seed.createKeyPair(TestFixtures.master_seed_bytes);
+
+    @Test
+    public void testVerifyTransactionSignature() throws Exception {
+        // A transaction validated on the network
+        String tx = "{\"Account\": \"rwMyB1diFJ7xqEKYGYgk9tKrforvTr33M5\"," +
+                " \"Amount\": \"1\"," +
+                " \"Destination\": \"rP1coskQzayaQ9geMdJgAV5f3tNZcHghzH\"," +
+                " \"Fee\": \"12\"," +
+                " \"Sequence\": 91," +
+                " \"SigningPubKey\": \"02eeaf2c95b668d411fc490746c52071514f6d3a7b742d91d82cb591b5443d1c59\"," +
+                " \"TransactionType\": \"Payment\"," +
+                " \"TxnSignature\": \"3045022100f1b54ed137dc491240b93c4b34a97ca6063490cca784c9c2f5d5b8593f10f0410220338e9e0f6dfacc739172d0473b5023f068c5fbbcbd66e65ed5ec6f4421781194\"}";
+
+        STObject so = STObject.fromJSONObject(new JSONObject(tx));
+        Hash256 signingHash = Hash256.signingHash(STObject.translate.toSigningBytes(so));
+        assertEquals("63FDF0927690B5CC9C15E4B23B1DD9F8A4123C1BEE098625D9B2AD665B0E913D", signingHash.toString());
+
+        SignatureVerifier verifier = new SignatureVerifier(10, null);
+        assertTrue(verifier.verify(signingHash.bytes(),
+                                   so.get(VariableLength.TxnSignature).bytes(),
+                                   so.get(VariableLength.SigningPubKey).bytes()));
+    }
+
+    @Test
+    public void testBatchVerification() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SignatureVerifier verifier = new SignatureVerifier(2, executor);
+        ArrayList<SignatureVerifier.Item> items = new ArrayList<SignatureVerifier.Item>();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] hash = Hash256.signingHash(new byte[]{(byte) i}).bytes();
+            byte[] signature = keyPair.sign(hash);
+            if (i % 10 == 0) {
+                // sign something else
+                hash = Hash256.signingHash(new byte[]{(byte) i, 1}).bytes();
+            }
+            items.add(new SignatureVerifier.Item(hash, signature, keyPair.pubBytes()));
+        }
+        items.add(new SignatureVerifier.Item(new byte[32], new byte[]{1, 2, 3}, keyPair.pubBytes()));
+
+        try {
+            boolean[] results = verifier.verify(items);
+            assertEquals(101, results.length);
+            for (int i = 0; i < 100; i++) {
+                assertEquals("item " + i, i % 10 != 0, results[i]);
+            }
+            assertFalse(results[100]);
+            assertEquals(1, verifier.cachedKeys());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
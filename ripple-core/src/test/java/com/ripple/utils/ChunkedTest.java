@@ -0,0 +1,129 @@
+package com.ripple.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ChunkedTest {
+    static final Chunked.Task<Integer> SUM = new Chunked.Task<Integer>() {
+        @Override
+        public Integer run(int from, int to) {
+            int sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += i;
+            }
+            return sum;
+        }
+    };
+
+    @Test
+    public void testChunksAreCutTheSameWithOrWithoutAnExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Integer> here = Chunked.run(null, 1000, 64, SUM),
+                          there = Chunked.run(executor, 1000, 64, SUM);
+            assertEquals(16, here.size());
+            assertEquals(here, there);
+            assertEquals(Integer.valueOf(64 * 63 / 2), here.get(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRunAsyncCallsBackOnceWithResultsInOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<?>[] results = new List<?>[1];
+            final CountDownLatch done = new CountDownLatch(1);
+            Chunked.runAsync(executor, 1000, 64, SUM, new Chunked.Callback<Integer>() {
+                @Override
+                public void done(List<Integer> chunks, Throwable failure) {
+                    assertNull(failure);
+                    results[0] = chunks;
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(Chunked.run(null, 1000, 64, SUM), results[0]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        Chunked.Task<Void> failing = new Chunked.Task<Void>() {
+            @Override
+            public Void run(int from, int to) {
+                if (from > 0) {
+                    throw new IllegalStateException("chunk " + from);
+                }
+                return null;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            try {
+                Chunked.run(executor, 100, 10, failing);
+                fail();
+            } catch (IllegalStateException expected) {
+            }
+
+            final Throwable[] failure = new Throwable[1];
+            final CountDownLatch done = new CountDownLatch(1);
+            Chunked.runAsync(executor, 100, 10, failing, new Chunked.Callback<Void>() {
+                @Override
+                public void done(List<Void> results, Throwable failed) {
+                    assertNull(results);
+                    failure[0] = failed;
+                    done.countDown();
+                }
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(failure[0] instanceof IllegalStateException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRunAsyncCallsBackWhenTheExecutorRejects() throws Exception {
+        // One thread, no queue, so once the first chunk is running the rest are rejected
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>());
+        final CountDownLatch release = new CountDownLatch(1), done = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+        try {
+            Chunked.runAsync(executor, 100, 10, new Chunked.Task<Integer>() {
+                @Override
+                public Integer run(int from, int to) throws Exception {
+                    release.await();
+                    return from;
+                }
+            }, new Chunked.Callback<Integer>() {
+                @Override
+                public void done(List<Integer> results, Throwable failed) {
+                    assertNull(results);
+                    failure[0] = failed;
+                    done.countDown();
+                }
+            });
+            assertEquals(1, done.getCount());
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(failure[0] instanceof RejectedExecutionException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
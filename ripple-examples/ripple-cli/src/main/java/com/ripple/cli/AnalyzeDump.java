@@ -1,62 +1,84 @@
 package com.ripple.cli;
 
 
+import com.ripple.client.history.DumpAnalyzer;
+import com.ripple.client.history.TxArchive;
 import com.ripple.client.transactions.TransactionMessage.TransactionResult;
 import com.ripple.core.enums.TransactionEngineResult;
 import com.ripple.core.enums.TransactionType;
 import com.ripple.core.types.AccountID;
 import com.ripple.core.types.Amount;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.JSONTokener;
-
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+
+import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.ripple.cli.log.Log.LOG;
 
 public class AnalyzeDump {
-    public static void main(String[] args) throws IOException, JSONException {
-        analyzeDump();
+    static AccountID giveAwayAccount = AccountID.fromAddress("rMTzGg7nPPEMJthjgEBfiPZGoAM7MEVa1r");
+    static Amount    giveAwayAmount  = Amount.fromString("1000.0");
+
+    static class GiveAways {
+        int successful, created;
+        // In drops, as giveAwayAmount is XRP
+        BigDecimal paid = BigDecimal.ZERO;
     }
-    private static void analyzeDump() throws IOException, JSONException {
-        BufferedReader bufferedReader = openDumpReader();
-
-        AccountID giveAwayAccount = AccountID.fromAddress("rMTzGg7nPPEMJthjgEBfiPZGoAM7MEVa1r");
-        Amount    giveAwayAmount  = Amount.fromString("1000.0");
-
-        int successful = 0, created = 0;
-        String line;
-
-        while ((line = bufferedReader.readLine()) != null) {
-            if (line.length() > 0) {
-                JSONObject json = new JSONObject(line);
-                JSONArray transactions = json.getJSONArray("transactions");
-                for (int i = 0; i < transactions.length(); i++) {
-                    JSONObject tx = transactions.getJSONObject(i);
-                    TransactionResult tr;
-                    tr = new TransactionResult(tx, TransactionResult.Source.request_account_tx_binary);
-
-                    if (tr.engineResult      == TransactionEngineResult.tesSUCCESS &&
-                        tr.transactionType() == TransactionType.Payment            &&
-                        tr.initiatingAccount().equals(giveAwayAccount)             &&
-                        tr.transaction.get(Amount.Amount).equals(giveAwayAmount)) {
-                        if (tr.createdAccount() != null) created++;
-                        successful++;
-                    }
-                }
+
+    static DumpAnalyzer.Analysis<GiveAways> giveAways = new DumpAnalyzer.Analysis<GiveAways>() {
+        @Override
+        public GiveAways start() {
+            return new GiveAways();
+        }
+
+        @Override
+        public void add(GiveAways totals, TransactionResult tr) {
+            if (tr.engineResult      == TransactionEngineResult.tesSUCCESS &&
+                tr.transactionType() == TransactionType.Payment            &&
+                tr.initiatingAccount().equals(giveAwayAccount)             &&
+                tr.transaction.get(Amount.Amount).equals(giveAwayAmount)) {
+                if (tr.createdAccount() != null) totals.created++;
+                totals.successful++;
+                totals.paid = totals.paid.add(tr.transaction.get(Amount.Amount).value());
             }
         }
 
-        LOG("Successful outbound %s payments: %d, creating: %d, paid out %s",
-             giveAwayAmount, successful, created, giveAwayAmount.multiply(successful));
+        @Override
+        public GiveAways combine(GiveAways earlier, GiveAways later) {
+            earlier.successful += later.successful;
+            earlier.created += later.created;
+            earlier.paid = earlier.paid.add(later.paid);
+            return earlier;
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            analyzeDump(new DumpAnalyzer(executor));
+        } finally {
+            executor.shutdown();
+        }
     }
 
-    private static BufferedReader openDumpReader() throws FileNotFoundException {
-        FileReader reader = new FileReader("binary-transactions.json");
-        return new BufferedReader(reader);
+    private static void analyzeDump(DumpAnalyzer analyzer) throws IOException {
+        GiveAways totals;
+        File archiveFile = new File(DumpAccountTransactions.archiveFile);
+        if (archiveFile.isFile()) {
+            TxArchive archive = TxArchive.open(archiveFile);
+            try {
+                totals = analyzer.analyze(archive, giveAways);
+            } finally {
+                archive.close();
+            }
+        } else {
+            totals = analyzer.analyze(new File(DumpAccountTransactions.outputFile), giveAways);
+        }
+
+        LOG("Successful outbound %s payments: %d, creating: %d, paid out %s",
+             giveAwayAmount, totals.successful, totals.created,
+             Amount.fromDropString(totals.paid.toPlainString()));
     }
 }
@@ -2,76 +2,114 @@ package com.ripple.cli;
 
 import com.ripple.client.Client;
 import com.ripple.client.ClientLogger;
-import com.ripple.client.Request;
-import com.ripple.client.Response;
 import com.ripple.client.enums.Command;
+import com.ripple.client.history.AccountTxDownloader;
+import com.ripple.client.history.TxArchiveWriter;
+import com.ripple.client.history.TxIndex;
 import com.ripple.client.transport.impl.JavaWebSocketTransportImpl;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
 
+/**
+ * Dumps an account's transactions, as binary, one account_tx page per line.
+ *
+ * Usage: [account] [ledger_index_min] [ledger_index_max] [server ...]
+ *
+ * The range is split up and fetched concurrently, over a connection to each
+ * server given. Rerunning resumes from the checkpoint, if there is one.
+ *
+ * As it's downloaded, the dump is also written as a TxArchive, for
+ * AnalyzeDump, indexed by hash and by Account and Sequence for looking
+ * transactions up. `archive` rebuilds those from a dump.
+ */
 public class DumpAccountTransactions {
     public static String outputFile = "binary-transactions.json";
+    public static String checkpointFile = "binary-transactions.checkpoint";
+    public static String archiveFile = "binary-transactions.archive";
+    public static String byHashFile = "binary-transactions.by-hash";
+    public static String bySequenceFile = "binary-transactions.by-sequence";
 
     public static void main(String[] args) throws Exception {
-        File file = new File(outputFile);
-        if (file.exists()) {
-            boolean delete = file.delete();
-        }
+        String account = args.length > 0 ? args[0] : "rMTzGg7nPPEMJthjgEBfiPZGoAM7MEVa1r";
+        long min = args.length > 1 ? Long.parseLong(args[1]) : 32570;
 
         ClientLogger.quiet = true;
         Client c = new Client(new JavaWebSocketTransportImpl());
-        c.connect("wss://s1.ripple.com");
-        walkAccountTx(c, null, 5); // a null marker to start with and 5 pages of 500 txn per page
-    }
+        c.connect(args.length > 3 ? args[3] : "wss://s1.ripple.com");
+        for (int i = 4; i < args.length; i++) {
+            c.addEndpoint(new JavaWebSocketTransportImpl(), args[i]);
+        }
 
-    private static void walkAccountTx(final Client c, final Object marker, final int pages) {
-        Request request = c.newRequest(Command.account_tx);
-        request.json("binary", true);
-        request.json("account", "rMTzGg7nPPEMJthjgEBfiPZGoAM7MEVa1r");
+        long max = args.length > 2 ? Long.parseLong(args[2]) :
+                c.request(Command.ledger_closed, null, 0).get().result.getLong("ledger_index");
 
-        if (marker != null) {
-            request.json("marker", marker);
+        AccountTxDownloader downloader = new AccountTxDownloader(c, account, min, max,
+                new File(outputFile), new File(checkpointFile));
+        int archived;
+        TxIndex byHash = TxIndex.open(new File(byHashFile));
+        try {
+            TxIndex bySequence = TxIndex.open(new File(bySequenceFile));
+            try {
+                TxArchiveWriter writer = new TxArchiveWriter(new File(archiveFile), byHash, bySequence);
+                try {
+                    downloader.archiveTo(writer);
+                    downloader.run();
+                    archived = writer.size();
+                } finally {
+                    writer.close();
+                }
+            } finally {
+                bySequence.close();
+            }
+        } finally {
+            byHash.close();
         }
-        request.json("ledger_index_max", -1);
+        System.out.printf("Found %d transactions in %d pages%n", downloader.transactions(), downloader.pages());
+        System.out.printf("Archived %d transactions to %s%n", archived, archiveFile);
+    }
 
-        request.once(Request.OnSuccess.class, new Request.OnSuccess() {
-            @Override
-            public void called(Response response) {
-                JSONObject result = response.result;
+    /**
+     * Writes each page of the dump to a fresh archive and indexes.
+     */
+    public static int archive(File dump, File archive, File byHashFile, File bySequenceFile) throws IOException {
+        for (File file : new File[]{archive, byHashFile, bySequenceFile}) {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Can't delete " + file);
+            }
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(dump));
+        try {
+            TxIndex byHash = TxIndex.open(byHashFile);
+            try {
+                TxIndex bySequence = TxIndex.open(bySequenceFile);
                 try {
-                    JSONArray transactions = result.getJSONArray("transactions");
-                    System.out.printf("Found %d transactions %n",transactions.length());
-                    appendTo(result.toString(), outputFile);
-
-                    Object newMarker = result.get("marker");
-                    if (marker != null && marker.toString().equals(newMarker.toString())) {
-                        // This shouldn't happen since Stef's patch but who knows how
-                        // pervasively it's been deployed ?
-                        return;
-                    }
-                    if ((newMarker != null) && (pages - 1 > 0) && transactions.length() > 0) {
-                        System.out.printf("Found new marker %s%n", newMarker);
-                        walkAccountTx(c, newMarker, pages - 1);
+                    TxArchiveWriter writer = new TxArchiveWriter(archive, byHash, bySequence);
+                    try {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (line.length() > 0) {
+                                writer.appendPage(new JSONObject(line));
+                            }
+                        }
+                        return writer.size();
+                    } finally {
+                        writer.close();
                     }
-
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                } finally {
+                    bySequence.close();
                 }
-
+            } finally {
+                byHash.close();
             }
-        });
-
-        request.request();
-    }
-
-    private static void appendTo(String result, String outputFile) throws IOException {
-        PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(outputFile, true)));
-        writer.write(result);
-        writer.write("\n");
-        writer.close();
+        } catch (JSONException e) {
+            throw new IOException("Corrupt dump " + dump + ": " + e);
+        } finally {
+            reader.close();
+        }
     }
-
 }
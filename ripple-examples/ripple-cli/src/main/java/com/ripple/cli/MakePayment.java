@@ -43,6 +43,8 @@ public class MakePayment {
         if (envUser != null) PAYWARD_USER = envUser;
         if (envPass != null) PAYWARD_PASS = envPass;
         ClientLogger.quiet = false;
+        // Dump the messages sent and received
+        ClientLogger.level = ClientLogger.Level.DEBUG;
 
         // Uncomment to send a non native SEND_AMOUNT
         // SEND_AMOUNT = Amount.fromString("0.00001/USD/" + DESTINATION_ACCOUNT);
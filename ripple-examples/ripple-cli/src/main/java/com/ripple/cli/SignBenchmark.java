@@ -0,0 +1,63 @@
+package com.ripple.cli;
+
+import com.ripple.config.Config;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.crypto.ecdsa.DeterministicSigner;
+import com.ripple.crypto.ecdsa.IKeyPair;
+import com.ripple.crypto.ecdsa.SECP256K1;
+import com.ripple.crypto.ecdsa.Seed;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+
+import static com.ripple.cli.log.Log.LOG;
+
+/**
+ * Compares signing throughput of a reused DeterministicSigner against a
+ * fresh bouncycastle ECDSASigner (random k, plain point multiplication) per
+ * signature.
+ *
+ * Usage: SignBenchmark [signatures]
+ */
+public class SignBenchmark {
+    public static void main(String[] args) {
+        Config.initBouncy();
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        IKeyPair keyPair = Seed.createKeyPair(Seed.passPhraseToSeedBytes("masterpassphrase"));
+
+        byte[][] hashes = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = Hash256.signingHash(Seed.appendIntBytes(new byte[0], i)).bytes();
+        }
+
+        // Warm up, which also builds the fixed base table
+        benchDeterministic(keyPair, hashes);
+        benchBouncy(keyPair, hashes);
+
+        report("ECDSASigner per signature", n, benchBouncy(keyPair, hashes));
+        report("DeterministicSigner", n, benchDeterministic(keyPair, hashes));
+    }
+
+    private static long benchDeterministic(IKeyPair keyPair, byte[][] hashes) {
+        long start = System.nanoTime();
+        DeterministicSigner signer = new DeterministicSigner(keyPair.priv());
+        for (byte[] hash : hashes) {
+            signer.sign(hash);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long benchBouncy(IKeyPair keyPair, byte[][] hashes) {
+        long start = System.nanoTime();
+        for (byte[] hash : hashes) {
+            ECDSASigner signer = new ECDSASigner();
+            signer.init(true, new ECPrivateKeyParameters(keyPair.priv(), SECP256K1.getParams()));
+            signer.generateSignature(hash);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, int n, long nanos) {
+        double seconds = nanos / 1e9;
+        LOG("%-28s %8d signatures in %6.2fs, %8.0f/s", name, n, seconds, n / seconds);
+    }
+}
@@ -0,0 +1,122 @@
+package com.ripple.cli;
+
+import com.ripple.client.ledger.TransactionSetVerifier;
+import com.ripple.core.types.hash.Hash256;
+import com.ripple.encodings.common.B16;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.ripple.cli.log.Log.LOG;
+
+/**
+ * Verifies the transaction sets of a range of ledgers stored as `ledger`
+ * responses (transactions: true, expand: true) in `ledgers/<ledger_index>.json`
+ * then checks every transaction in the DumpAccountTransactions output,
+ * within that range, is part of a verified ledger.
+ *
+ * Usage: VerifyLedgers <min_ledger> <max_ledger> [ledgers_dir] [dump_file]
+ */
+public class VerifyLedgers {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            LOG("Usage: VerifyLedgers <min_ledger> <max_ledger> [ledgers_dir] [dump_file]");
+            return;
+        }
+        long min = Long.parseLong(args[0]), max = Long.parseLong(args[1]);
+        File ledgersDir = new File(args.length > 2 ? args[2] : "ledgers");
+        File dump = new File(args.length > 3 ? args[3] : DumpAccountTransactions.outputFile);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            verify(executor, min, max, ledgersDir, dump);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void verify(ExecutorService executor, long min, long max,
+                               File ledgersDir, File dump) throws IOException, JSONException {
+        TransactionSetVerifier verifier = new TransactionSetVerifier(executor);
+        Map<Long, Set<Hash256>> verified = new HashMap<Long, Set<Hash256>>();
+        int failed = 0, missing = 0;
+
+        for (long ledgerIndex = min; ledgerIndex <= max; ledgerIndex++) {
+            File file = new File(ledgersDir, ledgerIndex + ".json");
+            if (!file.exists()) {
+                missing++;
+                continue;
+            }
+            TransactionSetVerifier.Result result = verifier.verify(readJSON(file));
+            if (result.verified()) {
+                verified.put(result.ledgerIndex, result.transactionIDs);
+            } else {
+                failed++;
+                LOG("%s", result);
+            }
+        }
+
+        LOG("Ledgers verified: %d, failed: %d, missing: %d", verified.size(), failed, missing);
+
+        if (dump.exists()) {
+            checkDump(dump, min, max, verified);
+        }
+    }
+
+    private static void checkDump(File dump, long min, long max,
+                                  Map<Long, Set<Hash256>> verified) throws IOException, JSONException {
+        int found = 0, unverifiable = 0, absent = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(dump));
+        String line;
+
+        try {
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0) continue;
+
+                JSONArray transactions = new JSONObject(line).getJSONArray("transactions");
+                for (int i = 0; i < transactions.length(); i++) {
+                    JSONObject tx = transactions.getJSONObject(i);
+                    long ledgerIndex = tx.getLong("ledger_index");
+                    if (ledgerIndex < min || ledgerIndex > max) continue;
+
+                    Set<Hash256> ids = verified.get(ledgerIndex);
+                    Hash256 id = Hash256.transactionID(B16.decode(tx.getString("tx_blob")));
+
+                    if (ids == null) {
+                        unverifiable++;
+                    } else if (ids.contains(id)) {
+                        found++;
+                    } else {
+                        absent++;
+                        LOG("Transaction %s is not in ledger %d", id, ledgerIndex);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        LOG("Dumped transactions in verified ledgers: %d, not in their ledger: %d, ledger unverified: %d",
+                found, absent, unverifiable);
+    }
+
+    private static JSONObject readJSON(File file) throws IOException, JSONException {
+        FileReader reader = new FileReader(file);
+        try {
+            return new JSONObject(new JSONTokener(reader));
+        } finally {
+            reader.close();
+        }
+    }
+}